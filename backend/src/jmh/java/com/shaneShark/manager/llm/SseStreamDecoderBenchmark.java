@@ -0,0 +1,126 @@
+package com.shaneShark.manager.llm;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import okio.Buffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SSE 流式响应解码基准测试
+ * 对比 {@link SseStreamDecoder} 与原来的 BufferedReader.readLine + substring + Jackson 反序列化
+ * （readValue 为原实现，readTree 为对象树解析）解码同一段流式响应的吞吐量，
+ * 加 -prof gc 时可同时对比每次操作的内存分配。
+ * <p>
+ * 运行：mvn -Pbenchmark compile exec:exec，JMH 参数通过 -Djmh.args="SseStreamDecoder -prof gc" 传入
+ *
+ * @author Shane
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SseStreamDecoderBenchmark {
+
+    /**
+     * 每个流的数据块数
+     */
+    @Param({"64", "1024"})
+    public int frames;
+
+    private byte[] body;
+
+    private ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() {
+        objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+        StringBuilder sse = new StringBuilder();
+        for (int i = 0; i < frames; i++) {
+            boolean last = i == frames - 1;
+            sse.append("data: {\"id\":\"021718000000000abcdef\",\"object\":\"chat.completion.chunk\",")
+                    .append("\"created\":1718000000,\"model\":\"doubao-seed-1-6-250615\",")
+                    .append("\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"content\":\"")
+                    .append(i % 2 == 0 ? "流式" : "token ").append(i)
+                    .append("\"},\"finish_reason\":").append(last ? "\"stop\"" : "null").append("}]");
+            if (last) {
+                sse.append(",\"usage\":{\"prompt_tokens\":120,\"completion_tokens\":").append(frames)
+                        .append(",\"total_tokens\":").append(120 + frames).append('}');
+            }
+            sse.append("}\n\n");
+        }
+        sse.append("data: [DONE]\n\n");
+        body = sse.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public void decoder(Blackhole blackhole) throws IOException {
+        SseStreamDecoder decoder = new SseStreamDecoder(new Buffer().write(body));
+        StreamChatResponse response;
+        while ((response = decoder.next()) != null) {
+            blackhole.consume(response);
+        }
+    }
+
+    @Benchmark
+    public void readLineReadValue(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = legacyReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data: ")) {
+                    String data = line.substring(6);
+                    if ("[DONE]".equals(data.trim())) {
+                        break;
+                    }
+                    blackhole.consume(objectMapper.readValue(data, StreamChatResponse.class));
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public void readLineReadTree(Blackhole blackhole) throws IOException {
+        try (BufferedReader reader = legacyReader()) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("data: ")) {
+                    String data = line.substring(6);
+                    if ("[DONE]".equals(data.trim())) {
+                        break;
+                    }
+                    JsonNode chunk = objectMapper.readTree(data);
+                    JsonNode delta = chunk.path("choices").path(0).path("delta");
+                    blackhole.consume(delta.path("content").asText(null));
+                    blackhole.consume(chunk.path("choices").path(0).path("finish_reason").asText(null));
+                }
+            }
+        }
+    }
+
+    private BufferedReader legacyReader() {
+        return new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,72 @@
+package com.shaneShark.config;
+
+import com.shaneShark.mock.MockLlmServer;
+import lombok.Data;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 本地模拟大模型服务配置
+ * 启用后在本机端口上提供 OpenAI 兼容的 /chat/completions 接口（JSON 与 SSE 两种模式），
+ * 把各服务提供方的 base-url 指向它即可在无网络、不消耗额度的情况下压测聊天链路（见 application-mock.yml）
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.mock")
+@Data
+public class MockLlmConfig {
+
+    /**
+     * 是否随应用启动模拟服务
+     */
+    private boolean enabled = false;
+
+    /**
+     * 监听端口，0 表示随机端口
+     */
+    private int port = 18080;
+
+    /**
+     * 输出速度（令牌/秒），每个令牌一个 SSE 数据块
+     */
+    private double tokensPerSecond = 50;
+
+    /**
+     * 首个令牌前的延迟（毫秒）
+     */
+    private long firstTokenDelayMillis = 300;
+
+    /**
+     * 首字延迟的随机抖动上限（毫秒）
+     */
+    private long firstTokenJitterMillis = 0;
+
+    /**
+     * 每次回答输出的令牌数，请求带 max_tokens 时取较小值
+     */
+    private int responseTokens = 64;
+
+    /**
+     * 返回 500 的概率（0~1）
+     */
+    private double errorRate = 0;
+
+    /**
+     * 返回 429 的概率（0~1）
+     */
+    private double rateLimitRate = 0;
+
+    /**
+     * 429 响应的 Retry-After（秒）
+     */
+    private int retryAfterSeconds = 1;
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(prefix = "llm.mock", name = "enabled", havingValue = "true")
+    public MockLlmServer mockLlmServer() {
+        return MockLlmServer.start(this);
+    }
+}
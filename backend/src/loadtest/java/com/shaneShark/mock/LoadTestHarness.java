@@ -0,0 +1,290 @@
+package com.shaneShark.mock;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shaneShark.config.MockLlmConfig;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * 聊天流式接口压测工具
+ * 以固定并发度向 /chat/completions/stream、/chat/stream/flux、/chat/kimi/stream/flux 发送流式请求，
+ * 统计首字延迟（TTFT）和整体耗时的 p50/p90/p99、吞吐量（请求/秒、数据块/秒）和错误数。
+ * 配合 application-mock.yml 使用时后端调用本地模拟服务，不消耗真实额度，也不需要外网。
+ * <p>
+ * 本类和模拟服务位于 src/loadtest，只在 loadtest profile 下编译进包（mvn -Ploadtest package），不会进入生产包。
+ * 用法（参数均可省略）：
+ * <pre>
+ * java -cp shaneShark.jar -Dloader.main=com.shaneShark.mock.LoadTestHarness org.springframework.boot.loader.launch.PropertiesLauncher \
+ *   --base-url=http://localhost:8121/api --endpoints=stream,flux,kimi-flux --concurrency=50 --requests=500 \
+ *   --user-id=1 --prompt=你好 [--mock-port=18080]
+ * </pre>
+ * 指定 --mock-port 时在本进程内同时启动模拟大模型服务（后端需把 base-url 指向该端口）。
+ *
+ * @author Shane
+ */
+public class LoadTestHarness {
+
+    private static final Map<String, String> ENDPOINTS = new LinkedHashMap<>();
+
+    static {
+        ENDPOINTS.put("stream", "/chat/completions/stream");
+        ENDPOINTS.put("flux", "/chat/stream/flux");
+        ENDPOINTS.put("kimi-flux", "/chat/kimi/stream/flux");
+    }
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final HttpClient httpClient;
+
+    private final String baseUrl;
+
+    private final int concurrency;
+
+    private final int requests;
+
+    private final long userId;
+
+    private final String prompt;
+
+    private final Duration timeout;
+
+    public LoadTestHarness(String baseUrl, int concurrency, int requests, long userId, String prompt, Duration timeout) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.concurrency = concurrency;
+        this.requests = requests;
+        this.userId = userId;
+        this.prompt = prompt;
+        this.timeout = timeout;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Math.max(4, concurrency)))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseArgs(args);
+        MockLlmServer mockServer = null;
+        if (options.containsKey("mock-port")) {
+            MockLlmConfig mockConfig = new MockLlmConfig();
+            mockConfig.setPort(Integer.parseInt(options.get("mock-port")));
+            if (options.containsKey("mock-tps")) {
+                mockConfig.setTokensPerSecond(Double.parseDouble(options.get("mock-tps")));
+            }
+            if (options.containsKey("mock-first-token-ms")) {
+                mockConfig.setFirstTokenDelayMillis(Long.parseLong(options.get("mock-first-token-ms")));
+            }
+            if (options.containsKey("mock-error-rate")) {
+                mockConfig.setErrorRate(Double.parseDouble(options.get("mock-error-rate")));
+            }
+            if (options.containsKey("mock-429-rate")) {
+                mockConfig.setRateLimitRate(Double.parseDouble(options.get("mock-429-rate")));
+            }
+            mockServer = MockLlmServer.start(mockConfig);
+        }
+
+        LoadTestHarness harness = new LoadTestHarness(
+                options.getOrDefault("base-url", "http://localhost:8121/api"),
+                Integer.parseInt(options.getOrDefault("concurrency", "20")),
+                Integer.parseInt(options.getOrDefault("requests", "200")),
+                Long.parseLong(options.getOrDefault("user-id", "1")),
+                options.getOrDefault("prompt", "你好，请做一个简短的自我介绍"),
+                Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout-seconds", "120"))));
+        try {
+            for (String name : options.getOrDefault("endpoints", String.join(",", ENDPOINTS.keySet())).split(",")) {
+                String path = ENDPOINTS.get(name.trim());
+                if (path == null) {
+                    System.err.println("未知的接口: " + name + "，可选 " + ENDPOINTS.keySet());
+                    continue;
+                }
+                System.out.println(harness.run(name.trim(), path));
+            }
+        } finally {
+            if (mockServer != null) {
+                mockServer.stop();
+            }
+            System.exit(0);
+        }
+    }
+
+    /**
+     * 对单个接口执行一轮压测
+     *
+     * @param name 接口名称
+     * @param path 接口路径
+     * @return 统计结果
+     */
+    public Report run(String name, String path) throws InterruptedException {
+        Report report = new Report(name, concurrency);
+        AtomicInteger remaining = new AtomicInteger(requests);
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        long start = System.nanoTime();
+        for (int i = 0; i < concurrency; i++) {
+            workers.execute(() -> {
+                while (remaining.getAndDecrement() > 0) {
+                    execute(path, report);
+                }
+            });
+        }
+        workers.shutdown();
+        workers.awaitTermination(1, TimeUnit.DAYS);
+        report.elapsedNanos = System.nanoTime() - start;
+        return report;
+    }
+
+    private void execute(String path, Report report) {
+        long start = System.nanoTime();
+        long firstToken = -1;
+        long chunks = 0;
+        boolean failed = false;
+        try {
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                    .timeout(timeout)
+                    .header("Content-Type", "application/json")
+                    .header("Accept", "text/event-stream")
+                    .POST(HttpRequest.BodyPublishers.ofString(requestBody()))
+                    .build();
+            HttpResponse<Stream<String>> response = httpClient.send(request, HttpResponse.BodyHandlers.ofLines());
+            if (response.statusCode() != 200) {
+                response.body().close();
+                failed = true;
+            } else {
+                try (Stream<String> lines = response.body()) {
+                    for (String line : (Iterable<String>) lines::iterator) {
+                        if (line.startsWith("event:") && line.substring(6).trim().equals("error")) {
+                            failed = true;
+                        }
+                        if (!line.startsWith("data:")) {
+                            continue;
+                        }
+                        String data = line.substring(5).trim();
+                        if (data.isEmpty() || data.contains("[DONE]")) {
+                            continue;
+                        }
+                        chunks++;
+                        if (firstToken < 0) {
+                            firstToken = System.nanoTime() - start;
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            failed = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+        report.record(failed || firstToken < 0, firstToken, System.nanoTime() - start, chunks);
+    }
+
+    private String requestBody() throws IOException {
+        ObjectNode body = objectMapper.createObjectNode();
+        body.put("userId", userId);
+        body.put("stream", true);
+        ObjectNode message = body.putArray("messages").addObject();
+        message.put("role", "user");
+        message.put("content", prompt);
+        return objectMapper.writeValueAsString(body);
+    }
+
+    private static Map<String, String> parseArgs(String[] args) {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(2, eq), arg.substring(eq + 1));
+            } else {
+                options.put(arg.substring(2), "true");
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 单个接口的压测结果
+     */
+    public static class Report {
+
+        private final String name;
+
+        private final int concurrency;
+
+        private final ConcurrentLinkedQueue<Long> ttftNanos = new ConcurrentLinkedQueue<>();
+
+        private final ConcurrentLinkedQueue<Long> totalNanos = new ConcurrentLinkedQueue<>();
+
+        private final AtomicInteger succeeded = new AtomicInteger();
+
+        private final AtomicInteger failed = new AtomicInteger();
+
+        private final AtomicLong chunks = new AtomicLong();
+
+        private long elapsedNanos;
+
+        Report(String name, int concurrency) {
+            this.name = name;
+            this.concurrency = concurrency;
+        }
+
+        void record(boolean error, long ttft, long total, long chunkCount) {
+            if (error) {
+                failed.incrementAndGet();
+                return;
+            }
+            succeeded.incrementAndGet();
+            ttftNanos.add(ttft);
+            totalNanos.add(total);
+            chunks.addAndGet(chunkCount);
+        }
+
+        @Override
+        public String toString() {
+            double seconds = elapsedNanos / 1e9;
+            List<Long> ttft = sorted(ttftNanos);
+            List<Long> total = sorted(totalNanos);
+            return String.format("[%s] 并发=%d 成功=%d 失败=%d 耗时=%.1fs%n"
+                            + "  TTFT   p50=%dms p90=%dms p99=%dms%n"
+                            + "  总耗时 p50=%dms p90=%dms p99=%dms%n"
+                            + "  吞吐量 %.1f 请求/秒, %.1f 数据块/秒",
+                    name, concurrency, succeeded.get(), failed.get(), seconds,
+                    percentile(ttft, 50), percentile(ttft, 90), percentile(ttft, 99),
+                    percentile(total, 50), percentile(total, 90), percentile(total, 99),
+                    seconds > 0 ? succeeded.get() / seconds : 0, seconds > 0 ? chunks.get() / seconds : 0);
+        }
+
+        private static List<Long> sorted(ConcurrentLinkedQueue<Long> values) {
+            List<Long> list = new ArrayList<>(values);
+            Collections.sort(list);
+            return list;
+        }
+
+        private static long percentile(List<Long> sorted, int percentile) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            int index = (int) Math.ceil(percentile / 100.0 * sorted.size()) - 1;
+            return TimeUnit.NANOSECONDS.toMillis(sorted.get(Math.max(0, Math.min(index, sorted.size() - 1))));
+        }
+    }
+}
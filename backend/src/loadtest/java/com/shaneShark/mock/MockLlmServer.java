@@ -0,0 +1,253 @@
+package com.shaneShark.mock;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.shaneShark.config.MockLlmConfig;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 本地模拟大模型服务
+ * 基于 Reactor Netty 实现 OpenAI 兼容的 POST .../chat/completions 接口，请求体中 stream=true 时按 SSE 逐令牌输出，
+ * 否则等待完整生成时间后返回 JSON。输出速度、首字延迟、500 错误率和 429 限流率均可配置，
+ * 所有等待都是定时器而不是阻塞线程，单机即可模拟上千并发流。
+ * 可随应用启动（llm.mock.enabled=true），也可在压测脚本或其他进程中直接 {@link #start(MockLlmConfig)}。
+ *
+ * @author Shane
+ */
+@Slf4j
+public class MockLlmServer {
+
+    private static final String COMPLETIONS_PATH = "chat/completions";
+
+    private final MockLlmConfig config;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong injectedErrors = new AtomicLong();
+
+    private final AtomicLong injectedRateLimits = new AtomicLong();
+
+    private DisposableServer server;
+
+    private MockLlmServer(MockLlmConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 启动模拟服务
+     *
+     * @param config 模拟参数，运行期间修改会在后续请求中生效
+     * @return 已启动的服务
+     */
+    public static MockLlmServer start(MockLlmConfig config) {
+        MockLlmServer mockServer = new MockLlmServer(config);
+        mockServer.server = HttpServer.create()
+                .port(config.getPort())
+                .handle(mockServer::handle)
+                .bindNow();
+        log.info("模拟大模型服务已启动: {}，输出速度={}令牌/秒，首字延迟={}ms，错误率={}，限流率={}",
+                mockServer.baseUrl(), config.getTokensPerSecond(), config.getFirstTokenDelayMillis(),
+                config.getErrorRate(), config.getRateLimitRate());
+        return mockServer;
+    }
+
+    /**
+     * 停止服务
+     */
+    public void stop() {
+        if (server != null) {
+            server.disposeNow();
+            log.info("模拟大模型服务已停止，共处理请求={}，注入错误={}，注入限流={}",
+                    requests.get(), injectedErrors.get(), injectedRateLimits.get());
+        }
+    }
+
+    public int port() {
+        return server.port();
+    }
+
+    /**
+     * 可直接配置为服务提供方 base-url 的地址（任意前缀 + /chat/completions 均可访问）
+     */
+    public String baseUrl() {
+        return "http://localhost:" + port() + "/v1";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    public long getInjectedRateLimits() {
+        return injectedRateLimits.get();
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        if (!HttpMethod.POST.equals(request.method()) || !request.path().endsWith(COMPLETIONS_PATH)) {
+            return response.status(HttpResponseStatus.NOT_FOUND).send();
+        }
+        return request.receive().aggregate().asString(StandardCharsets.UTF_8)
+                .defaultIfEmpty("{}")
+                .flatMap(body -> respond(body, response));
+    }
+
+    private Mono<Void> respond(String body, HttpServerResponse response) {
+        requests.incrementAndGet();
+        JsonNode request;
+        try {
+            request = objectMapper.readTree(body);
+        } catch (IOException e) {
+            return error(response, HttpResponseStatus.BAD_REQUEST, "invalid_request_error", "请求体不是合法的 JSON");
+        }
+
+        double dice = ThreadLocalRandom.current().nextDouble();
+        if (dice < config.getRateLimitRate()) {
+            injectedRateLimits.incrementAndGet();
+            response.header(HttpHeaderNames.RETRY_AFTER, String.valueOf(config.getRetryAfterSeconds()));
+            return error(response, HttpResponseStatus.TOO_MANY_REQUESTS, "rate_limit_error", "模拟限流");
+        }
+        if (dice < config.getRateLimitRate() + config.getErrorRate()) {
+            injectedErrors.incrementAndGet();
+            return error(response, HttpResponseStatus.INTERNAL_SERVER_ERROR, "server_error", "模拟服务端错误");
+        }
+
+        String model = request.path("model").asText("mock-model");
+        int maxTokens = request.hasNonNull("max_tokens") ? request.get("max_tokens").asInt()
+                : request.path("maxTokens").asInt(Integer.MAX_VALUE);
+        int tokens = Math.max(1, Math.min(config.getResponseTokens(), maxTokens));
+        int promptTokens = Math.max(1, body.length() / 4);
+        String id = "chatcmpl-mock-" + UUID.randomUUID();
+        long created = System.currentTimeMillis() / 1000;
+        Duration firstTokenDelay = Duration.ofMillis(config.getFirstTokenDelayMillis()
+                + (config.getFirstTokenJitterMillis() > 0
+                ? ThreadLocalRandom.current().nextLong(config.getFirstTokenJitterMillis() + 1) : 0));
+        Duration interval = Duration.ofNanos((long) (1_000_000_000L / Math.max(0.001, config.getTokensPerSecond())));
+
+        if (!request.path("stream").asBoolean(false)) {
+            Duration total = firstTokenDelay.plus(interval.multipliedBy(tokens - 1L));
+            return Mono.delay(total)
+                    .then(Mono.defer(() -> response.status(HttpResponseStatus.OK)
+                            .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                            .sendString(Mono.just(completion(id, created, model, tokens, promptTokens)))
+                            .then()));
+        }
+
+        Flux<String> frames = Flux.concat(
+                Mono.delay(firstTokenDelay).map(tick -> chunk(id, created, model, 0)),
+                Flux.interval(interval).take(tokens - 1L)
+                        .map(tick -> chunk(id, created, model, tick.intValue() + 1)),
+                Mono.fromCallable(() -> finalChunk(id, created, model, promptTokens, tokens)),
+                Mono.just("data: [DONE]\n\n"));
+        return response.status(HttpResponseStatus.OK)
+                .header(HttpHeaderNames.CONTENT_TYPE, "text/event-stream; charset=utf-8")
+                .header(HttpHeaderNames.CACHE_CONTROL, "no-cache")
+                .sendString(frames, StandardCharsets.UTF_8)
+                .then();
+    }
+
+    /**
+     * 第 index 个令牌的数据块，首个数据块同时带上 role
+     */
+    private String chunk(String id, long created, String model, int index) {
+        ObjectNode choice = objectMapper.createObjectNode();
+        choice.put("index", 0);
+        ObjectNode delta = choice.putObject("delta");
+        if (index == 0) {
+            delta.put("role", "assistant");
+        }
+        delta.put("content", token(index));
+        choice.putNull("finish_reason");
+        return frame(envelope(id, created, model, "chat.completion.chunk", choice));
+    }
+
+    /**
+     * 结束数据块，带 finish_reason 和用量
+     */
+    private String finalChunk(String id, long created, String model, int promptTokens, int completionTokens) {
+        ObjectNode choice = objectMapper.createObjectNode();
+        choice.put("index", 0);
+        choice.putObject("delta");
+        choice.put("finish_reason", "stop");
+        ObjectNode root = envelope(id, created, model, "chat.completion.chunk", choice);
+        root.set("usage", usage(promptTokens, completionTokens));
+        return frame(root);
+    }
+
+    private String completion(String id, long created, String model, int completionTokens, int promptTokens) {
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < completionTokens; i++) {
+            content.append(token(i));
+        }
+        ObjectNode choice = objectMapper.createObjectNode();
+        choice.put("index", 0);
+        ObjectNode message = choice.putObject("message");
+        message.put("role", "assistant");
+        message.put("content", content.toString());
+        choice.put("finish_reason", "stop");
+        ObjectNode root = envelope(id, created, model, "chat.completion", choice);
+        root.set("usage", usage(promptTokens, completionTokens));
+        return root.toString();
+    }
+
+    private ObjectNode envelope(String id, long created, String model, String object, ObjectNode choice) {
+        ObjectNode root = objectMapper.createObjectNode();
+        root.put("id", id);
+        root.put("object", object);
+        root.put("created", created);
+        root.put("model", model);
+        ArrayNode choices = root.putArray("choices");
+        choices.add(choice);
+        return root;
+    }
+
+    private ObjectNode usage(int promptTokens, int completionTokens) {
+        ObjectNode usage = objectMapper.createObjectNode();
+        usage.put("prompt_tokens", promptTokens);
+        usage.put("completion_tokens", completionTokens);
+        usage.put("total_tokens", promptTokens + completionTokens);
+        return usage;
+    }
+
+    private static String token(int index) {
+        return "token" + index + " ";
+    }
+
+    private static String frame(ObjectNode node) {
+        return "data: " + node + "\n\n";
+    }
+
+    private Mono<Void> error(HttpServerResponse response, HttpResponseStatus status, String type, String message) {
+        ObjectNode root = objectMapper.createObjectNode();
+        ObjectNode error = root.putObject("error");
+        error.put("message", message);
+        error.put("type", type);
+        return response.status(status)
+                .header(HttpHeaderNames.CONTENT_TYPE, "application/json")
+                .sendString(Mono.just(root.toString()))
+                .then();
+    }
+}
@@ -0,0 +1,67 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 离线批量补全任务配置
+ * 管理员上传 JSONL 提示词文件，后台按并发度和速率限制逐条调用大模型，结果可直接写回 qa_info
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.batch")
+@Data
+public class BatchJobConfig {
+
+    /**
+     * 是否启用批量任务
+     */
+    private boolean enabled = true;
+
+    /**
+     * 单个任务最多的提示词行数
+     */
+    private int maxLines = 10000;
+
+    /**
+     * 单条提示词的最大字符数
+     */
+    private int maxPromptChars = 20000;
+
+    /**
+     * 未指定时的并发度
+     */
+    private int defaultParallelism = 2;
+
+    /**
+     * 并发度上限
+     */
+    private int maxParallelism = 8;
+
+    /**
+     * 未指定时每秒最多发出的请求数
+     */
+    private double defaultRequestsPerSecond = 1.0;
+
+    /**
+     * 未指定时单条提示词的最大重试次数
+     */
+    private int defaultMaxRetries = 3;
+
+    /**
+     * 首次重试的退避时间（毫秒），之后指数增长
+     */
+    private long retryBackoffMillis = 2000;
+
+    /**
+     * 上传时批量写入任务条目的批大小
+     */
+    private int insertBatchSize = 500;
+
+    /**
+     * 应用启动时是否自动恢复未完成的任务
+     */
+    private boolean resumeOnStartup = true;
+}
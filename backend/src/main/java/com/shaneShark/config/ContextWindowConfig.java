@@ -0,0 +1,50 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 聊天上下文窗口配置
+ * 按模型的上下文长度为历史消息设置令牌预算，只保留预算内最近的若干轮对话
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.context")
+@Data
+public class ContextWindowConfig {
+
+    /**
+     * 是否按令牌预算裁剪历史消息，关闭时发送全部历史消息
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未在 modelContextTokens 中配置的模型使用的上下文长度
+     */
+    private int defaultContextTokens = 32768;
+
+    /**
+     * 各模型的上下文长度，key 为模型名前缀（如 doubao-1-5-lite-32k），按最长前缀匹配
+     */
+    private Map<String, Integer> modelContextTokens = new LinkedHashMap<>();
+
+    /**
+     * 请求未指定 maxTokens 时为回答预留的令牌数
+     */
+    private int reservedOutputTokens = 4096;
+
+    /**
+     * 历史消息的令牌预算上限，0 表示只受模型上下文长度限制；用于进一步控制长会话的成本
+     */
+    private int maxHistoryTokens = 0;
+
+    /**
+     * 消息令牌数缓存的最大条目数
+     */
+    private long tokenCacheSize = 100000;
+}
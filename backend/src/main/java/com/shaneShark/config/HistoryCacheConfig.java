@@ -0,0 +1,44 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 会话历史热缓存配置
+ * 活跃会话的历史消息按会话缓存在进程内，按估算字节数限制总内存；多实例部署时可通过 Redis 发布订阅互相失效。
+ * 多实例部署且没有 Redis 时，其他节点处理的后续轮次不会失效本节点的缓存，因此默认关闭，确认部署方式后再启用
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.history-cache")
+@Data
+public class HistoryCacheConfig {
+
+    /**
+     * 是否启用历史热缓存
+     */
+    private boolean enabled = false;
+
+    /**
+     * 缓存占用内存上限（估算字节数）
+     */
+    private long maxMemoryBytes = 64L * 1024 * 1024;
+
+    /**
+     * 会话多久未访问后淘汰（秒）
+     */
+    private long expireAfterAccessSeconds = 1800;
+
+    /**
+     * 跨实例失效方式：auto（Redis 可用时用 redis，否则 none）、none（仅单实例部署）
+     * 或 redis（需在 MainApplication 中移除 RedisAutoConfiguration 的排除，Redis 不可用时不启用缓存）
+     */
+    private String invalidation = "auto";
+
+    /**
+     * Redis 失效通知频道
+     */
+    private String channel = "chat:history:invalidate";
+}
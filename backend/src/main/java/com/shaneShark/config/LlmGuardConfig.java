@@ -0,0 +1,72 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 大模型调用保护配置
+ * 每个服务提供方独立的自适应并发限制（AIMD）和熔断器，上游变慢或限流时快速失败而不是堆积线程
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.guard")
+@Data
+public class LlmGuardConfig {
+
+    /**
+     * 是否启用并发限制和熔断
+     */
+    private boolean enabled = true;
+
+    /**
+     * 初始并发上限
+     */
+    private int initialLimit = 32;
+
+    /**
+     * 并发上限下限
+     */
+    private int minLimit = 2;
+
+    /**
+     * 并发上限上限，不应超过 llm.transport 的单主机并发数
+     */
+    private int maxLimit = 64;
+
+    /**
+     * 失败或慢调用时并发上限的乘性缩减比例
+     */
+    private double backoffRatio = 0.8;
+
+    /**
+     * 首个响应（流式为首个数据块）超过该时间（毫秒）视为慢调用，触发并发上限缩减
+     */
+    private long slowCallMillis = 15000;
+
+    /**
+     * 熔断统计的滑动窗口大小（最近 N 次调用）
+     */
+    private int slidingWindowSize = 20;
+
+    /**
+     * 窗口内至少需要的调用次数，不足时不计算失败率
+     */
+    private int minimumCalls = 10;
+
+    /**
+     * 失败率达到该值时熔断
+     */
+    private double failureRateThreshold = 0.5;
+
+    /**
+     * 熔断打开后的等待时间（毫秒），之后进入半开状态试探
+     */
+    private long openMillis = 30000;
+
+    /**
+     * 半开状态允许的试探调用数，全部成功后关闭熔断
+     */
+    private int halfOpenPermits = 3;
+}
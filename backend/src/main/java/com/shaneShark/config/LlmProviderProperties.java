@@ -0,0 +1,30 @@
+package com.shaneShark.config;
+
+/**
+ * 大模型服务提供方的公共配置项
+ * 各 provider 的配置类（DoubaoConfig、DeepSeekConfig 等）实现该接口，供传输层等公共组件统一读取
+ *
+ * @author Shane
+ */
+public interface LlmProviderProperties {
+
+    /**
+     * API密钥
+     */
+    String getApiKey();
+
+    /**
+     * API基础URL
+     */
+    String getBaseUrl();
+
+    /**
+     * 默认模型名称
+     */
+    String getModel();
+
+    /**
+     * 请求超时时间（毫秒）
+     */
+    int getTimeout();
+}
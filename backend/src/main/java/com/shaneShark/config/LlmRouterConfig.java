@@ -0,0 +1,65 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 大模型路由配置
+ * 请求的 model 为 auto 时，按各服务提供方的延迟和错误率选择当前最快的健康提供方
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.router")
+@Data
+public class LlmRouterConfig {
+
+    /**
+     * 参与路由的服务提供方（LlmProviderEnum 的 value），为空时使用所有已配置 API Key 的提供方
+     */
+    private List<String> providers = new ArrayList<>();
+
+    /**
+     * EWMA 平滑系数，越大越偏向最近的样本
+     */
+    private double ewmaAlpha = 0.2;
+
+    /**
+     * 错误率超过该值的提供方视为不健康
+     */
+    private double maxErrorRate = 0.5;
+
+    /**
+     * 不健康的提供方在最后一次失败多久后（毫秒）允许重新试探
+     */
+    private long unhealthyCooldownMillis = 30000;
+
+    /**
+     * 是否对非流式请求启用对冲：首个请求超过其 p95 延迟仍未返回时，向次优提供方再发一次，先返回者胜出
+     */
+    private boolean hedgeEnabled = false;
+
+    /**
+     * 计算 p95 前至少需要的样本数，样本不足时使用 hedgeDefaultDelayMillis
+     */
+    private int hedgeMinSamples = 20;
+
+    /**
+     * 样本不足时的对冲等待时间（毫秒）
+     */
+    private long hedgeDefaultDelayMillis = 3000;
+
+    /**
+     * 对冲等待时间下限（毫秒），避免 p95 过小时几乎每个请求都被对冲
+     */
+    private long hedgeMinDelayMillis = 500;
+
+    /**
+     * 每个提供方保留的最近延迟样本数，用于计算 p95
+     */
+    private int latencyWindow = 200;
+}
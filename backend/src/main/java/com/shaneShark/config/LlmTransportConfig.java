@@ -0,0 +1,70 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 大模型 HTTP 传输层配置
+ * 统一管理各 provider 的连接池、并发上限、keep-alive 与 HTTP/2 设置
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.transport")
+@Data
+public class LlmTransportConfig {
+
+    /**
+     * 是否优先使用 HTTP/2（同一连接多路复用，避免队头阻塞）
+     */
+    private boolean http2 = true;
+
+    /**
+     * 单个 provider 的最大并发请求数
+     */
+    private int maxRequests = 256;
+
+    /**
+     * 单个 provider 对同一 host 的最大并发请求数
+     */
+    private int maxRequestsPerHost = 64;
+
+    /**
+     * 连接池最大空闲连接数
+     */
+    private int maxIdleConnections = 16;
+
+    /**
+     * 空闲连接保活时间（毫秒）
+     */
+    private long keepAliveMillis = 300000;
+
+    /**
+     * HTTP/2 ping 间隔（毫秒），0 表示不发送
+     */
+    private long pingIntervalMillis = 15000;
+
+    /**
+     * 按 provider 覆盖的连接池配置，key 为 provider 值（doubao、deepseek、kimi、silicon-flow）
+     */
+    private Map<String, PoolConfig> providers = new HashMap<>();
+
+    /**
+     * provider 级别的连接池配置，未设置的字段使用全局默认值
+     */
+    @Data
+    public static class PoolConfig {
+
+        private Integer maxRequests;
+
+        private Integer maxRequestsPerHost;
+
+        private Integer maxIdleConnections;
+
+        private Long keepAliveMillis;
+    }
+}
@@ -0,0 +1,68 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 聊天消息异步批量写入配置
+ * 消息先写本地追加日志并进入内存队列，由后台线程按条数或时间批量写入 MongoDB，
+ * 请求链路不再等待每条消息的单独写入
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.message-write-behind")
+@Data
+public class MessageWriteBehindConfig {
+
+    /**
+     * 是否启用异步批量写入，关闭时每条消息同步写入
+     */
+    private boolean enabled = true;
+
+    /**
+     * 内存队列容量，队列满时写入方阻塞等待
+     */
+    private int queueCapacity = 10000;
+
+    /**
+     * 每批写入的最大条数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 批次从第一条消息入队起最多等待的时间（毫秒）
+     */
+    private long flushIntervalMillis = 50;
+
+    /**
+     * 队列满时写入方最多等待的时间（毫秒），超时后改为同步写入
+     */
+    private long offerTimeoutMillis = 2000;
+
+    /**
+     * 批量写入失败后的重试间隔（毫秒），重试期间消息保留在内存和日志中
+     */
+    private long retryBackoffMillis = 1000;
+
+    /**
+     * 本地追加日志路径，进程崩溃后启动时补写日志中未确认的消息
+     */
+    private String journalPath = "./data/chat-message-journal.log";
+
+    /**
+     * 每条日志是否立即刷盘，关闭时只写入操作系统缓冲（进程崩溃不丢失，机器掉电可能丢失）
+     */
+    private boolean journalFsync = false;
+
+    /**
+     * 日志超过该字节数且仍有未确认的消息时，重写为只包含未确认的消息
+     */
+    private long journalCompactBytes = 64L * 1024 * 1024;
+
+    /**
+     * 停机时等待队列写完的最长时间（毫秒）
+     */
+    private long shutdownTimeoutMillis = 10000;
+}
@@ -1,15 +1,24 @@
 package com.shaneShark.config;
 
+import com.shaneShark.model.entity.BatchJobItem;
+import com.shaneShark.model.entity.ChatMessage;
+import com.shaneShark.model.entity.ChatSession;
+import com.shaneShark.model.entity.ChatSessionArchive;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.index.MongoPersistentEntityIndexResolver;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 
+import java.util.List;
+
 /**
  * MongoDB配置检查类
- * 在应用启动时检查MongoDB连接和集合是否存在
+ * 在应用启动时检查MongoDB连接和集合是否存在，并创建实体上声明的索引（未开启自动建索引）
  *
  * @author Shane
  */
@@ -45,11 +54,25 @@ public class MongoConfig {
                 log.info("集合 chat_messages 已存在");
             }
 
+            ensureIndexes();
+
             log.info("MongoDB配置检查完成");
         } catch (Exception e) {
             log.error("MongoDB连接检查失败: {}", e.getMessage(), e);
             log.error("请检查MongoDB配置和网络连接");
         }
     }
+
+    /**
+     * 按实体上的索引注解创建索引，索引已存在时不会重复创建
+     */
+    private void ensureIndexes() {
+        IndexResolver resolver = new MongoPersistentEntityIndexResolver(mongoTemplate.getConverter().getMappingContext());
+        for (Class<?> entityClass : List.of(ChatSession.class, ChatMessage.class, ChatSessionArchive.class, BatchJobItem.class)) {
+            IndexOperations indexOps = mongoTemplate.indexOps(entityClass);
+            resolver.resolveIndexFor(entityClass).forEach(indexOps::ensureIndex);
+            log.info("索引检查完成: {}", mongoTemplate.getCollectionName(entityClass));
+        }
+    }
 }
 
@@ -0,0 +1,75 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 大模型提示词结果精确缓存配置
+ * 对确定性调用（temperature 为 0、固定提示词的 text2cypher、langchain4j 的 generate）
+ * 按模型 + 消息 + 采样参数的规范化哈希缓存结果
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.prompt-cache")
+@Data
+public class PromptCacheConfig {
+
+    /**
+     * 是否启用精确缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个缓存的内存上限（字节），按键值字符串的近似占用计算
+     */
+    private long maxMemoryBytes = 32 * 1024 * 1024;
+
+    /**
+     * 单个缓存的内存上限覆盖，key 为缓存名称（chat、text2cypher、chat-model）
+     */
+    private Map<String, Long> cacheMaxMemoryBytes = new HashMap<>();
+
+    /**
+     * 条目过期时间（秒）
+     */
+    private long ttlSeconds = 86400;
+
+    /**
+     * 磁盘层配置
+     */
+    private Disk disk = new Disk();
+
+    @Data
+    public static class Disk {
+
+        /**
+         * 是否启用内存映射磁盘层，启用后缓存可在重启后保留
+         */
+        private boolean enabled = false;
+
+        /**
+         * 磁盘层文件路径
+         */
+        private String path = "./data/prompt-cache.dat";
+
+        /**
+         * 磁盘层文件大小（字节），写满后整体清空重新写入
+         */
+        private long maxFileBytes = 256 * 1024 * 1024;
+    }
+
+    /**
+     * 获取指定缓存的内存上限
+     *
+     * @param cacheName 缓存名称
+     * @return 内存上限（字节）
+     */
+    public long resolveMaxMemoryBytes(String cacheName) {
+        return cacheMaxMemoryBytes.getOrDefault(cacheName, maxMemoryBytes);
+    }
+}
@@ -0,0 +1,52 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 大模型语义缓存配置
+ * 使用本地 MiniLM 向量模型对没有历史对话的首轮用户提问做向量化，相似问题直接复用已有答案
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.semantic-cache")
+@Data
+public class SemanticCacheConfig {
+
+    /**
+     * 是否启用语义缓存
+     */
+    private boolean enabled = true;
+
+    /**
+     * 命中所需的最小余弦相似度
+     */
+    private double similarityThreshold = 0.92;
+
+    /**
+     * 每个缓存域（provider + 模型 + 系统提示词）最多保留的条目数
+     */
+    private int maxEntriesPerScope = 2000;
+
+    /**
+     * 条目过期时间（秒）
+     */
+    private long ttlSeconds = 86400;
+
+    /**
+     * 提问少于该字符数时不走缓存（如“继续”“好的”这类依赖上下文的短句）
+     */
+    private int minQueryLength = 6;
+
+    /**
+     * 命中后模拟流式输出时每个数据块的字符数
+     */
+    private int replayChunkChars = 16;
+
+    /**
+     * 命中后模拟流式输出时数据块之间的间隔（毫秒），0 表示不等待
+     */
+    private long replayIntervalMillis = 0;
+}
@@ -0,0 +1,53 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 会话索引配置
+ * 用户最近会话走 (userId, isDelete, updateTime) 复合索引只取一条并缓存，会话列表按游标分页且只返回列表字段，
+ * 消息历史按 (createTime, _id) 键集分页
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.session-index")
+@Data
+public class SessionIndexConfig {
+
+    /**
+     * 最近会话缓存的最大用户数
+     */
+    private long latestCacheSize = 100000;
+
+    /**
+     * 最近会话缓存的过期时间（秒），多实例部署时其他节点的变更最多延迟这么久可见
+     */
+    private long latestCacheTtlSeconds = 60;
+
+    /**
+     * 会话列表默认每页条数
+     */
+    private int defaultPageSize = 20;
+
+    /**
+     * 会话列表每页最大条数
+     */
+    private int maxPageSize = 100;
+
+    /**
+     * 消息历史默认每页条数
+     */
+    private int defaultMessagePageSize = 50;
+
+    /**
+     * 消息历史每页最大条数
+     */
+    private int maxMessagePageSize = 500;
+
+    /**
+     * 会话更新时间的合并窗口（毫秒），窗口内同一会话的多次刷新合并为一次批量写入；小于等于 0 时每次直接写入
+     */
+    private long touchWindowMillis = 500;
+}
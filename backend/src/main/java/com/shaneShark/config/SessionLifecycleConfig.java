@@ -0,0 +1,53 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 会话生命周期配置
+ * 后台任务把已删除超过一定天数（或长期未更新）的会话连同消息压缩后移入归档集合，并从热集合中删除；
+ * 归档保留期满后彻底删除
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.session-lifecycle")
+@Data
+public class SessionLifecycleConfig {
+
+    /**
+     * 是否启用归档任务，多实例部署时只需在一个实例上启用
+     */
+    private boolean enabled = true;
+
+    /**
+     * 执行时间（cron）
+     */
+    private String cron = "0 30 3 * * *";
+
+    /**
+     * 软删除超过该天数的会话被归档，小于 0 表示不归档
+     */
+    private int archiveDeletedAfterDays = 7;
+
+    /**
+     * 超过该天数未更新的会话被归档，小于等于 0 表示不归档未删除的会话
+     */
+    private int archiveStaleAfterDays = 0;
+
+    /**
+     * 归档保留天数，期满后彻底删除，小于等于 0 表示永久保留
+     */
+    private int retentionDays = 365;
+
+    /**
+     * 每批处理的会话数
+     */
+    private int batchSize = 200;
+
+    /**
+     * 单次执行最多归档的会话数
+     */
+    private int maxSessionsPerRun = 10000;
+}
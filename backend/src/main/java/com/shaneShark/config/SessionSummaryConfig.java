@@ -0,0 +1,53 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 长会话滚动摘要配置
+ * 会话中未摘要的历史超过阈值后，在后台线程池中把较早的轮次压缩进会话的滚动摘要，
+ * 之后构建上下文时发送"摘要 + 最近若干轮"而不是完整历史
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.summary")
+@Data
+public class SessionSummaryConfig {
+
+    /**
+     * 是否启用滚动摘要
+     */
+    private boolean enabled = true;
+
+    /**
+     * 未摘要历史的令牌数超过该值时触发摘要
+     */
+    private int triggerTokens = 6000;
+
+    /**
+     * 摘要后按原文保留的最近历史令牌数（按整轮保留）
+     */
+    private int keepRecentTokens = 2000;
+
+    /**
+     * 摘要的最大令牌数
+     */
+    private int maxSummaryTokens = 800;
+
+    /**
+     * 摘要线程池核心线程数
+     */
+    private int corePoolSize = 1;
+
+    /**
+     * 摘要线程池最大线程数
+     */
+    private int maxPoolSize = 2;
+
+    /**
+     * 摘要任务队列容量，队列满时丢弃新任务，下一轮对话会再次触发
+     */
+    private int queueCapacity = 100;
+}
@@ -1,23 +1,19 @@
 package com.shaneShark.config;
 
 import lombok.Data;
-import okhttp3.OkHttpClient;
 import org.springframework.boot.context.properties.ConfigurationProperties;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
-import java.util.concurrent.TimeUnit;
-
 /**
  * 硅基流动 AI 配置类
- * 用于管理硅基流动 API 的相关配置和 HTTP 客户端
+ * 用于管理硅基流动 API 的相关配置，HTTP 客户端由 LlmTransport 统一创建
  *
  * @author Shane
  */
 @Configuration
 @ConfigurationProperties(prefix = "silicon-flow")
 @Data
-public class SiliconFlowConfig {
+public class SiliconFlowConfig implements LlmProviderProperties {
 
     /**
      * API密钥
@@ -38,30 +34,4 @@ public class SiliconFlowConfig {
      * 请求超时时间（毫秒）
      */
     private int timeout = 30000;
-
-    /**
-     * 创建并配置 OkHttp 客户端
-     *
-     * @return 配置好的 OkHttpClient 实例
-     */
-    @Bean
-    public OkHttpClient okHttpClient() {
-        return new OkHttpClient.Builder()
-                .connectTimeout(timeout, TimeUnit.MILLISECONDS)
-                .readTimeout(timeout, TimeUnit.MILLISECONDS)
-                .writeTimeout(timeout, TimeUnit.MILLISECONDS)
-                .build();
-    }
 }
-
-
-
-
-
-
-
-
-
-
-
-
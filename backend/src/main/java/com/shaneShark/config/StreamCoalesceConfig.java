@@ -0,0 +1,32 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式输出合帧配置
+ * 在时间窗口内把上游的多个增量合并成一帧再写给客户端，减少系统调用、序列化次数和前端重绘
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.stream-coalesce")
+@Data
+public class StreamCoalesceConfig {
+
+    /**
+     * 是否启用合帧，关闭时每个上游数据块单独发送
+     */
+    private boolean enabled = true;
+
+    /**
+     * 合帧窗口（毫秒），从窗口内第一个增量到达时开始计时，建议 16~50
+     */
+    private long windowMillis = 30;
+
+    /**
+     * 窗口内累积的增量达到该字节数时立即发送
+     */
+    private int maxBytes = 2048;
+}
@@ -0,0 +1,37 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 流式聊天断线续传配置
+ * 服务端按会话 + 请求ID缓冲生成中的数据块，客户端携带 Last-Event-ID 重连时从缓冲续传，不重新调用上游
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.stream-resume")
+@Data
+public class StreamResumeConfig {
+
+    /**
+     * 是否启用断线续传缓冲
+     */
+    private boolean enabled = true;
+
+    /**
+     * 缓冲保留时间（秒），从生成结束（或开始）时算起
+     */
+    private long ttlSeconds = 600;
+
+    /**
+     * 单个流的缓冲上限（字节），超过后该流不再支持续传
+     */
+    private long maxStreamBytes = 512 * 1024;
+
+    /**
+     * 全部缓冲的内存上限（字节），超过时淘汰最久未使用的流
+     */
+    private long maxMemoryBytes = 64 * 1024 * 1024;
+}
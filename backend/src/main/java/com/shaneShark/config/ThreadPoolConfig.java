@@ -4,6 +4,7 @@ import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
 
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -42,6 +43,55 @@ public class ThreadPoolConfig {
                 new ThreadPoolExecutor.CallerRunsPolicy()
         );
     }
+
+    /**
+     * 流式聊天生成线程池
+     * SseEmitter 接口在请求线程返回后才开始向客户端发送数据，生成必须在独立线程上执行；
+     * 每个任务占用一个线程直到回答结束，满载时拒绝（由接口返回繁忙），不能退回请求线程执行
+     *
+     * @return 线程池
+     */
+    @Bean("streamChatExecutor")
+    public ExecutorService streamChatExecutor() {
+        int corePoolSize = Runtime.getRuntime().availableProcessors() * 2;
+        return new ThreadPoolExecutor(
+                corePoolSize,
+                Math.max(corePoolSize, 200),
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(100),
+                r -> {
+                    Thread thread = new Thread(r, "stream-chat-" + System.currentTimeMillis());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
+
+    /**
+     * 会话摘要线程池
+     * 摘要在请求链路之外执行，队列满时拒绝（由提交方丢弃该任务），不能退回调用线程执行
+     *
+     * @param sessionSummaryConfig 摘要配置
+     * @return 线程池
+     */
+    @Bean("summaryExecutor")
+    public ExecutorService summaryExecutor(SessionSummaryConfig sessionSummaryConfig) {
+        return new ThreadPoolExecutor(
+                sessionSummaryConfig.getCorePoolSize(),
+                Math.max(sessionSummaryConfig.getCorePoolSize(), sessionSummaryConfig.getMaxPoolSize()),
+                60L,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(sessionSummaryConfig.getQueueCapacity()),
+                r -> {
+                    Thread thread = new Thread(r, "session-summary-" + System.currentTimeMillis());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy()
+        );
+    }
 }
 
 
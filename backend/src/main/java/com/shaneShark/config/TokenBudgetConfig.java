@@ -0,0 +1,47 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 大模型令牌额度限流配置
+ * 按用户和按服务提供方分别维护令牌桶：请求前按估算的提示词令牌数预扣，响应结束后按实际用量对账
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.token-budget")
+@Data
+public class TokenBudgetConfig {
+
+    /**
+     * 是否启用令牌额度限流
+     */
+    private boolean enabled = true;
+
+    /**
+     * 存储后端：memory（进程内）或 redis（多实例共享，需在 MainApplication 中移除 RedisAutoConfiguration 的排除）
+     */
+    private String backend = "memory";
+
+    /**
+     * 单个用户的桶容量（令牌数）
+     */
+    private long userCapacity = 200000;
+
+    /**
+     * 单个用户每分钟补充的令牌数
+     */
+    private long userRefillPerMinute = 20000;
+
+    /**
+     * 单个服务提供方的桶容量（令牌数），应与上游账号的额度匹配
+     */
+    private long providerCapacity = 2000000;
+
+    /**
+     * 单个服务提供方每分钟补充的令牌数
+     */
+    private long providerRefillPerMinute = 300000;
+}
@@ -0,0 +1,58 @@
+package com.shaneShark.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * 启动预热配置
+ * 应用就绪前预先建立到各大模型服务提供方、MinIO 和 MongoDB 的连接（DNS、TCP、TLS），
+ * 预热完成（或超时）后 readiness 才会通过，首个请求不再承担建连耗时
+ *
+ * @author Shane
+ */
+@Configuration
+@ConfigurationProperties(prefix = "llm.warmup")
+@Data
+public class WarmupConfig {
+
+    /**
+     * 是否启用启动预热
+     */
+    private boolean enabled = true;
+
+    /**
+     * 每个服务提供方预先建立的连接数（HTTP/2 下多个请求复用同一连接）
+     */
+    private int connectionsPerProvider = 2;
+
+    /**
+     * 预先建立的 MongoDB 连接数
+     */
+    private int mongoConnections = 4;
+
+    /**
+     * 是否预热 MinIO
+     */
+    private boolean minioEnabled = true;
+
+    /**
+     * 单个预热请求的超时时间（毫秒）
+     */
+    private long requestTimeoutMillis = 5000;
+
+    /**
+     * 整个预热阶段的超时时间（毫秒），超时后不再等待，应用照常就绪
+     */
+    private long totalTimeoutMillis = 15000;
+
+    /**
+     * 是否定时保活（空闲时定期访问一次，避免连接被连接池或对端回收）
+     */
+    private boolean keepAliveEnabled = false;
+
+    /**
+     * 保活间隔（秒），应小于连接池的空闲回收时间
+     */
+    private long keepAliveIntervalSeconds = 240;
+}
@@ -0,0 +1,107 @@
+package com.shaneShark.controller;
+
+import com.shaneShark.common.BaseResponse;
+import com.shaneShark.common.ResultUtils;
+import com.shaneShark.model.dto.batch.BatchJobCreateRequest;
+import com.shaneShark.model.entity.BatchJob;
+import com.shaneShark.service.BatchJobService;
+import com.shaneShark.service.QaAdminAuthService;
+import jakarta.annotation.Resource;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.List;
+
+/**
+ * 离线批量补全任务接口（管理端）
+ * 上传 JSONL 提示词文件创建任务，查询进度，取消 / 恢复任务，以 JSONL 流式下载结果
+ *
+ * @author Shane
+ */
+@RestController
+@RequestMapping("/qa/admin/batch")
+@Slf4j
+public class BatchJobController {
+
+    private static final MediaType JSONL = MediaType.parseMediaType("application/x-ndjson;charset=UTF-8");
+
+    @Resource
+    private BatchJobService batchJobService;
+
+    @Resource
+    private QaAdminAuthService qaAdminAuthService;
+
+    /**
+     * 创建批量任务
+     *
+     * @param file          JSONL 提示词文件，每行形如 {"id":"...","prompt":"...","qaId":123}
+     * @param createRequest 任务参数
+     * @param request       Http 请求
+     * @return 任务
+     */
+    @PostMapping("/jobs")
+    public BaseResponse<BatchJob> createJob(@RequestPart("file") MultipartFile file,
+                                            BatchJobCreateRequest createRequest, HttpServletRequest request) {
+        qaAdminAuthService.ensureAdmin(request);
+        return ResultUtils.success(batchJobService.createJob(createRequest, file));
+    }
+
+    @GetMapping("/jobs")
+    public BaseResponse<List<BatchJob>> listJobs(HttpServletRequest request) {
+        qaAdminAuthService.ensureAdmin(request);
+        return ResultUtils.success(batchJobService.listJobs());
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public BaseResponse<BatchJob> getJob(@PathVariable String jobId, HttpServletRequest request) {
+        qaAdminAuthService.ensureAdmin(request);
+        return ResultUtils.success(batchJobService.getJob(jobId));
+    }
+
+    @PostMapping("/jobs/{jobId}/cancel")
+    public BaseResponse<BatchJob> cancelJob(@PathVariable String jobId, HttpServletRequest request) {
+        qaAdminAuthService.ensureAdmin(request);
+        return ResultUtils.success(batchJobService.cancelJob(jobId));
+    }
+
+    /**
+     * 恢复任务
+     *
+     * @param jobId       任务ID
+     * @param retryFailed 是否同时重新执行失败的条目
+     * @param request     Http 请求
+     * @return 任务
+     */
+    @PostMapping("/jobs/{jobId}/resume")
+    public BaseResponse<BatchJob> resumeJob(@PathVariable String jobId,
+                                            @RequestParam(defaultValue = "false") boolean retryFailed,
+                                            HttpServletRequest request) {
+        qaAdminAuthService.ensureAdmin(request);
+        return ResultUtils.success(batchJobService.resumeJob(jobId, retryFailed));
+    }
+
+    /**
+     * 按行号顺序流式下载已完成条目的结果（JSONL），任务运行中也可下载当前进度
+     *
+     * @param jobId   任务ID
+     * @param request Http 请求
+     * @return JSONL 响应
+     */
+    @GetMapping("/jobs/{jobId}/results")
+    public ResponseEntity<StreamingResponseBody> downloadResults(@PathVariable String jobId,
+                                                                 HttpServletRequest request) {
+        qaAdminAuthService.ensureAdmin(request);
+        BatchJob job = batchJobService.getJob(jobId);
+        StreamingResponseBody body = outputStream -> batchJobService.writeResults(job.getId(), outputStream);
+        return ResponseEntity.ok()
+                .contentType(JSONL)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"batch-" + job.getId() + ".jsonl\"")
+                .body(body);
+    }
+}
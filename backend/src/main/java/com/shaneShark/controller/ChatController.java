@@ -2,23 +2,30 @@ package com.shaneShark.controller;
 
 import com.shaneShark.common.BaseResponse;
 import com.shaneShark.common.ResultUtils;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.manager.llm.StreamCoalescer;
+import com.shaneShark.manager.llm.StreamResumeBuffer;
+import com.shaneShark.model.dto.chat.ChatMessagePageRequest;
 import com.shaneShark.model.dto.chat.ChatRequest;
 import com.shaneShark.model.dto.chat.ChatSessionRequest;
 import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
 import com.shaneShark.model.entity.User;
 import com.shaneShark.model.vo.ChatMessageVO;
+import com.shaneShark.model.vo.ChatSessionPageVO;
 import com.shaneShark.model.vo.ChatSessionVO;
 import com.shaneShark.service.ChatService;
 import com.shaneShark.service.UserService;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
@@ -27,10 +34,17 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import reactor.core.Disposable;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 /**
  * 聊天控制器
@@ -49,69 +63,213 @@ public class ChatController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private StreamResumeBuffer streamResumeBuffer;
+
+    @Resource
+    private StreamCoalescer streamCoalescer;
+
+    @Resource(name = "streamChatExecutor")
+    private ExecutorService streamChatExecutor;
+
     private final ObjectMapper objectMapper = new ObjectMapper();
 
     /**
      * 流式聊天接口
-     * 使用Server-Sent Events (SSE) 实现流式输出
+     * 使用Server-Sent Events (SSE) 实现流式输出，事件 ID 为 "请求ID:序号"。
+     * 客户端断线后生成继续进行并在服务端缓冲，重连时携带 Last-Event-ID 和原请求体即可续传，不会重新调用AI服务。
+     * 上游增量按时间窗口合帧后发送；compact=true 时每帧只包含 c（正文）、r（推理）、f（结束原因）三个字段
      *
      * @param chatRequest 聊天请求对象
+     * @param lastEventId 断线重连时客户端收到的最后一个事件 ID
+     * @param compact     是否使用精简帧格式
      * @return SseEmitter 用于发送流式数据
      */
     @PostMapping("/completions/stream")
-    public SseEmitter streamChat(@RequestBody ChatRequest chatRequest) {
+    public SseEmitter streamChat(@RequestBody ChatRequest chatRequest,
+                                 @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                 @RequestParam(required = false, defaultValue = "false") boolean compact) {
         // 确保使用流式模式
         chatRequest.setStream(true);
 
         // 创建SseEmitter，设置超时时间为5分钟
         SseEmitter emitter = new SseEmitter(300000L);
-
-        // 执行流式聊天
-        chatService.streamChat(chatRequest, streamResponse -> {
-            try {
-                // 构建SSE格式的数据
-                String data = "data: " + objectMapper.writeValueAsString(streamResponse) + "\n\n";
-
-                // 发送数据
-                emitter.send(SseEmitter.event()
-                        .data(data)
-                        .name("message"));
-
-                log.debug("发送流式数据块: {}", streamResponse.getDeltaContent());
-
-                // 如果流结束，关闭连接
-                if (streamResponse.isFinished()) {
-                    // 发送结束标记
-                    emitter.send(SseEmitter.event()
-                            .data("data: [DONE]\n\n")
-                            .name("done"));
-                    emitter.complete();
-                    log.debug("流式响应完成");
-                }
-            } catch (IOException e) {
-                log.error("发送流式数据失败", e);
-                emitter.completeWithError(e);
-            }
-        });
+        // 客户端断开、超时或连接出错后不再发送，生成继续写入缓冲以便续传
+        AtomicBoolean clientGone = new AtomicBoolean(false);
 
         // 设置错误处理和超时处理
         emitter.onError(throwable -> {
             log.error("SseEmitter发生错误", throwable);
+            clientGone.set(true);
             emitter.completeWithError(throwable);
         });
 
         emitter.onTimeout(() -> {
             log.warn("SseEmitter超时");
+            clientGone.set(true);
             emitter.complete();
         });
 
+        // 断线重连：从服务端缓冲续传
+        if (StringUtils.isNotBlank(lastEventId)) {
+            resumeStreamChat(chatRequest, lastEventId, emitter, compact);
+            return emitter;
+        }
+
         emitter.onCompletion(() -> {
             log.debug("SseEmitter完成");
+            clientGone.set(true);
         });
 
+        if (StringUtils.isBlank(chatRequest.getRequestId())) {
+            chatRequest.setRequestId(UUID.randomUUID().toString());
+        }
+        String requestId = chatRequest.getRequestId();
+        StreamResumeBuffer.ResumableStream buffer = streamResumeBuffer.open(chatRequest.getSessionId(), requestId,
+                chatRequest.getUserId());
+
+        // 合帧后的数据块写入缓冲并发送，续传时也按合并后的数据块重放
+        StreamCoalescer.Session coalescer = streamCoalescer.wrap(streamResponse -> {
+            long seq = streamResumeBuffer.append(buffer, streamResponse);
+            if (clientGone.get()) {
+                return;
+            }
+            try {
+                sendStreamChunk(emitter, StreamResumeBuffer.eventId(requestId, seq), streamResponse, compact);
+            } catch (IOException | IllegalStateException e) {
+                log.warn("客户端已断开，继续生成以便续传: requestId={}, seq={}", requestId, seq);
+                clientGone.set(true);
+                emitter.completeWithError(e);
+            }
+        });
+
+        // SseEmitter 在本方法返回后才开始向客户端写出，生成放到独立线程执行，数据块产生后即时发送；
+        // 客户端断开后继续生成并写入缓冲，保证回答完整保存且可续传
+        try {
+            streamChatExecutor.execute(() -> generateStreamChat(chatRequest, coalescer, buffer, emitter, clientGone));
+        } catch (RejectedExecutionException e) {
+            log.warn("流式聊天线程池已满，拒绝请求: requestId={}", requestId);
+            streamResumeBuffer.fail(buffer, e);
+            sendErrorAndComplete(emitter, "服务繁忙，请稍后重试");
+        }
+
         return emitter;
     }
 
+    /**
+     * 执行流式聊天并在结束后标记缓冲完成，出错时向仍在线的客户端发送错误事件
+     */
+    private void generateStreamChat(ChatRequest chatRequest, StreamCoalescer.Session coalescer,
+                                    StreamResumeBuffer.ResumableStream buffer, SseEmitter emitter,
+                                    AtomicBoolean clientGone) {
+        try {
+            chatService.streamChat(chatRequest, coalescer);
+            coalescer.flush();
+            streamResumeBuffer.complete(buffer);
+        } catch (RuntimeException e) {
+            log.error("流式聊天失败: requestId={}", chatRequest.getRequestId(), e);
+            coalescer.flush();
+            streamResumeBuffer.fail(buffer, e);
+            if (!clientGone.get()) {
+                sendErrorAndComplete(emitter, e instanceof BusinessException ? e.getMessage() : "AI服务调用异常");
+            }
+        }
+    }
+
+    /**
+     * 从服务端缓冲续传流式响应，生成仍在进行时继续跟随后续数据块
+     */
+    private void resumeStreamChat(ChatRequest chatRequest, String lastEventId, SseEmitter emitter, boolean compact) {
+        AtomicBoolean finished = new AtomicBoolean(false);
+        Disposable subscription = streamResumeBuffer.resume(chatRequest.getSessionId(), lastEventId, chatRequest.getUserId())
+                .subscribe(bufferedChunk -> {
+                    String eventId = StreamResumeBuffer.eventId(
+                            StringUtils.substringBeforeLast(lastEventId, ":"), bufferedChunk.getSeq());
+                    try {
+                        finished.set(bufferedChunk.getChunk().isFinished());
+                        sendStreamChunk(emitter, eventId, bufferedChunk.getChunk(), compact);
+                    } catch (IOException | IllegalStateException e) {
+                        log.warn("续传时客户端再次断开: lastEventId={}", lastEventId);
+                        throw Exceptions.propagate(e);
+                    }
+                }, error -> {
+                    log.warn("续传流式响应失败: lastEventId={}, {}", lastEventId, error.getMessage());
+                    sendErrorAndComplete(emitter, error.getMessage());
+                }, () -> {
+                    // 最后一个数据块带结束标记时已经关闭连接
+                    if (finished.get()) {
+                        return;
+                    }
+                    try {
+                        emitter.send(SseEmitter.event()
+                                .data("data: [DONE]\n\n")
+                                .name("done"));
+                    } catch (IOException | IllegalStateException ignored) {
+                    }
+                    emitter.complete();
+                });
+        emitter.onCompletion(subscription::dispose);
+    }
+
+    /**
+     * 发送一个数据块，流结束时发送结束标记并关闭连接
+     */
+    private void sendStreamChunk(SseEmitter emitter, String eventId, StreamChatResponse streamResponse,
+                                 boolean compact) throws IOException {
+        // 构建SSE格式的数据，精简格式直接作为事件数据，不再嵌套 "data: " 前缀
+        String data = compact
+                ? objectMapper.writeValueAsString(compactFrame(streamResponse))
+                : "data: " + objectMapper.writeValueAsString(streamResponse) + "\n\n";
+
+        // 发送数据
+        emitter.send(SseEmitter.event()
+                .id(eventId)
+                .data(data)
+                .name("message"));
+
+        log.debug("发送流式数据块: {}", streamResponse.getDeltaContent());
+
+        // 如果流结束，关闭连接
+        if (streamResponse.isFinished()) {
+            // 发送结束标记
+            emitter.send(SseEmitter.event()
+                    .data("data: [DONE]\n\n")
+                    .name("done"));
+            emitter.complete();
+            log.debug("流式响应完成");
+        }
+    }
+
+    /**
+     * 精简帧：只保留非空的正文、推理内容和结束原因
+     */
+    private Map<String, String> compactFrame(StreamChatResponse streamResponse) {
+        Map<String, String> frame = new LinkedHashMap<>(4);
+        String content = streamResponse.getDeltaContent();
+        if (StringUtils.isNotEmpty(content)) {
+            frame.put("c", content);
+        }
+        String reasoning = streamResponse.getDeltaReasoningContent();
+        if (StringUtils.isNotEmpty(reasoning)) {
+            frame.put("r", reasoning);
+        }
+        if (streamResponse.getChoices() != null && streamResponse.getChoices().length > 0
+                && streamResponse.getChoices()[0].getFinishReason() != null) {
+            frame.put("f", streamResponse.getChoices()[0].getFinishReason());
+        }
+        return frame;
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event()
+                    .data(message)
+                    .name("error"));
+        } catch (IOException | IllegalStateException ignored) {
+        }
+        emitter.complete();
+    }
+
     /**
      * 基于WebFlux的流式接口
      * 返回Flux<String>，由浏览器原生EventSource或任意支持SSE的客户端消费
@@ -162,26 +320,25 @@ public class ChatController {
         }
         chatRequest.setMessages(messages);
 
-        // 将回调式API桥接为Flux
-        return Flux.<String>create(sink -> {
-            // 将阻塞的下游调用放到弹性线程池，避免占用 Netty 事件循环导致“看起来阻塞”
-            Schedulers.boundedElastic().schedule(() -> {
-                chatService.streamChat(chatRequest, streamResponse -> {
-                    if (sink.isCancelled()) {
-                        return;
-                    }
+        // 响应式调用链：上游 SSE 由异步 I/O 读取，不再为每个流占用一个弹性线程
+        return chatService.streamChatFlux(chatRequest)
+                .transform(streamCoalescer::coalesce)
+                .takeUntil(StreamChatResponse::isFinished)
+                .concatMapIterable(streamResponse -> {
+                    List<String> frames = new ArrayList<>(2);
                     String delta = streamResponse.getDeltaContent();
                     if (StringUtils.isNotEmpty(delta)) {
-                        String encoded = delta.replace(" ", "&#32;").replace("\n", "&#92n");
-                        sink.next(encoded);
+                        frames.add(delta.replace(" ", "&#32;").replace("\n", "&#92n"));
                     }
                     if (streamResponse.isFinished()) {
-                        sink.next("[DONE]");
-                        sink.complete();
+                        frames.add("[DONE]");
                     }
+                    return frames;
+                })
+                .onErrorResume(e -> {
+                    log.error("流式聊天失败", e);
+                    return Flux.just("AI服务调用异常: " + e.getMessage());
                 });
-            });
-        }).publishOn(Schedulers.boundedElastic());
     }
 
     @Nullable
@@ -235,45 +392,35 @@ public class ChatController {
             chatRequest.setMessages(messages);
         }
 
-        // 将回调式API桥接为Flux
-        return Flux.<ServerSentEvent<String>>create(sink -> {
-            // 弹性线程池
-            Schedulers.boundedElastic().schedule(() -> {
-                chatService.streamChat(chatRequest, streamResponse -> {
-                    if (sink.isCancelled()) {
-                        return;
-                    }
+        // 响应式调用链：上游 SSE 由异步 I/O 读取，不再为每个流占用一个弹性线程
+        return chatService.streamChatFlux(chatRequest)
+                .transform(streamCoalescer::coalesce)
+                .takeUntil(StreamChatResponse::isFinished)
+                .concatMapIterable(streamResponse -> {
+                    List<ServerSentEvent<String>> events = new ArrayList<>(3);
 
                     // 1. 深度思考内容，推送 thinking 事件
-                    try {
-                        JsonNode root = objectMapper.valueToTree(streamResponse);
-                        JsonNode choices = root.get("choices");
-                        if (choices != null && choices.isArray() && choices.size() > 0) {
-                            JsonNode delta = choices.get(0).path("delta");
-                            if (delta != null && delta.has("reasoning_content")) {
-                                String reasoning = delta.get("reasoning_content").asText(null);
-                                if (StringUtils.isNotEmpty(reasoning)) {
-                                    String encodedThinking = reasoning.replace(" ", "&#32;").replace("\n", "&#92n");
-                                    sink.next(ServerSentEvent.builder(encodedThinking).event("thinking").build());
-                                }
-                            }
-                        }
-                    } catch (Exception ignored) {
+                    String reasoning = streamResponse.getDeltaReasoningContent();
+                    if (StringUtils.isNotEmpty(reasoning)) {
+                        String encodedThinking = reasoning.replace(" ", "&#32;").replace("\n", "&#92n");
+                        events.add(ServerSentEvent.builder(encodedThinking).event("thinking").build());
                     }
 
                     // 2. 普通消息内容，推送 message 事件
                     String delta = streamResponse.getDeltaContent();
                     if (StringUtils.isNotEmpty(delta)) {
                         String encoded = delta.replace(" ", "&#32;").replace("\n", "&#92n");
-                        sink.next(ServerSentEvent.builder(encoded).event("message").build());
+                        events.add(ServerSentEvent.builder(encoded).event("message").build());
                     }
                     if (streamResponse.isFinished()) {
-                        sink.next(ServerSentEvent.builder("[DONE]").event("done").build());
-                        sink.complete();
+                        events.add(ServerSentEvent.builder("[DONE]").event("done").build());
                     }
+                    return events;
+                })
+                .onErrorResume(e -> {
+                    log.error("流式聊天失败", e);
+                    return Flux.just(ServerSentEvent.builder("AI服务调用异常: " + e.getMessage()).event("error").build());
                 });
-            });
-        }).publishOn(Schedulers.boundedElastic());
     }
 
     /**
@@ -300,6 +447,21 @@ public class ChatController {
         return ResultUtils.success(sessions);
     }
 
+    /**
+     * 按游标分页获取用户的会话列表，按更新时间倒序
+     *
+     * @param userId   用户ID
+     * @param cursor   上一页返回的 nextCursor，第一页不传
+     * @param pageSize 每页条数
+     * @return 会话分页结果
+     */
+    @GetMapping("/sessions/page")
+    public BaseResponse<ChatSessionPageVO> getSessionPage(@RequestParam Long userId,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer pageSize) {
+        return ResultUtils.success(chatService.getSessionPage(userId, cursor, pageSize));
+    }
+
     /**
      * 获取会话的消息列表
      *
@@ -315,6 +477,24 @@ public class ChatController {
         return ResultUtils.success(messages);
     }
 
+    /**
+     * 按键集分页获取会话消息，响应体为流式写出的 JSON 数组
+     * 不传游标时返回最新一页（按时间倒序），用本页最后一条的 id 作为 beforeId 继续向前翻页；
+     * 传 afterId 时按时间正序返回该消息之后的消息。fields 可只取需要的字段，例如省略 imageUrls、videoUrls
+     *
+     * @param sessionId   会话ID
+     * @param userId      用户ID
+     * @param pageRequest 分页请求
+     * @return 消息 JSON 数组
+     */
+    @GetMapping("/sessions/{sessionId}/messages/page")
+    public ResponseEntity<StreamingResponseBody> getMessagePage(@PathVariable String sessionId,
+                                                                @RequestParam Long userId,
+                                                                ChatMessagePageRequest pageRequest) {
+        StreamingResponseBody body = chatService.getMessagePage(sessionId, userId, pageRequest);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     /**
      * 删除会话（软删除）
      *
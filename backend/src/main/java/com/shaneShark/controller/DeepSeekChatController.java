@@ -2,12 +2,16 @@ package com.shaneShark.controller;
 
 import com.shaneShark.common.BaseResponse;
 import com.shaneShark.common.ResultUtils;
+import com.shaneShark.manager.llm.StreamCoalescer;
+import com.shaneShark.model.dto.chat.ChatMessagePageRequest;
 import com.shaneShark.model.dto.chat.ChatRequest;
 import com.shaneShark.model.dto.chat.ChatResponse;
 import com.shaneShark.model.dto.chat.ChatSessionRequest;
 import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
 import com.shaneShark.model.entity.User;
 import com.shaneShark.model.vo.ChatMessageVO;
+import com.shaneShark.model.vo.ChatSessionPageVO;
 import com.shaneShark.model.vo.ChatSessionVO;
 import com.shaneShark.service.ChatService;
 import com.shaneShark.service.UserService;
@@ -15,8 +19,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.Nullable;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import jakarta.annotation.Resource;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,7 +32,6 @@ import java.util.HashMap;
 import java.util.List;
 
 import reactor.core.publisher.Flux;
-import reactor.core.scheduler.Schedulers;
 
 /**
  * DeepSeek聊天控制器
@@ -45,6 +50,9 @@ public class DeepSeekChatController {
     @Resource
     private UserService userService;
 
+    @Resource
+    private StreamCoalescer streamCoalescer;
+
     /**
      * 基于WebFlux的流式接口
      */
@@ -93,24 +101,25 @@ public class DeepSeekChatController {
         }
         chatRequest.setMessages(messages);
 
-        return Flux.<String>create(sink -> {
-            Schedulers.boundedElastic().schedule(() -> {
-                deepSeekChatService.streamChat(chatRequest, streamResponse -> {
-                    if (sink.isCancelled()) {
-                        return;
-                    }
+        // 响应式调用链：上游 SSE 由异步 I/O 读取，不再为每个流占用一个弹性线程
+        return deepSeekChatService.streamChatFlux(chatRequest)
+                .transform(streamCoalescer::coalesce)
+                .takeUntil(StreamChatResponse::isFinished)
+                .concatMapIterable(streamResponse -> {
+                    List<String> frames = new ArrayList<>(2);
                     String delta = streamResponse.getDeltaContent();
                     if (StringUtils.isNotEmpty(delta)) {
-                        String encoded = delta.replace(" ", "&#32;").replace("\n", "&#92n");
-                        sink.next(encoded);
+                        frames.add(delta.replace(" ", "&#32;").replace("\n", "&#92n"));
                     }
                     if (streamResponse.isFinished()) {
-                        sink.next("[DONE]");
-                        sink.complete();
+                        frames.add("[DONE]");
                     }
+                    return frames;
+                })
+                .onErrorResume(e -> {
+                    log.error("流式聊天失败", e);
+                    return Flux.just("AI服务调用异常: " + e.getMessage());
                 });
-            });
-        }).publishOn(Schedulers.boundedElastic());
     }
 
     /**
@@ -142,24 +151,26 @@ public class DeepSeekChatController {
             chatRequest.setMessages(messages);
         }
 
-        return Flux.<ServerSentEvent<String>>create(sink -> {
-            Schedulers.boundedElastic().schedule(() -> {
-                deepSeekChatService.streamChat(chatRequest, streamResponse -> {
-                    if (sink.isCancelled()) {
-                        return;
-                    }
+        // 响应式调用链：上游 SSE 由异步 I/O 读取，不再为每个流占用一个弹性线程
+        return deepSeekChatService.streamChatFlux(chatRequest)
+                .transform(streamCoalescer::coalesce)
+                .takeUntil(StreamChatResponse::isFinished)
+                .concatMapIterable(streamResponse -> {
+                    List<ServerSentEvent<String>> events = new ArrayList<>(2);
                     String delta = streamResponse.getDeltaContent();
                     if (StringUtils.isNotEmpty(delta)) {
                         String encoded = delta.replace(" ", "&#32;").replace("\n", "&#92n");
-                        sink.next(ServerSentEvent.builder(encoded).event("message").build());
+                        events.add(ServerSentEvent.builder(encoded).event("message").build());
                     }
                     if (streamResponse.isFinished()) {
-                        sink.next(ServerSentEvent.builder("[DONE]").event("done").build());
-                        sink.complete();
+                        events.add(ServerSentEvent.builder("[DONE]").event("done").build());
                     }
+                    return events;
+                })
+                .onErrorResume(e -> {
+                    log.error("流式聊天失败", e);
+                    return Flux.just(ServerSentEvent.builder("AI服务调用异常: " + e.getMessage()).event("error").build());
                 });
-            });
-        }).publishOn(Schedulers.boundedElastic());
     }
 
     /**
@@ -213,6 +224,16 @@ public class DeepSeekChatController {
         return ResultUtils.success(sessions);
     }
 
+    /**
+     * 按游标分页获取用户的会话列表
+     */
+    @GetMapping("/sessions/page")
+    public BaseResponse<ChatSessionPageVO> getSessionPage(@RequestParam Long userId,
+                                                          @RequestParam(required = false) String cursor,
+                                                          @RequestParam(required = false) Integer pageSize) {
+        return ResultUtils.success(deepSeekChatService.getSessionPage(userId, cursor, pageSize));
+    }
+
     /**
      * 获取会话的消息列表
      */
@@ -224,6 +245,17 @@ public class DeepSeekChatController {
         return ResultUtils.success(messages);
     }
 
+    /**
+     * 按键集分页获取会话消息，响应体为流式写出的 JSON 数组
+     */
+    @GetMapping("/sessions/{sessionId}/messages/page")
+    public ResponseEntity<StreamingResponseBody> getMessagePage(@PathVariable String sessionId,
+                                                                @RequestParam Long userId,
+                                                                ChatMessagePageRequest pageRequest) {
+        StreamingResponseBody body = deepSeekChatService.getMessagePage(sessionId, userId, pageRequest);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
     /**
      * 删除会话（软删除）
      */
@@ -2,6 +2,7 @@ package com.shaneShark.controller;
 
 import com.shaneShark.common.BaseResponse;
 import com.shaneShark.common.ResultUtils;
+import com.shaneShark.manager.llm.PromptResultCache;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.mcp.SyncMcpToolCallbackProvider;
@@ -25,13 +26,16 @@ public class McpText2CypherController {
 
     private final ChatClient text2CypherClient;
     private final SyncMcpToolCallbackProvider mcpProvider;
+    private final PromptResultCache promptResultCache;
 
     public McpText2CypherController(ChatClient.Builder builder,
-                                    SyncMcpToolCallbackProvider provider) {
+                                    SyncMcpToolCallbackProvider provider,
+                                    PromptResultCache promptResultCache) {
         this.text2CypherClient = builder
                 .defaultToolCallbacks(provider.getToolCallbacks())
                 .build();
         this.mcpProvider = provider;
+        this.promptResultCache = promptResultCache;
     }
 
     /**
@@ -80,6 +84,13 @@ public class McpText2CypherController {
                 如果工具调用失败，请总结失败原因，不要凭空编造答案。
                 """.formatted(question);
 
+        // 提示词固定，同一个问题直接复用缓存结果
+        String cacheKey = promptResultCache.key(PromptResultCache.TEXT2CYPHER, cypherPrompt);
+        String cachedAnswer = promptResultCache.get(PromptResultCache.TEXT2CYPHER, cacheKey);
+        if (cachedAnswer != null) {
+            return ResultUtils.success(cachedAnswer);
+        }
+
         var options = OpenAiChatOptions.builder()
                 .toolChoice("required")
                 .build();
@@ -89,6 +100,7 @@ public class McpText2CypherController {
                 .options(options)
                 .call()
                 .content();
+        promptResultCache.put(PromptResultCache.TEXT2CYPHER, cacheKey, cypherAnswer);
 
         return ResultUtils.success(cypherAnswer);
     }
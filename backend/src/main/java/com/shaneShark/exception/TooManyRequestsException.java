@@ -0,0 +1,26 @@
+package com.shaneShark.exception;
+
+import com.shaneShark.common.ErrorCode;
+
+/**
+ * 限流/熔断快速失败异常
+ * 携带建议的重试等待时间，由全局异常处理器写入 Retry-After 响应头
+ *
+ * @author Shane
+ */
+public class TooManyRequestsException extends BusinessException {
+
+    /**
+     * 建议的重试等待时间（秒）
+     */
+    private final long retryAfterSeconds;
+
+    public TooManyRequestsException(String message, long retryAfterSeconds) {
+        super(ErrorCode.TOO_MANY_REQUEST, message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+}
@@ -0,0 +1,345 @@
+package com.shaneShark.manager;
+
+import com.shaneShark.config.LlmProviderProperties;
+import com.shaneShark.manager.llm.ChatRequestBodyWriter;
+import com.shaneShark.manager.llm.LlmMetrics;
+import com.shaneShark.manager.llm.LlmTransport;
+import com.shaneShark.manager.llm.ProviderGuard;
+import com.shaneShark.manager.llm.SseStreamDecoder;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.*;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.reactive.function.BodyInserter;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import jakarta.annotation.Resource;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * OpenAI 兼容大模型管理器的公共实现
+ * 负责与服务提供方 API 通信，支持流式和非流式两种模式，统一套用熔断限流、指标和请求体写入；
+ * 各服务提供方的子类只提供配置
+ *
+ * @author Shane
+ */
+@Slf4j
+public abstract class AbstractLlmChatManager implements LlmChatManager {
+
+    @Resource
+    private LlmTransport llmTransport;
+
+    @Resource
+    private ProviderGuard providerGuard;
+
+    @Resource
+    private LlmMetrics llmMetrics;
+
+    @Resource
+    private ChatRequestBodyWriter chatRequestBodyWriter;
+
+    private final LlmProviderEnum provider;
+
+    private final ObjectMapper objectMapper;
+
+    private static final ParameterizedTypeReference<ServerSentEvent<String>> SSE_TYPE =
+            new ParameterizedTypeReference<ServerSentEvent<String>>() {};
+
+    /**
+     * 构造函数，初始化 ObjectMapper
+     *
+     * @param provider 服务提供方
+     */
+    protected AbstractLlmChatManager(LlmProviderEnum provider) {
+        this.provider = provider;
+        this.objectMapper = new ObjectMapper();
+        // 配置 ObjectMapper 忽略未知属性
+        this.objectMapper.configure(com.fasterxml.jackson.databind.DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    /**
+     * 服务提供方的配置
+     */
+    protected abstract LlmProviderProperties properties();
+
+    @Override
+    public LlmProviderEnum getProvider() {
+        return provider;
+    }
+
+    /**
+     * 发送非流式聊天请求
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 聊天响应对象
+     * @throws BusinessException 当请求失败时抛出
+     */
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return providerGuard.call(provider, () -> doChat(chatRequest));
+    }
+
+    private ChatResponse doChat(ChatRequest chatRequest) {
+        try {
+            prepare(chatRequest, false);
+
+            // 构建请求体：历史消息使用缓存的序列化片段，直接写入连接
+            RequestBody requestBody = chatRequestBodyWriter.requestBody(chatRequest);
+            log.debug("发送{}聊天请求: model={}", provider.getText(), chatRequest.getModel());
+
+            // 构建HTTP请求
+            Request request = buildRequest(requestBody, false);
+
+            // 执行请求
+            LlmMetrics.CallRecorder metrics = llmMetrics.start(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT);
+            try (Response response = llmTransport.getClient(provider).newCall(request).execute()) {
+                metrics.firstByte();
+                ResponseBody responseBody = response.body();
+                if (responseBody == null) {
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "响应体为空");
+                }
+
+                String responseText = responseBody.string();
+                log.debug("收到{}响应: {}", provider.getText(), responseText);
+
+                if (!response.isSuccessful()) {
+                    log.error("{} API请求失败，状态码: {}, 响应: {}", provider.getText(), response.code(), responseText);
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务请求失败: " + responseText);
+                }
+
+                // 解析响应
+                ChatResponse chatResponse = objectMapper.readValue(responseText, ChatResponse.class);
+                metrics.complete(chatResponse);
+                return chatResponse;
+            }
+        } catch (IOException e) {
+            log.error("调用{} API失败", provider.getText(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务调用异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 发送非流式聊天请求（响应式）
+     * 基于 WebClient，取消订阅时同时取消上游 HTTP 请求，供路由层的对冲请求使用
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 聊天响应
+     */
+    @Override
+    public Mono<ChatResponse> chatMono(ChatRequest chatRequest) {
+        return providerGuard.guard(provider, Mono.defer(() -> {
+            prepare(chatRequest, false);
+
+            BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> requestBody;
+            try {
+                requestBody = chatRequestBodyWriter.bodyInserter(chatRequest);
+            } catch (IOException e) {
+                return Mono.error(new BusinessException(ErrorCode.SYSTEM_ERROR, "请求序列化失败: " + e.getMessage()));
+            }
+            log.debug("发送{}聊天请求: model={}", provider.getText(), chatRequest.getModel());
+
+            LlmMetrics.CallRecorder metrics = llmMetrics.start(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT);
+            return llmTransport.getWebClient(provider).post()
+                    .uri("/chat/completions")
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + properties().getApiKey())
+                    .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
+                    .accept(org.springframework.http.MediaType.APPLICATION_JSON)
+                    .body(requestBody)
+                    .retrieve()
+                    .onStatus(HttpStatusCode::isError, clientResponse -> clientResponse.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .map(errorText -> {
+                                log.error("{} API请求失败，状态码: {}, 响应: {}", provider.getText(), clientResponse.statusCode().value(), errorText);
+                                return new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务请求失败: " + errorText);
+                            }))
+                    .bodyToMono(String.class)
+                    .timeout(Duration.ofMillis(properties().getTimeout()))
+                    .<ChatResponse>handle((responseText, sink) -> {
+                        try {
+                            sink.next(objectMapper.readValue(responseText, ChatResponse.class));
+                        } catch (JsonProcessingException e) {
+                            sink.error(new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务响应解析失败: " + e.getMessage()));
+                        }
+                    })
+                    .doOnNext(metrics::complete)
+                    .onErrorMap(e -> !(e instanceof BusinessException), e -> {
+                        log.error("调用{} API失败", provider.getText(), e);
+                        return new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务调用异常: " + e.getMessage());
+                    });
+        }));
+    }
+
+    /**
+     * 发送流式聊天请求
+     *
+     * @param chatRequest 聊天请求对象
+     * @param onChunk 每收到一个数据块时的回调函数
+     * @throws BusinessException 当请求失败时抛出
+     */
+    @Override
+    public void streamChat(ChatRequest chatRequest, Consumer<StreamChatResponse> onChunk) {
+        ProviderGuard.Permit permit = providerGuard.acquire(provider);
+        try {
+            doStreamChat(chatRequest, streamResponse -> {
+                permit.onResponse();
+                onChunk.accept(streamResponse);
+            });
+            permit.onSuccess();
+        } catch (RuntimeException e) {
+            permit.onError(e);
+            throw e;
+        }
+    }
+
+    private void doStreamChat(ChatRequest chatRequest, Consumer<StreamChatResponse> onChunk) {
+        try {
+            prepare(chatRequest, true);
+
+            // 构建请求体：历史消息使用缓存的序列化片段，直接写入连接
+            RequestBody requestBody = chatRequestBodyWriter.requestBody(chatRequest);
+            log.debug("发送{}流式聊天请求: model={}", provider.getText(), chatRequest.getModel());
+
+            // 构建HTTP请求
+            Request request = buildRequest(requestBody, true);
+
+            // 执行请求
+            LlmMetrics.CallRecorder metrics = llmMetrics.start(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_STREAM);
+            try (Response response = llmTransport.getClient(provider).newCall(request).execute()) {
+                metrics.firstByte();
+                ResponseBody responseBody = response.body();
+                if (responseBody == null) {
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "响应体为空");
+                }
+
+                if (!response.isSuccessful()) {
+                    String errorText = responseBody.string();
+                    log.error("{} API请求失败，状态码: {}, 响应: {}", provider.getText(), response.code(), errorText);
+                    throw new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务请求失败: " + errorText);
+                }
+
+                // 读取流式响应（SSE格式: data: {...}），按字节解码并只提取必要字段
+                SseStreamDecoder decoder = new SseStreamDecoder(responseBody.source());
+                StreamChatResponse streamResponse;
+                while ((streamResponse = decoder.next()) != null) {
+                    metrics.onChunk(streamResponse);
+                    onChunk.accept(streamResponse);
+                }
+                metrics.complete();
+                log.debug("{}流式响应结束", provider.getText());
+            }
+        } catch (IOException e) {
+            log.error("调用{} API失败", provider.getText(), e);
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务调用异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 发送流式聊天请求（响应式）
+     * 基于 WebClient 异步读取 SSE 流，等待模型生成期间不占用任何线程
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 数据块流，遇到 [DONE] 时完成
+     */
+    @Override
+    public Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest) {
+        return providerGuard.guard(provider, Flux.defer(() -> {
+            prepare(chatRequest, true);
+
+            BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> requestBody;
+            try {
+                requestBody = chatRequestBodyWriter.bodyInserter(chatRequest);
+            } catch (IOException e) {
+                return Flux.error(new BusinessException(ErrorCode.SYSTEM_ERROR, "请求序列化失败: " + e.getMessage()));
+            }
+            log.debug("发送{}流式聊天请求: model={}", provider.getText(), chatRequest.getModel());
+
+            // 每个订阅独立的解码器
+            SseStreamDecoder decoder = new SseStreamDecoder();
+            LlmMetrics.CallRecorder metrics = llmMetrics.start(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_FLUX);
+            return llmTransport.getWebClient(provider).post()
+                    .uri("/chat/completions")
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + properties().getApiKey())
+                    .contentType(org.springframework.http.MediaType.APPLICATION_JSON)
+                    .accept(org.springframework.http.MediaType.TEXT_EVENT_STREAM)
+                    .body(requestBody)
+                    .retrieve()
+                    .onStatus(HttpStatusCode::isError, clientResponse -> clientResponse.bodyToMono(String.class)
+                            .defaultIfEmpty("")
+                            .map(errorText -> {
+                                log.error("{} API请求失败，状态码: {}, 响应: {}", provider.getText(), clientResponse.statusCode().value(), errorText);
+                                return new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务请求失败: " + errorText);
+                            }))
+                    .toEntityFlux(SSE_TYPE)
+                    .flatMapMany(entity -> {
+                        metrics.firstByte();
+                        return entity.getBody();
+                    })
+                    .timeout(Duration.ofMillis(properties().getTimeout()))
+                    .takeWhile(event -> !"[DONE]".equals(event.data()))
+                    .<StreamChatResponse>handle((event, sink) -> {
+                        try {
+                            StreamChatResponse streamResponse = decoder.decodeData(event.data());
+                            if (streamResponse != null) {
+                                sink.next(streamResponse);
+                            }
+                        } catch (IOException e) {
+                            log.warn("解析{}流式响应数据失败: {}", provider.getText(), event.data(), e);
+                        }
+                    })
+                    .doOnNext(metrics::onChunk)
+                    .doOnComplete(metrics::complete)
+                    .doOnComplete(() -> log.debug("{}流式响应结束", provider.getText()))
+                    .onErrorMap(e -> !(e instanceof BusinessException), e -> {
+                        log.error("调用{} API失败", provider.getText(), e);
+                        return new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务调用异常: " + e.getMessage());
+                    });
+        }));
+    }
+
+    /**
+     * 设置流式模式，没有指定模型时使用配置中的默认模型
+     */
+    private void prepare(ChatRequest chatRequest, boolean stream) {
+        chatRequest.setStream(stream);
+        if (chatRequest.getModel() == null || chatRequest.getModel().trim().isEmpty()) {
+            chatRequest.setModel(properties().getModel());
+        }
+    }
+
+    /**
+     * 构建HTTP请求对象
+     *
+     * @param body 请求体
+     * @param isStream 是否为流式请求
+     * @return Request对象
+     */
+    private Request buildRequest(RequestBody body, boolean isStream) {
+        // 构建URL
+        String url = properties().getBaseUrl() + "/chat/completions";
+
+        // 构建请求
+        return new Request.Builder()
+                .url(url)
+                .post(body)
+                .addHeader("Authorization", "Bearer " + properties().getApiKey())
+                .addHeader("Content-Type", "application/json")
+                .addHeader("Accept", isStream ? "text/event-stream" : "application/json")
+                .build();
+    }
+}
+
@@ -0,0 +1,79 @@
+package com.shaneShark.manager;
+
+import com.shaneShark.manager.llm.LangChainMessageConverter;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.model.StreamingResponseHandler;
+import dev.langchain4j.model.chat.StreamingChatLanguageModel;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.Response;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+
+/**
+ * 基于大模型管理器的 StreamingChatLanguageModel 实现
+ * 复用管理器的响应式 SSE 链路（WebClient 异步 I/O、熔断限流、指标），供 langchain4j / langgraph4j 智能体流式调用，
+ * 生成期间不占用线程；消息直接转换为请求 DTO，数据块按类型解析。
+ *
+ * @author Shane
+ */
+@Slf4j
+public abstract class AbstractStreamingChatModel implements StreamingChatLanguageModel {
+
+    /**
+     * 实际发送请求的管理器
+     */
+    protected abstract LlmChatManager manager();
+
+    @Override
+    public void generate(List<ChatMessage> messages, StreamingResponseHandler<AiMessage> handler) {
+        ChatRequest chatRequest = new ChatRequest();
+        chatRequest.setMessages(LangChainMessageConverter.toMessages(messages));
+        chatRequest.setStream(true);
+
+        StreamState state = new StreamState();
+        manager().streamChatFlux(chatRequest).subscribe(
+                chunk -> state.accept(chunk, handler),
+                e -> {
+                    log.error("{} 流式生成失败: {}", manager().getProvider().getValue(), e.getMessage());
+                    handler.onError(e);
+                },
+                () -> handler.onComplete(state.response()));
+    }
+
+    /**
+     * 单次生成的累积状态，数据块按顺序到达，无需同步
+     */
+    private static class StreamState {
+
+        private final StringBuilder text = new StringBuilder();
+
+        private TokenUsage tokenUsage;
+
+        private FinishReason finishReason;
+
+        void accept(StreamChatResponse chunk, StreamingResponseHandler<AiMessage> handler) {
+            String delta = chunk.getDeltaContent();
+            if (StringUtils.isNotEmpty(delta)) {
+                text.append(delta);
+                handler.onNext(delta);
+            }
+            if (chunk.getUsage() != null) {
+                tokenUsage = LangChainMessageConverter.toTokenUsage(chunk.getUsage());
+            }
+            if (chunk.getChoices() != null && chunk.getChoices().length > 0
+                    && chunk.getChoices()[0].getFinishReason() != null) {
+                finishReason = LangChainMessageConverter.toFinishReason(chunk.getChoices()[0].getFinishReason());
+            }
+        }
+
+        Response<AiMessage> response() {
+            return Response.from(AiMessage.from(text.toString()), tokenUsage, finishReason);
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package com.shaneShark.manager;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.config.SessionIndexConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.model.dto.chat.ChatMessagePageRequest;
+import com.shaneShark.model.entity.ChatMessage;
+import jakarta.annotation.Resource;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 消息历史分页读取
+ * 按 (createTime, _id) 键集分页，游标为上一页首条或末条消息的ID；只查询请求的字段，
+ * 通过 MongoDB 游标逐条读取并直接写成 JSON 数组，不在内存中构建完整列表。
+ * 本节点尚未落库的消息按同一顺序归并进结果，保证读到自己刚写入的内容。
+ *
+ * @author Shane
+ */
+@Component
+public class ChatMessageHistory {
+
+    private static final List<String> FIELDS = List.of(
+            "id", "sessionId", "userId", "role", "content", "imageUrls", "videoUrls", "createTime");
+
+    private static final Comparator<ChatMessage> ASCENDING = Comparator
+            .comparing(ChatMessage::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(ChatMessage::getId);
+
+    private static final int FLUSH_EVERY = 50;
+
+    @Resource
+    private SessionIndexConfig sessionIndexConfig;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private ChatMessagePersister chatMessagePersister;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 校验分页参数并定位游标，返回可写出的一页
+     *
+     * @param sessionId   会话ID（调用方已校验归属）
+     * @param userId      用户ID
+     * @param pageRequest 分页请求
+     * @return 待写出的分页
+     */
+    public Page open(String sessionId, Long userId, ChatMessagePageRequest pageRequest) {
+        if (StringUtils.isNotBlank(pageRequest.getBeforeId()) && StringUtils.isNotBlank(pageRequest.getAfterId())) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "beforeId 和 afterId 只能传一个");
+        }
+        boolean ascending = StringUtils.isNotBlank(pageRequest.getAfterId());
+        String anchorId = ascending ? pageRequest.getAfterId() : pageRequest.getBeforeId();
+        Integer limit = pageRequest.getLimit();
+        int size = limit == null || limit <= 0 ? sessionIndexConfig.getDefaultMessagePageSize()
+                : Math.min(limit, sessionIndexConfig.getMaxMessagePageSize());
+        Set<String> fields = parseFields(pageRequest.getFields());
+
+        Query query = Query.query(Criteria.where("sessionId").is(sessionId)
+                .and("userId").is(userId).and("isDelete").is(false));
+        ChatMessage anchor = null;
+        if (StringUtils.isNotBlank(anchorId)) {
+            anchor = findAnchor(sessionId, userId, anchorId);
+            LocalDateTime createTime = anchor.getCreateTime();
+            query.addCriteria(ascending
+                    ? new Criteria().orOperator(Criteria.where("createTime").gt(createTime),
+                            Criteria.where("createTime").is(createTime).and("_id").gt(anchorId))
+                    : new Criteria().orOperator(Criteria.where("createTime").lt(createTime),
+                            Criteria.where("createTime").is(createTime).and("_id").lt(anchorId)));
+        }
+        query.with(Sort.by(ascending ? Sort.Direction.ASC : Sort.Direction.DESC, "createTime", "_id")).limit(size);
+        query.fields().include(fields.stream().map(field -> "id".equals(field) ? "_id" : field).toArray(String[]::new));
+
+        Comparator<ChatMessage> order = ascending ? ASCENDING : ASCENDING.reversed();
+        ChatMessage position = anchor;
+        List<ChatMessage> pending = chatMessagePersister.pendingMessages(sessionId, userId).stream()
+                .filter(message -> position == null || order.compare(message, position) > 0)
+                .sorted(order)
+                .limit(size)
+                .collect(Collectors.toList());
+        return new Page(query, pending, order, size, fields);
+    }
+
+    private ChatMessage findAnchor(String sessionId, Long userId, String anchorId) {
+        Query query = Query.query(Criteria.where("_id").is(anchorId)
+                .and("sessionId").is(sessionId).and("userId").is(userId));
+        query.fields().include("_id", "createTime");
+        ChatMessage anchor = mongoTemplate.findOne(query, ChatMessage.class);
+        if (anchor == null) {
+            anchor = chatMessagePersister.pendingMessages(sessionId, userId).stream()
+                    .filter(message -> anchorId.equals(message.getId()))
+                    .findFirst()
+                    .orElseThrow(() -> new BusinessException(ErrorCode.PARAMS_ERROR, "游标消息不存在"));
+        }
+        return anchor;
+    }
+
+    private Set<String> parseFields(String fields) {
+        if (StringUtils.isBlank(fields)) {
+            return new LinkedHashSet<>(FIELDS);
+        }
+        Set<String> requested = new HashSet<>();
+        requested.add("id");
+        requested.add("createTime");
+        for (String field : StringUtils.split(fields, ',')) {
+            String name = field.trim();
+            if (!FIELDS.contains(name)) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "不支持的字段: " + name);
+            }
+            requested.add(name);
+        }
+        // 按固定顺序输出字段
+        Set<String> selected = new LinkedHashSet<>();
+        for (String field : FIELDS) {
+            if (requested.contains(field)) {
+                selected.add(field);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * 一页消息历史，数据库游标在写出时才打开
+     */
+    public class Page {
+
+        private final Query query;
+
+        private final List<ChatMessage> pending;
+
+        private final Comparator<ChatMessage> order;
+
+        private final int size;
+
+        private final Set<String> fields;
+
+        private Page(Query query, List<ChatMessage> pending, Comparator<ChatMessage> order, int size,
+                     Set<String> fields) {
+            this.query = query;
+            this.pending = pending;
+            this.order = order;
+            this.size = size;
+            this.fields = fields;
+        }
+
+        /**
+         * 把数据库结果和待写入消息按分页顺序归并，逐条写成 JSON 数组
+         *
+         * @param outputStream 响应输出流
+         * @throws IOException 写出失败时抛出
+         */
+        public void writeTo(OutputStream outputStream) throws IOException {
+            Set<String> pendingIds = new HashSet<>();
+            for (ChatMessage message : pending) {
+                pendingIds.add(message.getId());
+            }
+            try (Stream<ChatMessage> persisted = mongoTemplate.stream(query, ChatMessage.class);
+                 JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                Iterator<ChatMessage> fromDb = persisted.iterator();
+                Iterator<ChatMessage> fromPending = pending.iterator();
+                ChatMessage nextDb = nextPersisted(fromDb, pendingIds);
+                ChatMessage nextPending = fromPending.hasNext() ? fromPending.next() : null;
+                int written = 0;
+                while (written < size && (nextDb != null || nextPending != null)) {
+                    ChatMessage message;
+                    if (nextPending == null || (nextDb != null && order.compare(nextDb, nextPending) <= 0)) {
+                        message = nextDb;
+                        nextDb = nextPersisted(fromDb, pendingIds);
+                    } else {
+                        message = nextPending;
+                        nextPending = fromPending.hasNext() ? fromPending.next() : null;
+                    }
+                    write(generator, message);
+                    if (++written % FLUSH_EVERY == 0) {
+                        generator.flush();
+                    }
+                }
+                generator.writeEndArray();
+            }
+            outputStream.flush();
+        }
+
+        /**
+         * 已经在待写入列表中的消息以待写入列表为准，跳过数据库中的同一条
+         */
+        private ChatMessage nextPersisted(Iterator<ChatMessage> fromDb, Set<String> pendingIds) {
+            while (fromDb.hasNext()) {
+                ChatMessage message = fromDb.next();
+                if (!pendingIds.contains(message.getId())) {
+                    return message;
+                }
+            }
+            return null;
+        }
+
+        private void write(JsonGenerator generator, ChatMessage message) throws IOException {
+            generator.writeStartObject();
+            for (String field : fields) {
+                switch (field) {
+                    case "id" -> generator.writeObjectField(field, message.getId());
+                    case "sessionId" -> generator.writeObjectField(field, message.getSessionId());
+                    case "userId" -> generator.writeObjectField(field, message.getUserId());
+                    case "role" -> generator.writeObjectField(field, message.getRole());
+                    case "content" -> generator.writeObjectField(field, message.getContent());
+                    case "imageUrls" -> generator.writeObjectField(field, message.getImageUrls());
+                    case "videoUrls" -> generator.writeObjectField(field, message.getVideoUrls());
+                    case "createTime" -> generator.writeObjectField(field, message.getCreateTime());
+                    default -> {
+                    }
+                }
+            }
+            generator.writeEndObject();
+        }
+    }
+}
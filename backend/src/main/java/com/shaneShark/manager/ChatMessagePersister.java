@@ -0,0 +1,480 @@
+package com.shaneShark.manager;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.mongodb.bulk.BulkWriteError;
+import com.shaneShark.config.MessageWriteBehindConfig;
+import com.shaneShark.manager.llm.SessionHistoryCache;
+import com.shaneShark.model.entity.ChatMessage;
+import com.shaneShark.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 聊天消息异步批量写入
+ * 保存消息时先追加一行日志（A 消息JSON），登记到待写入表，再放入有界队列后立即返回；
+ * 后台线程按条数或时间攒批，以无序 insertMany 写入 MongoDB，成功后追加确认行（C 消息ID...）并从待写入表移除，
+ * 待写入表为空时截断日志。写入失败时按间隔无限重试，队列写满后保存方阻塞等待，超时后改为同步写入，以此向请求链路施加背压。
+ * 启动时补写日志中没有确认行的消息（重复写入按主键冲突忽略）。
+ * 本节点读取消息时通过 {@link #withPending} 合并尚未落库的消息，保证读到自己刚写入的内容。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class ChatMessagePersister {
+
+    private static final String APPEND = "A\t";
+
+    private static final String COMMIT = "C";
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    @Resource
+    private MessageWriteBehindConfig messageWriteBehindConfig;
+
+    @Resource
+    private ChatMessageRepository chatMessageRepository;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private SessionHistoryCache sessionHistoryCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 尚未确认落库的消息，按会话ID分组
+     */
+    private final Map<String, Map<String, ChatMessage>> pending = new ConcurrentHashMap<>();
+
+    private final Object journalLock = new Object();
+
+    private BlockingQueue<ChatMessage> queue;
+
+    private FileChannel journal;
+
+    private Thread writer;
+
+    private volatile boolean running;
+
+    private int pendingCount;
+
+    public ChatMessagePersister() {
+        this.objectMapper = new ObjectMapper().findAndRegisterModules();
+        this.objectMapper.disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!messageWriteBehindConfig.isEnabled()) {
+            return;
+        }
+        queue = new ArrayBlockingQueue<>(messageWriteBehindConfig.getQueueCapacity());
+        Path path = Paths.get(messageWriteBehindConfig.getJournalPath());
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        List<ChatMessage> recovered = recover(path);
+        journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        for (ChatMessage message : recovered) {
+            track(message);
+        }
+        if (!recovered.isEmpty()) {
+            log.warn("消息日志中有{}条未确认写入的消息，后台补写", recovered.size());
+        }
+
+        meterRegistry.gauge("chat.message.write_behind.queue", queue, BlockingQueue::size);
+        meterRegistry.gauge("chat.message.write_behind.pending", pending,
+                map -> map.values().stream().mapToInt(Map::size).sum());
+
+        running = true;
+        writer = new Thread(() -> writeLoop(recovered), "chat-message-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * 保存消息：记录日志后入队，队列满时阻塞等待，超时后同步写入
+     *
+     * @param message 消息（需已设置ID）
+     */
+    public void save(ChatMessage message) {
+        if (!running) {
+            chatMessageRepository.save(message);
+            sessionHistoryCache.append(message);
+            return;
+        }
+        synchronized (journalLock) {
+            appendJournal(APPEND + toJson(message));
+            track(message);
+        }
+        boolean queued;
+        try {
+            queued = queue.offer(message, messageWriteBehindConfig.getOfferTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+        if (!queued) {
+            meterRegistry.counter("chat.message.write_behind.sync_fallback").increment();
+            try {
+                insert(List.of(message));
+            } finally {
+                // 同步写入失败时由调用方处理异常，不再保留该消息
+                confirm(List.of(message));
+            }
+        }
+        sessionHistoryCache.append(message);
+    }
+
+    /**
+     * 合并本节点尚未落库的消息，保证读到自己刚写入的内容
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @param after     只合并该时间之后的消息，为空表示不限
+     * @param persisted 从数据库读到的未删除消息，按创建时间正序
+     * @return 合并后按创建时间正序的消息
+     */
+    public List<ChatMessage> withPending(String sessionId, Long userId, LocalDateTime after,
+                                         List<ChatMessage> persisted) {
+        Map<String, ChatMessage> sessionPending = sessionId != null ? pending.get(sessionId) : null;
+        if (sessionPending == null || sessionPending.isEmpty()) {
+            return persisted;
+        }
+        Set<String> persistedIds = new HashSet<>(persisted.size() * 2);
+        for (ChatMessage message : persisted) {
+            persistedIds.add(message.getId());
+        }
+        List<ChatMessage> merged = new ArrayList<>(persisted);
+        for (ChatMessage message : sessionPending.values()) {
+            if (persistedIds.contains(message.getId()) || Boolean.TRUE.equals(message.getIsDelete())
+                    || (userId != null && !userId.equals(message.getUserId()))
+                    || (after != null && (message.getCreateTime() == null || !message.getCreateTime().isAfter(after)))) {
+                continue;
+            }
+            merged.add(message);
+        }
+        if (merged.size() == persisted.size()) {
+            return persisted;
+        }
+        merged.sort(Comparator.comparing(ChatMessage::getCreateTime, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return merged;
+    }
+
+    /**
+     * 本节点尚未落库的会话消息快照
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 未删除的待写入消息，无序
+     */
+    public List<ChatMessage> pendingMessages(String sessionId, Long userId) {
+        Map<String, ChatMessage> sessionPending = sessionId != null ? pending.get(sessionId) : null;
+        if (sessionPending == null || sessionPending.isEmpty()) {
+            return List.of();
+        }
+        List<ChatMessage> messages = new ArrayList<>(sessionPending.size());
+        for (ChatMessage message : sessionPending.values()) {
+            if (!Boolean.TRUE.equals(message.getIsDelete()) && (userId == null || userId.equals(message.getUserId()))) {
+                messages.add(message);
+            }
+        }
+        return messages;
+    }
+
+    /**
+     * 把本节点尚未落库的会话消息标记为删除，写入时即为删除状态
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     */
+    public void markDeleted(String sessionId, Long userId) {
+        for (ChatMessage message : pendingMessages(sessionId, userId)) {
+            message.setIsDelete(true);
+        }
+    }
+
+    /**
+     * 同步写入并确认本节点尚未落库的会话消息（含已标记删除的），返回时这些消息均已在数据库中。
+     * 后台线程可能已按旧状态序列化了同一批消息，与其重复写入时按主键冲突忽略，调用方需在之后再做条件更新
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     */
+    public void flushSession(String sessionId, Long userId) {
+        Map<String, ChatMessage> sessionPending = sessionId != null ? pending.get(sessionId) : null;
+        if (sessionPending == null || sessionPending.isEmpty()) {
+            return;
+        }
+        List<ChatMessage> messages = new ArrayList<>(sessionPending.size());
+        for (ChatMessage message : sessionPending.values()) {
+            if (userId == null || userId.equals(message.getUserId())) {
+                messages.add(message);
+            }
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        insert(messages);
+        confirm(messages);
+        meterRegistry.counter("chat.message.write_behind.session_flush").increment();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        try {
+            writer.join(messageWriteBehindConfig.getShutdownTimeoutMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            log.warn("停机时仍有消息未写入，保留在日志中，下次启动补写: queue={}", queue.size());
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            log.warn("关闭消息日志失败: {}", e.getMessage());
+        }
+    }
+
+    private void writeLoop(List<ChatMessage> recovered) {
+        int batchSize = Math.max(1, messageWriteBehindConfig.getBatchSize());
+        for (int from = 0; from < recovered.size(); from += batchSize) {
+            flush(recovered.subList(from, Math.min(recovered.size(), from + batchSize)));
+        }
+        List<ChatMessage> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                ChatMessage first = queue.poll(messageWriteBehindConfig.getFlushIntervalMillis(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime()
+                        + TimeUnit.MILLISECONDS.toNanos(messageWriteBehindConfig.getFlushIntervalMillis());
+                while (batch.size() < batchSize) {
+                    queue.drainTo(batch, batchSize - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if (batch.size() >= batchSize || remaining <= 0 || !running) {
+                        break;
+                    }
+                    ChatMessage next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 写入一批消息，失败时按间隔重试直到成功或停机
+     */
+    private void flush(List<ChatMessage> batch) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        while (true) {
+            try {
+                insert(batch);
+                confirm(batch);
+                sample.stop(meterRegistry.timer("chat.message.write_behind.flush"));
+                meterRegistry.counter("chat.message.write_behind.messages").increment(batch.size());
+                return;
+            } catch (RuntimeException e) {
+                meterRegistry.counter("chat.message.write_behind.failures").increment();
+                log.error("批量写入聊天消息失败，{}ms 后重试: size={}, error={}",
+                        messageWriteBehindConfig.getRetryBackoffMillis(), batch.size(), e.getMessage());
+                if (!running) {
+                    return;
+                }
+                try {
+                    Thread.sleep(messageWriteBehindConfig.getRetryBackoffMillis());
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * 无序批量插入，主键冲突说明此前已写入（补写或同步写入后重复），视为成功
+     */
+    private void insert(List<ChatMessage> batch) {
+        try {
+            mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatMessage.class)
+                    .insert(batch)
+                    .execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private void confirm(List<ChatMessage> batch) {
+        StringBuilder line = new StringBuilder(COMMIT);
+        for (ChatMessage message : batch) {
+            line.append('\t').append(message.getId());
+        }
+        synchronized (journalLock) {
+            appendJournal(line.toString());
+            for (ChatMessage message : batch) {
+                Map<String, ChatMessage> sessionPending = pending.get(message.getSessionId());
+                if (sessionPending != null && sessionPending.remove(message.getId()) != null) {
+                    pendingCount--;
+                    if (sessionPending.isEmpty()) {
+                        pending.remove(message.getSessionId(), sessionPending);
+                    }
+                }
+            }
+            try {
+                // 所有消息均已确认，日志可以清空；持续有积压时日志过大则只保留未确认的消息
+                if (pendingCount == 0) {
+                    journal.truncate(0);
+                } else if (journal.size() > messageWriteBehindConfig.getJournalCompactBytes()) {
+                    compactJournal();
+                }
+            } catch (IOException e) {
+                log.warn("整理消息日志失败: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 把未确认的消息写入临时文件后原子替换日志，替换前崩溃时旧日志仍完整
+     */
+    private void compactJournal() throws IOException {
+        Path path = Paths.get(messageWriteBehindConfig.getJournalPath());
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map<String, ChatMessage> sessionPending : pending.values()) {
+                for (ChatMessage message : sessionPending.values()) {
+                    ByteBuffer buffer = ByteBuffer.wrap((APPEND + toJson(message) + "\n").getBytes(StandardCharsets.UTF_8));
+                    while (buffer.hasRemaining()) {
+                        out.write(buffer);
+                    }
+                }
+            }
+            out.force(false);
+        }
+        journal.close();
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            journal = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+    }
+
+    private void track(ChatMessage message) {
+        pending.computeIfAbsent(message.getSessionId(), k -> new ConcurrentHashMap<>())
+                .put(message.getId(), message);
+        pendingCount++;
+    }
+
+    private void appendJournal(String line) {
+        ByteBuffer buffer = ByteBuffer.wrap((line + "\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            while (buffer.hasRemaining()) {
+                journal.write(buffer);
+            }
+            if (messageWriteBehindConfig.isJournalFsync()) {
+                journal.force(false);
+            }
+        } catch (IOException e) {
+            // 日志不可写时仍继续入队，只是失去崩溃恢复能力
+            log.error("写入消息日志失败: {}", e.getMessage());
+            meterRegistry.counter("chat.message.write_behind.journal_failures").increment();
+        }
+    }
+
+    /**
+     * 读取日志中没有确认行的消息，保持写入顺序
+     */
+    List<ChatMessage> recover(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return List.of();
+        }
+        Map<String, ChatMessage> unconfirmed = new LinkedHashMap<>();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith(APPEND)) {
+                    try {
+                        ChatMessage message = objectMapper.readValue(line.substring(APPEND.length()), ChatMessage.class);
+                        unconfirmed.put(message.getId(), message);
+                    } catch (IOException e) {
+                        // 崩溃时最后一行可能只写了一半
+                        log.warn("跳过无法解析的消息日志行: {}", e.getMessage());
+                    }
+                } else if (line.startsWith(COMMIT)) {
+                    String[] ids = line.split("\t");
+                    for (int i = 1; i < ids.length; i++) {
+                        unconfirmed.remove(ids[i]);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>(unconfirmed.values());
+    }
+
+    private String toJson(ChatMessage message) {
+        try {
+            return objectMapper.writeValueAsString(message);
+        } catch (IOException e) {
+            throw new IllegalStateException("序列化聊天消息失败", e);
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.shaneShark.manager;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.config.SessionIndexConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.model.entity.ChatSession;
+import com.shaneShark.model.vo.ChatSessionPageVO;
+import com.shaneShark.model.vo.ChatSessionVO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 会话索引查询
+ * 最近会话：按 (userId, isDelete, updateTime) 复合索引只取一条且只返回 _id，结果按用户缓存，
+ * 创建、更新时间变化、删除会话时同步维护缓存，命中时按主键确认会话未被删除；
+ * 会话列表：按 (updateTime, _id) 游标分页，只返回列表需要的字段，不再加载摘要等大字段。
+ *
+ * @author Shane
+ */
+@Component
+public class ChatSessionIndex {
+
+    private static final String CURSOR_SEPARATOR = "|";
+
+    @Resource
+    private SessionIndexConfig sessionIndexConfig;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<Long, String> latestSessions;
+
+    @PostConstruct
+    public void init() {
+        latestSessions = Caffeine.newBuilder()
+                .maximumSize(sessionIndexConfig.getLatestCacheSize())
+                .expireAfterWrite(Duration.ofSeconds(sessionIndexConfig.getLatestCacheTtlSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, latestSessions, "chat-latest-session");
+    }
+
+    /**
+     * 获取用户最近更新的未删除会话ID
+     *
+     * @param userId 用户ID
+     * @return 会话ID，没有会话时为空
+     */
+    public String latestSessionId(Long userId) {
+        String cached = latestSessions.getIfPresent(userId);
+        if (cached != null) {
+            // 会话可能已在其他节点删除，按主键确认仍未删除，代价远小于排序查询
+            if (mongoTemplate.exists(Query.query(Criteria.where("_id").is(cached)
+                    .and("userId").is(userId).and("isDelete").is(false)), ChatSession.class)) {
+                return cached;
+            }
+            latestSessions.asMap().remove(userId, cached);
+        }
+        Query query = activeSessions(userId)
+                .with(Sort.by(Sort.Direction.DESC, "updateTime", "_id"))
+                .limit(1);
+        query.fields().include("_id");
+        ChatSession latest = mongoTemplate.findOne(query, ChatSession.class);
+        if (latest == null) {
+            return null;
+        }
+        latestSessions.put(userId, latest.getId());
+        return latest.getId();
+    }
+
+    /**
+     * 会话被创建或更新时间刷新后，它就是该用户最近的会话
+     *
+     * @param userId    用户ID
+     * @param sessionId 会话ID
+     */
+    public void touch(Long userId, String sessionId) {
+        if (userId != null && sessionId != null) {
+            latestSessions.put(userId, sessionId);
+        }
+    }
+
+    /**
+     * 会话被删除后，如果它是缓存的最近会话则失效
+     *
+     * @param userId    用户ID
+     * @param sessionId 会话ID
+     */
+    public void evict(Long userId, String sessionId) {
+        if (userId != null && sessionId != null && sessionId.equals(latestSessions.getIfPresent(userId))) {
+            latestSessions.invalidate(userId);
+        }
+    }
+
+    /**
+     * 按游标分页查询会话列表，只返回列表字段
+     *
+     * @param userId   用户ID
+     * @param cursor   上一页返回的游标，为空表示第一页
+     * @param pageSize 每页条数，为空时使用默认值
+     * @return 分页结果
+     */
+    public ChatSessionPageVO page(Long userId, String cursor, Integer pageSize) {
+        int size = pageSize == null || pageSize <= 0
+                ? sessionIndexConfig.getDefaultPageSize() : Math.min(pageSize, sessionIndexConfig.getMaxPageSize());
+        Query query = activeSessions(userId);
+        if (StringUtils.isNotBlank(cursor)) {
+            String[] position = decodeCursor(cursor);
+            LocalDateTime updateTime = LocalDateTime.parse(position[0]);
+            query.addCriteria(new Criteria().orOperator(
+                    Criteria.where("updateTime").lt(updateTime),
+                    Criteria.where("updateTime").is(updateTime).and("_id").lt(position[1])));
+        }
+        query.with(Sort.by(Sort.Direction.DESC, "updateTime", "_id")).limit(size + 1);
+        includeListFields(query);
+
+        List<ChatSession> sessions = mongoTemplate.find(query, ChatSession.class);
+        boolean hasMore = sessions.size() > size;
+        if (hasMore) {
+            sessions = sessions.subList(0, size);
+        }
+        ChatSessionPageVO page = new ChatSessionPageVO();
+        page.setRecords(toVOList(sessions));
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            ChatSession last = sessions.get(sessions.size() - 1);
+            page.setNextCursor(encodeCursor(last.getUpdateTime(), last.getId()));
+        }
+        return page;
+    }
+
+    /**
+     * 查询用户全部会话，只返回列表字段
+     *
+     * @param userId 用户ID
+     * @return 按更新时间倒序的会话列表
+     */
+    public List<ChatSessionVO> list(Long userId) {
+        Query query = activeSessions(userId).with(Sort.by(Sort.Direction.DESC, "updateTime", "_id"));
+        includeListFields(query);
+        return toVOList(mongoTemplate.find(query, ChatSession.class));
+    }
+
+    private Query activeSessions(Long userId) {
+        return Query.query(Criteria.where("userId").is(userId).and("isDelete").is(false));
+    }
+
+    private void includeListFields(Query query) {
+        query.fields().include("_id", "userId", "title", "createTime", "updateTime");
+    }
+
+    private List<ChatSessionVO> toVOList(List<ChatSession> sessions) {
+        return sessions.stream().map(session -> {
+            ChatSessionVO vo = new ChatSessionVO();
+            BeanUtils.copyProperties(session, vo);
+            return vo;
+        }).collect(Collectors.toList());
+    }
+
+    private String encodeCursor(LocalDateTime updateTime, String id) {
+        String raw = updateTime + CURSOR_SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String[] decodeCursor(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] position = StringUtils.split(raw, CURSOR_SEPARATOR, 2);
+            if (position.length != 2) {
+                throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标无效");
+            }
+            LocalDateTime.parse(position[0]);
+            return position;
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new BusinessException(ErrorCode.PARAMS_ERROR, "游标无效");
+        }
+    }
+}
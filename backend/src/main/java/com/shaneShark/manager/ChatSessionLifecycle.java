@@ -0,0 +1,296 @@
+package com.shaneShark.manager;
+
+import com.shaneShark.config.SessionLifecycleConfig;
+import com.shaneShark.manager.llm.SessionHistoryCache;
+import com.shaneShark.model.entity.ChatMessage;
+import com.shaneShark.model.entity.ChatSession;
+import com.shaneShark.model.entity.ChatSessionArchive;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonWriterSettings;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 会话生命周期管理
+ * 删除会话时一次 updateMany 软删除全部消息，不再逐条查询和保存；
+ * 定时任务把软删除超过一定天数（可选：长期未更新）的会话连同全部消息压缩成一条归档文档，
+ * 然后从会话和消息集合中删除，缩小热集合及其索引；归档保留期满后批量彻底删除。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class ChatSessionLifecycle {
+
+    /**
+     * 单个 MongoDB 文档上限为 16MB，为其他字段预留空间
+     */
+    private static final int MAX_PAYLOAD_BYTES = 15 * 1024 * 1024;
+
+    private static final JsonWriterSettings JSON_SETTINGS = JsonWriterSettings.builder()
+            .outputMode(JsonMode.EXTENDED).build();
+
+    private static final byte[] LINE_SEPARATOR = "\n".getBytes(StandardCharsets.UTF_8);
+
+    @Resource
+    private SessionLifecycleConfig sessionLifecycleConfig;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private ChatMessagePersister chatMessagePersister;
+
+    @Resource
+    private ChatSessionIndex chatSessionIndex;
+
+    @Resource
+    private SessionHistoryCache sessionHistoryCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * 条件更新软删除会话，不先读后写，并发删除时只有一次生效
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 会话存在、属于该用户且此前未删除时为 true
+     */
+    public boolean softDeleteSession(String sessionId, Long userId) {
+        Query query = Query.query(Criteria.where("_id").is(sessionId)
+                .and("userId").is(userId).and("isDelete").is(false));
+        Update update = Update.update("isDelete", true).set("updateTime", LocalDateTime.now());
+        return mongoTemplate.updateFirst(query, update, ChatSession.class).getMatchedCount() > 0;
+    }
+
+    /**
+     * 软删除会话的全部消息，包括本节点尚未落库的消息
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 数据库中被标记删除的消息数
+     */
+    public long softDeleteMessages(String sessionId, Long userId) {
+        chatMessagePersister.markDeleted(sessionId, userId);
+        // 后台线程可能已按未删除状态序列化了这些消息、写入尚未完成，先同步落库，保证下面的批量更新能覆盖到
+        chatMessagePersister.flushSession(sessionId, userId);
+        Query query = Query.query(Criteria.where("sessionId").is(sessionId)
+                .and("userId").is(userId).and("isDelete").is(false));
+        return mongoTemplate.updateMulti(query, Update.update("isDelete", true), ChatMessage.class)
+                .getModifiedCount();
+    }
+
+    /**
+     * 定时归档过期会话并清理过期归档
+     */
+    @Scheduled(cron = "${llm.session-lifecycle.cron:0 30 3 * * *}")
+    public void run() {
+        if (!sessionLifecycleConfig.isEnabled() || !running.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long start = System.currentTimeMillis();
+            int archived = archiveExpiredSessions();
+            long purged = purgeExpiredArchives();
+            log.info("会话归档完成: 归档会话{}个, 彻底删除归档{}个, 耗时{}ms",
+                    archived, purged, System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("会话归档任务失败", e);
+        } finally {
+            running.set(false);
+        }
+    }
+
+    /**
+     * 分批归档过期会话，每批重新查询（已归档的会话已从集合中删除），失败的会话本次不再重试
+     *
+     * @return 归档的会话数
+     */
+    private int archiveExpiredSessions() {
+        Criteria expired = expiredCriteria(LocalDateTime.now());
+        if (expired == null) {
+            return 0;
+        }
+        int batchSize = Math.max(1, sessionLifecycleConfig.getBatchSize());
+        Set<String> skipped = new HashSet<>();
+        int archived = 0;
+        while (archived < sessionLifecycleConfig.getMaxSessionsPerRun()) {
+            Query query = Query.query(expired)
+                    .with(Sort.by(Sort.Direction.ASC, "updateTime"))
+                    .limit(Math.min(batchSize, sessionLifecycleConfig.getMaxSessionsPerRun() - archived));
+            if (!skipped.isEmpty()) {
+                query.addCriteria(Criteria.where("_id").nin(skipped));
+            }
+            query.fields().exclude("summary");
+            List<ChatSession> sessions = mongoTemplate.find(query, ChatSession.class);
+            if (sessions.isEmpty()) {
+                break;
+            }
+            for (ChatSession session : sessions) {
+                if (archive(session)) {
+                    archived++;
+                } else {
+                    skipped.add(session.getId());
+                }
+            }
+        }
+        return archived;
+    }
+
+    /**
+     * 已删除且超过保留天数，或（启用时）长期未更新的会话
+     */
+    private Criteria expiredCriteria(LocalDateTime now) {
+        List<Criteria> conditions = new ArrayList<>();
+        if (sessionLifecycleConfig.getArchiveDeletedAfterDays() >= 0) {
+            conditions.add(Criteria.where("isDelete").is(true)
+                    .and("updateTime").lt(now.minusDays(sessionLifecycleConfig.getArchiveDeletedAfterDays())));
+        }
+        if (sessionLifecycleConfig.getArchiveStaleAfterDays() > 0) {
+            conditions.add(Criteria.where("isDelete").is(false)
+                    .and("updateTime").lt(now.minusDays(sessionLifecycleConfig.getArchiveStaleAfterDays())));
+        }
+        if (conditions.isEmpty()) {
+            return null;
+        }
+        return conditions.size() == 1 ? conditions.get(0) : new Criteria().orOperator(conditions);
+    }
+
+    /**
+     * 归档单个会话：写入归档（已存在则说明上次中断，直接复用），再删除会话和消息。
+     * 未删除的会话按更新时间条件删除，期间有新对话则放弃本次归档。
+     */
+    private boolean archive(ChatSession session) {
+        String sessionId = session.getId();
+        boolean deleted = Boolean.TRUE.equals(session.getIsDelete());
+        if (!deleted && !chatMessagePersister.pendingMessages(sessionId, null).isEmpty()) {
+            return false;
+        }
+        try {
+            boolean created = false;
+            if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(sessionId)), ChatSessionArchive.class)) {
+                ChatSessionArchive archive = buildArchive(session);
+                if (archive == null) {
+                    meterRegistry.counter("app.session.lifecycle", "action", "oversize").increment();
+                    return false;
+                }
+                mongoTemplate.insert(archive);
+                created = true;
+            }
+
+            Query sessionQuery = Query.query(Criteria.where("_id").is(sessionId).and("isDelete").is(deleted)
+                    .and("updateTime").is(session.getUpdateTime()));
+            if (mongoTemplate.remove(sessionQuery, ChatSession.class).getDeletedCount() == 0) {
+                // 归档期间会话被更新，保留在热集合中
+                if (created) {
+                    mongoTemplate.remove(Query.query(Criteria.where("_id").is(sessionId)), ChatSessionArchive.class);
+                }
+                return false;
+            }
+            mongoTemplate.remove(Query.query(Criteria.where("sessionId").is(sessionId)), ChatMessage.class);
+            chatSessionIndex.evict(session.getUserId(), sessionId);
+            sessionHistoryCache.invalidate(sessionId);
+            meterRegistry.counter("app.session.lifecycle", "action", "archived").increment();
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("归档会话失败: sessionId={}, error={}", sessionId, e.getMessage());
+            meterRegistry.counter("app.session.lifecycle", "action", "failed").increment();
+            return false;
+        }
+    }
+
+    /**
+     * 把会话原始文档和全部消息（按时间正序）逐行写成 JSON 并 gzip 压缩，超过文档上限时返回空
+     */
+    private ChatSessionArchive buildArchive(ChatSession session) throws IOException {
+        Document sessionDocument = mongoTemplate.findById(session.getId(), Document.class,
+                mongoTemplate.getCollectionName(ChatSession.class));
+        if (sessionDocument == null) {
+            throw new IllegalStateException("会话已不存在");
+        }
+        Query messageQuery = Query.query(Criteria.where("sessionId").is(session.getId()))
+                .with(Sort.by(Sort.Direction.ASC, "createTime", "_id"));
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        long rawBytes;
+        int messageCount = 0;
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+             Stream<Document> messages = mongoTemplate.stream(messageQuery, Document.class,
+                     mongoTemplate.getCollectionName(ChatMessage.class))) {
+            rawBytes = writeLine(gzip, sessionDocument);
+            for (Document message : (Iterable<Document>) messages::iterator) {
+                rawBytes += writeLine(gzip, message);
+                messageCount++;
+                if (compressed.size() > MAX_PAYLOAD_BYTES) {
+                    log.warn("会话归档内容超过上限，跳过: sessionId={}", session.getId());
+                    return null;
+                }
+            }
+        }
+        if (compressed.size() > MAX_PAYLOAD_BYTES) {
+            log.warn("会话归档内容超过上限，跳过: sessionId={}", session.getId());
+            return null;
+        }
+
+        ChatSessionArchive archive = new ChatSessionArchive();
+        archive.setId(session.getId());
+        archive.setUserId(session.getUserId());
+        archive.setTitle(session.getTitle());
+        archive.setCreateTime(session.getCreateTime());
+        archive.setUpdateTime(session.getUpdateTime());
+        archive.setDeleted(session.getIsDelete());
+        archive.setMessageCount(messageCount);
+        archive.setRawBytes(rawBytes);
+        archive.setPayload(compressed.toByteArray());
+        archive.setArchivedAt(LocalDateTime.now());
+        return archive;
+    }
+
+    private long writeLine(OutputStream outputStream, Document document) throws IOException {
+        byte[] line = document.toJson(JSON_SETTINGS).getBytes(StandardCharsets.UTF_8);
+        outputStream.write(line);
+        outputStream.write(LINE_SEPARATOR);
+        return line.length + LINE_SEPARATOR.length;
+    }
+
+    /**
+     * 彻底删除超过保留期的归档
+     *
+     * @return 删除的归档数
+     */
+    private long purgeExpiredArchives() {
+        if (sessionLifecycleConfig.getRetentionDays() <= 0) {
+            return 0;
+        }
+        Query query = Query.query(Criteria.where("archivedAt")
+                .lt(LocalDateTime.now().minusDays(sessionLifecycleConfig.getRetentionDays())));
+        long purged = mongoTemplate.remove(query, ChatSessionArchive.class).getDeletedCount();
+        meterRegistry.counter("app.session.lifecycle", "action", "purged").increment(purged);
+        return purged;
+    }
+}
@@ -0,0 +1,226 @@
+package com.shaneShark.manager;
+
+import com.shaneShark.config.LlmProviderProperties;
+import com.shaneShark.config.MinioConfig;
+import com.shaneShark.config.WarmupConfig;
+import com.shaneShark.manager.llm.LlmTransport;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.minio.BucketExistsArgs;
+import io.minio.MinioClient;
+import io.minio.errors.ErrorResponseException;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 连接预热
+ * 在应用就绪前（ApplicationRunner 执行完之前 readiness 保持 REFUSING_TRAFFIC）并行预建连接：
+ * 各服务提供方的 OkHttp 和 WebClient 连接池、MinIO、MongoDB。任何 HTTP 响应都说明连接已建立，状态码不影响结果。
+ * 每个目标的耗时记录到 app.warmup 指标并汇总输出到日志；可选定时保活，避免空闲连接被回收后重新建连。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class ConnectionWarmer implements ApplicationRunner {
+
+    @Resource
+    private WarmupConfig warmupConfig;
+
+    @Resource
+    private LlmTransport llmTransport;
+
+    @Resource
+    private MinioConfig minioConfig;
+
+    @Resource
+    private MinioClient minioClient;
+
+    @Resource
+    private ObjectProvider<MongoTemplate> mongoTemplateProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!warmupConfig.isEnabled()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        List<Mono<WarmupResult>> tasks = new ArrayList<>();
+        tasks.addAll(providerTasks(warmupConfig.getConnectionsPerProvider()));
+        tasks.addAll(minioTasks());
+        tasks.addAll(mongoTasks());
+        List<WarmupResult> results = execute(tasks, "startup");
+
+        long succeeded = results.stream().filter(WarmupResult::isSuccess).count();
+        StringBuilder summary = new StringBuilder();
+        for (WarmupResult result : results) {
+            summary.append("\n  ").append(result.getTarget()).append(": ")
+                    .append(result.isSuccess() ? "成功" : "失败(" + result.getError() + ")")
+                    .append(", ").append(result.getMillis()).append("ms");
+        }
+        log.info("连接预热完成: 成功{}/{}, 总耗时{}ms{}", succeeded, tasks.size(),
+                System.currentTimeMillis() - start, summary);
+    }
+
+    /**
+     * 定时保活，每个目标访问一次
+     */
+    @Scheduled(fixedDelayString = "${llm.warmup.keep-alive-interval-seconds:240}",
+            initialDelayString = "${llm.warmup.keep-alive-interval-seconds:240}", timeUnit = TimeUnit.SECONDS)
+    public void keepAlive() {
+        if (!warmupConfig.isEnabled() || !warmupConfig.isKeepAliveEnabled()) {
+            return;
+        }
+        List<Mono<WarmupResult>> tasks = new ArrayList<>(providerTasks(1));
+        tasks.addAll(minioTasks());
+        List<WarmupResult> results = execute(tasks, "keep-alive");
+        results.stream().filter(result -> !result.isSuccess())
+                .forEach(result -> log.warn("连接保活失败: {}, error={}", result.getTarget(), result.getError()));
+    }
+
+    /**
+     * 并行执行预热任务，整体超时后返回已完成的结果
+     */
+    private List<WarmupResult> execute(List<Mono<WarmupResult>> tasks, String phase) {
+        List<WarmupResult> results = new ArrayList<>(tasks.size());
+        Flux.merge(tasks)
+                .doOnNext(result -> {
+                    results.add(result);
+                    Timer.builder("app.warmup")
+                            .description("启动预热和保活的建连耗时")
+                            .tags("target", result.getTarget(), "phase", phase,
+                                    "result", result.isSuccess() ? "success" : "error")
+                            .register(meterRegistry)
+                            .record(Duration.ofMillis(result.getMillis()));
+                })
+                .take(Duration.ofMillis(warmupConfig.getTotalTimeoutMillis()))
+                .blockLast();
+        if (results.size() < tasks.size()) {
+            log.warn("连接预热超时（{}ms），{} 个目标未完成", warmupConfig.getTotalTimeoutMillis(),
+                    tasks.size() - results.size());
+        }
+        return results;
+    }
+
+    /**
+     * 每个服务提供方的 OkHttp 连接池和 WebClient 连接池各预建若干连接
+     */
+    private List<Mono<WarmupResult>> providerTasks(int connections) {
+        List<Mono<WarmupResult>> tasks = new ArrayList<>();
+        for (Map.Entry<LlmProviderEnum, LlmProviderProperties> entry : llmTransport.getAllProperties().entrySet()) {
+            LlmProviderEnum provider = entry.getKey();
+            String baseUrl = entry.getValue().getBaseUrl();
+            if (StringUtils.isBlank(baseUrl)) {
+                continue;
+            }
+            OkHttpClient client = llmTransport.getClient(provider).newBuilder()
+                    .callTimeout(Duration.ofMillis(warmupConfig.getRequestTimeoutMillis()))
+                    .build();
+            WebClient webClient = llmTransport.getWebClient(provider);
+            for (int i = 0; i < connections; i++) {
+                tasks.add(timed(provider.getValue() + "-okhttp", Mono.fromRunnable(() -> {
+                    Request request = new Request.Builder().url(baseUrl).head().build();
+                    try (okhttp3.Response ignored = client.newCall(request).execute()) {
+                        // 只需建立连接，响应内容无关
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }).subscribeOn(Schedulers.boundedElastic())));
+                tasks.add(timed(provider.getValue() + "-webclient", webClient.head()
+                        .exchangeToMono(ClientResponse::releaseBody)));
+            }
+        }
+        return tasks;
+    }
+
+    private List<Mono<WarmupResult>> minioTasks() {
+        if (!warmupConfig.isMinioEnabled() || StringUtils.isBlank(minioConfig.getEndpoint())) {
+            return List.of();
+        }
+        return List.of(timed("minio", Mono.fromRunnable(() -> {
+            try {
+                minioClient.bucketExists(BucketExistsArgs.builder()
+                        .bucket(StringUtils.defaultIfBlank(minioConfig.getBucketName(), "warmup"))
+                        .build());
+            } catch (ErrorResponseException e) {
+                // 服务端已返回错误响应（如鉴权失败），连接已建立
+            } catch (Exception e) {
+                throw new IllegalStateException(e.getMessage(), e);
+            }
+        }).subscribeOn(Schedulers.boundedElastic())));
+    }
+
+    private List<Mono<WarmupResult>> mongoTasks() {
+        MongoTemplate mongoTemplate = mongoTemplateProvider.getIfAvailable();
+        if (mongoTemplate == null) {
+            return List.of();
+        }
+        List<Mono<WarmupResult>> tasks = new ArrayList<>();
+        for (int i = 0; i < warmupConfig.getMongoConnections(); i++) {
+            tasks.add(timed("mongodb", Mono.fromRunnable(() -> mongoTemplate.executeCommand("{ ping: 1 }"))
+                    .subscribeOn(Schedulers.boundedElastic())));
+        }
+        return tasks;
+    }
+
+    /**
+     * 计时并把异常转换为失败结果，单个目标失败不影响其他目标
+     */
+    private Mono<WarmupResult> timed(String target, Mono<?> task) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return task.then(Mono.fromCallable(() -> new WarmupResult(target, true, elapsedMillis(start), null)))
+                    .timeout(Duration.ofMillis(warmupConfig.getRequestTimeoutMillis()))
+                    .onErrorResume(e -> Mono.just(new WarmupResult(target, false, elapsedMillis(start),
+                            StringUtils.defaultIfBlank(e.getMessage(), e.getClass().getSimpleName()))));
+        });
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * 单个目标的预热结果
+     */
+    @Data
+    @AllArgsConstructor
+    private static class WarmupResult {
+
+        private String target;
+
+        private boolean success;
+
+        private long millis;
+
+        private String error;
+    }
+}
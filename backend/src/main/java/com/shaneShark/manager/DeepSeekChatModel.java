@@ -1,11 +1,14 @@
 package com.shaneShark.manager;
 
 import com.shaneShark.config.DeepSeekConfig;
+import com.shaneShark.manager.llm.LangChainMessageConverter;
+import com.shaneShark.manager.llm.LlmTransport;
+import com.shaneShark.manager.llm.PromptResultCache;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
 import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
-import dev.langchain4j.data.message.ImageContent;
-import dev.langchain4j.data.message.TextContent;
-import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.model.chat.ChatLanguageModel;
 import dev.langchain4j.model.output.Response;
 import lombok.extern.slf4j.Slf4j;
@@ -14,10 +17,7 @@ import org.springframework.stereotype.Component;
 
 import jakarta.annotation.Resource;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 /**
  * 火山引擎DeepSeek大模型ChatLanguageModel实现
@@ -32,8 +32,11 @@ public class DeepSeekChatModel implements ChatLanguageModel {
     @Resource
     private DeepSeekConfig deepSeekConfig;
 
-    @Resource(name = "deepseekOkHttpClient")
-    private OkHttpClient okHttpClient;
+    @Resource
+    private LlmTransport llmTransport;
+
+    @Resource
+    private PromptResultCache promptResultCache;
 
     private static final com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
 
@@ -45,15 +48,19 @@ public class DeepSeekChatModel implements ChatLanguageModel {
     public Response<AiMessage> generate(List<ChatMessage> messages) {
         try {
             // 构建请求体
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", deepSeekConfig.getModel());
-            requestBody.put("stream", false);
-            
-            // 转换消息格式
-            List<Map<String, Object>> apiMessages = convertMessages(messages);
-            requestBody.put("messages", apiMessages);
-
-            String requestBodyJson = objectMapper.writeValueAsString(requestBody);
+            ChatRequest chatRequest = new ChatRequest();
+            chatRequest.setModel(deepSeekConfig.getModel());
+            chatRequest.setStream(false);
+            chatRequest.setMessages(LangChainMessageConverter.toMessages(messages));
+
+            // 同样的模型和消息直接复用缓存结果
+            String cacheKey = promptResultCache.key(LlmProviderEnum.DEEPSEEK.getValue(), chatRequest);
+            String cachedContent = promptResultCache.get(PromptResultCache.CHAT_MODEL, cacheKey);
+            if (cachedContent != null) {
+                return Response.from(AiMessage.from(cachedContent));
+            }
+
+            String requestBodyJson = objectMapper.writeValueAsString(chatRequest);
             log.debug("发送DeepSeek请求: {}", requestBodyJson);
 
             // 构建HTTP请求
@@ -68,7 +75,7 @@ public class DeepSeekChatModel implements ChatLanguageModel {
                     .build();
 
             // 执行请求
-            try (okhttp3.Response response = okHttpClient.newCall(request).execute()) {
+            try (okhttp3.Response response = llmTransport.getClient(LlmProviderEnum.DEEPSEEK).newCall(request).execute()) {
                 ResponseBody responseBody = response.body();
                 if (responseBody == null) {
                     throw new RuntimeException("响应体为空");
@@ -83,17 +90,14 @@ public class DeepSeekChatModel implements ChatLanguageModel {
                 }
 
                 // 解析响应
-                @SuppressWarnings("unchecked")
-                Map<String, Object> responseMap = objectMapper.readValue(responseText, Map.class);
-                @SuppressWarnings("unchecked")
-                List<Map<String, Object>> choices = (List<Map<String, Object>>) responseMap.get("choices");
-                if (choices != null && !choices.isEmpty()) {
-                    Map<String, Object> choice = choices.get(0);
-                    @SuppressWarnings("unchecked")
-                    Map<String, Object> message = (Map<String, Object>) choice.get("message");
-                    String content = (String) message.get("content");
-                    
-                    return Response.from(AiMessage.from(content));
+                ChatResponse chatResponse = objectMapper.readValue(responseText, ChatResponse.class);
+                if (chatResponse.getChoices() != null && chatResponse.getChoices().length > 0) {
+                    String content = chatResponse.getContent();
+                    promptResultCache.put(PromptResultCache.CHAT_MODEL, cacheKey, content);
+
+                    return Response.from(AiMessage.from(content),
+                            LangChainMessageConverter.toTokenUsage(chatResponse.getUsage()),
+                            LangChainMessageConverter.toFinishReason(chatResponse.getChoices()[0].getFinishReason()));
                 }
                 
                 throw new RuntimeException("响应中没有内容");
@@ -103,75 +107,4 @@ public class DeepSeekChatModel implements ChatLanguageModel {
             throw new RuntimeException("AI服务调用异常: " + e.getMessage(), e);
         }
     }
-
-    /**
-     * 转换langchain4j消息格式为API格式
-     */
-    private List<Map<String, Object>> convertMessages(List<ChatMessage> messages) {
-        List<Map<String, Object>> apiMessages = new ArrayList<>();
-        
-        for (ChatMessage message : messages) {
-            Map<String, Object> apiMessage = new HashMap<>();
-            
-            if (message instanceof UserMessage) {
-                apiMessage.put("role", "user");
-                UserMessage userMessage = (UserMessage) message;
-                
-                // 处理多模态内容
-                List<dev.langchain4j.data.message.Content> contents = userMessage.contents();
-                if (contents != null && !contents.isEmpty()) {
-                    List<Map<String, Object>> contentList = new ArrayList<>();
-                    
-                    for (dev.langchain4j.data.message.Content content : contents) {
-                        if (content instanceof TextContent) {
-                            Map<String, Object> textItem = new HashMap<>();
-                            textItem.put("type", "text");
-                            textItem.put("text", ((TextContent) content).text());
-                            contentList.add(textItem);
-                        } else if (content instanceof ImageContent) {
-                            Map<String, Object> imageItem = new HashMap<>();
-                            imageItem.put("type", "image_url");
-                            Map<String, String> imageUrl = new HashMap<>();
-                            ImageContent imageContent = (ImageContent) content;
-                            String url = null;
-                            try {
-                                java.lang.reflect.Method urlMethod = ImageContent.class.getMethod("url");
-                                url = (String) urlMethod.invoke(imageContent);
-                            } catch (Exception e) {
-                                try {
-                                    java.lang.reflect.Method base64Method = ImageContent.class.getMethod("base64Data");
-                                    String base64 = (String) base64Method.invoke(imageContent);
-                                    if (base64 != null) {
-                                        url = "data:image/jpeg;base64," + base64;
-                                    }
-                                } catch (Exception ex) {
-                                    log.warn("无法获取ImageContent的URL", ex);
-                                }
-                            }
-                            if (url != null) {
-                                imageUrl.put("url", url);
-                                imageItem.put("image_url", imageUrl);
-                                contentList.add(imageItem);
-                            }
-                        }
-                    }
-                    
-                    apiMessage.put("content", contentList);
-                } else {
-                    apiMessage.put("content", userMessage.singleText());
-                }
-            } else if (message instanceof AiMessage) {
-                apiMessage.put("role", "assistant");
-                apiMessage.put("content", ((AiMessage) message).text());
-            } else if (message instanceof dev.langchain4j.data.message.SystemMessage) {
-                apiMessage.put("role", "system");
-                apiMessage.put("content", ((dev.langchain4j.data.message.SystemMessage) message).text());
-            }
-            
-            apiMessages.add(apiMessage);
-        }
-        
-        return apiMessages;
-    }
 }
-
@@ -0,0 +1,22 @@
+package com.shaneShark.manager;
+
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * 火山引擎DeepSeek大模型StreamingChatLanguageModel实现
+ * 使用langchain4j框架流式接入DeepSeek大模型
+ *
+ * @author Shane
+ */
+@Component
+public class DeepSeekStreamingChatModel extends AbstractStreamingChatModel {
+
+    @Resource
+    private DeepSeekManager deepSeekManager;
+
+    @Override
+    protected LlmChatManager manager() {
+        return deepSeekManager;
+    }
+}
@@ -0,0 +1,22 @@
+package com.shaneShark.manager;
+
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * 火山引擎豆包大模型StreamingChatLanguageModel实现
+ * 使用langchain4j框架流式接入豆包大模型
+ *
+ * @author Shane
+ */
+@Component
+public class DoubaoStreamingChatModel extends AbstractStreamingChatModel {
+
+    @Resource
+    private DoubaoManager doubaoManager;
+
+    @Override
+    protected LlmChatManager manager() {
+        return doubaoManager;
+    }
+}
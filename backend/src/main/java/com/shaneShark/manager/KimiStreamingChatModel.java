@@ -0,0 +1,22 @@
+package com.shaneShark.manager;
+
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+
+/**
+ * 火山引擎Kimi大模型StreamingChatLanguageModel实现
+ * 使用langchain4j框架流式接入Kimi大模型
+ *
+ * @author Shane
+ */
+@Component
+public class KimiStreamingChatModel extends AbstractStreamingChatModel {
+
+    @Resource
+    private KimiManager kimiManager;
+
+    @Override
+    protected LlmChatManager manager() {
+        return kimiManager;
+    }
+}
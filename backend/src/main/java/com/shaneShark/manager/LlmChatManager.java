@@ -0,0 +1,56 @@
+package com.shaneShark.manager;
+
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Consumer;
+
+/**
+ * OpenAI 兼容的大模型管理器
+ * 豆包、DeepSeek、Kimi、硅基流动的接口格式一致，路由层通过该接口在各服务提供方之间切换
+ *
+ * @author Shane
+ */
+public interface LlmChatManager {
+
+    /**
+     * 服务提供方
+     */
+    LlmProviderEnum getProvider();
+
+    /**
+     * 发送非流式聊天请求
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 聊天响应对象
+     */
+    ChatResponse chat(ChatRequest chatRequest);
+
+    /**
+     * 发送非流式聊天请求（响应式），取消订阅时同时取消上游 HTTP 请求
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 聊天响应
+     */
+    Mono<ChatResponse> chatMono(ChatRequest chatRequest);
+
+    /**
+     * 发送流式聊天请求
+     *
+     * @param chatRequest 聊天请求对象
+     * @param onChunk     每收到一个数据块时的回调函数
+     */
+    void streamChat(ChatRequest chatRequest, Consumer<StreamChatResponse> onChunk);
+
+    /**
+     * 发送流式聊天请求（响应式）
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 数据块流
+     */
+    Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest);
+}
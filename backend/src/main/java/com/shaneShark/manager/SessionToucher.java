@@ -0,0 +1,145 @@
+package com.shaneShark.manager;
+
+import com.shaneShark.config.SessionIndexConfig;
+import com.shaneShark.model.entity.ChatSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 会话更新时间刷新
+ * 每轮对话结束时记录会话的最新时间，窗口内对同一会话的多次刷新合并为一次；
+ * 到期后把所有待刷新的会话以一次无序批量写入提交，每个未删除的会话只执行 $max 更新 updateTime，
+ * 不再先查询整个文档再整体保存，也不会覆盖并发修改的标题等其他字段。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class SessionToucher {
+
+    @Resource
+    private SessionIndexConfig sessionIndexConfig;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private ChatSessionIndex chatSessionIndex;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 待刷新的会话ID -> 最新更新时间
+     */
+    private final Map<String, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        if (sessionIndexConfig.getTouchWindowMillis() <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "session-touch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, sessionIndexConfig.getTouchWindowMillis(),
+                sessionIndexConfig.getTouchWindowMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 刷新会话更新时间，窗口关闭时直接写入
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     */
+    public void touch(String sessionId, Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        if (scheduler == null) {
+            // 只刷新未删除的会话，生成期间会话被删除时不能把它重新放回最近会话缓存
+            if (mongoTemplate.updateFirst(activeSession(sessionId), new Update().max("updateTime", now),
+                    ChatSession.class).getMatchedCount() > 0) {
+                chatSessionIndex.touch(userId, sessionId);
+            }
+            return;
+        }
+        // 窗口模式下写入前无法确认会话仍未删除，不更新最近会话缓存，由缓存过期后重新查询
+        pending.merge(sessionId, now, (previous, current) -> current.isAfter(previous) ? current : previous);
+    }
+
+    /**
+     * 把窗口内的刷新合并成一次批量写入
+     */
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, ChatSession.class);
+        int count = 0;
+        Iterator<Map.Entry<String, LocalDateTime>> iterator = pending.entrySet().iterator();
+        Map<String, LocalDateTime> batch = new HashMap<>();
+        while (iterator.hasNext()) {
+            Map.Entry<String, LocalDateTime> entry = iterator.next();
+            iterator.remove();
+            batch.put(entry.getKey(), entry.getValue());
+            bulk.updateOne(activeSession(entry.getKey()), new Update().max("updateTime", entry.getValue()));
+            count++;
+        }
+        try {
+            bulk.execute();
+            meterRegistry.counter("chat.session.touch.flushed").increment(count);
+        } catch (RuntimeException e) {
+            // 放回待刷新表，下个窗口重试；$max 保证重试不会把时间改回去
+            batch.forEach((sessionId, time) ->
+                    pending.merge(sessionId, time, (previous, current) -> current.isAfter(previous) ? current : previous));
+            throw e;
+        }
+    }
+
+    private Query activeSession(String sessionId) {
+        return Query.query(Criteria.where("_id").is(sessionId).and("isDelete").is(false));
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("批量刷新会话时间失败: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler == null) {
+            return;
+        }
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flushQuietly();
+    }
+}
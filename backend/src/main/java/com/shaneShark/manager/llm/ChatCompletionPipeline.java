@@ -0,0 +1,164 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import jakarta.annotation.Resource;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 聊天补全调用链
+ * 各聊天服务共用的"精确缓存 → 语义缓存 → 令牌额度预扣 → 合并在途请求 → 按实际用量对账 → 写入缓存"流程，
+ * 服务层只负责会话、历史消息和消息保存，通过回调在回答完成时保存AI回复
+ *
+ * @author Shane
+ */
+@Component
+public class ChatCompletionPipeline {
+
+    @Resource
+    private SemanticResponseCache semanticResponseCache;
+
+    @Resource
+    private PromptResultCache promptResultCache;
+
+    @Resource
+    private RequestCoalescer requestCoalescer;
+
+    @Resource
+    private TokenBudgetLimiter tokenBudgetLimiter;
+
+    /**
+     * 非流式聊天
+     *
+     * @param provider    本次请求的服务提供方，缓存和额度都归属于它
+     * @param fullRequest 包含历史消息和 sessionId 的完整请求
+     * @param upstream    实际的上游调用
+     * @return 响应
+     */
+    public ChatResponse chat(LlmProviderEnum provider, ChatRequest fullRequest, Supplier<ChatResponse> upstream) {
+        // 精确缓存：temperature 为 0 的确定性请求按规范化哈希复用完整响应
+        String exactKey = promptResultCache.chatKey(provider, fullRequest);
+        ChatResponse response = promptResultCache.get(PromptResultCache.CHAT, exactKey, ChatResponse.class);
+        if (response != null) {
+            return response;
+        }
+        // 语义缓存：相似问题直接复用已有答案
+        SemanticResponseCache.Lookup cacheLookup = semanticResponseCache.lookup(provider, fullRequest);
+        if (cacheLookup.isHit()) {
+            return semanticResponseCache.toChatResponse(cacheLookup);
+        }
+        long startTime = System.currentTimeMillis();
+        // 按用户和服务提供方预扣令牌额度，响应后按实际用量对账
+        TokenBudgetLimiter.Reservation reservation = tokenBudgetLimiter.reserve(fullRequest.getUserId(), provider, fullRequest);
+        try {
+            // 相同的在途请求只发起一次上游调用
+            response = requestCoalescer.chat(provider, fullRequest, upstream);
+        } catch (RuntimeException e) {
+            tokenBudgetLimiter.cancel(reservation);
+            throw e;
+        }
+        tokenBudgetLimiter.settle(reservation, response);
+        // 对冲请求由次优提供方返回时，答案不写入按首选提供方隔离的缓存
+        if (response.getServedBy() == null || response.getServedBy() == provider) {
+            semanticResponseCache.store(cacheLookup, response.getContent(), System.currentTimeMillis() - startTime);
+            promptResultCache.put(PromptResultCache.CHAT, exactKey, response);
+        }
+        return response;
+    }
+
+    /**
+     * 流式聊天，在当前线程上逐块消费
+     *
+     * @param provider    本次请求的服务提供方
+     * @param fullRequest 包含历史消息和 sessionId 的完整请求
+     * @param upstream    实际的上游流
+     * @param onChunk     每个数据块的回调
+     * @param onFinished  收到结束数据块后以完整回答调用，在当前线程执行
+     */
+    public void stream(LlmProviderEnum provider, ChatRequest fullRequest, Supplier<Flux<StreamChatResponse>> upstream,
+                       Consumer<StreamChatResponse> onChunk, Consumer<String> onFinished) {
+        StringBuilder responseContent = new StringBuilder();
+        AtomicReference<StreamChatResponse.Usage> usage = new AtomicReference<>();
+        SemanticResponseCache.Lookup cacheLookup = semanticResponseCache.lookup(provider, fullRequest);
+        long startTime = System.currentTimeMillis();
+
+        Consumer<StreamChatResponse> handler = streamResponse -> {
+            collect(streamResponse, responseContent, usage);
+            onChunk.accept(streamResponse);
+            if (streamResponse.isFinished()) {
+                String content = responseContent.toString();
+                semanticResponseCache.store(cacheLookup, content, System.currentTimeMillis() - startTime);
+                onFinished.accept(content);
+            }
+        };
+
+        // 语义缓存命中时模拟流式回放
+        if (cacheLookup.isHit()) {
+            semanticResponseCache.toStreamChunks(cacheLookup).forEach(handler);
+            return;
+        }
+        // 按用户和服务提供方预扣令牌额度，流结束后按实际用量对账
+        TokenBudgetLimiter.Reservation reservation = tokenBudgetLimiter.reserve(fullRequest.getUserId(), provider, fullRequest);
+        // 相同的在途流式请求共享一条上游流，在当前线程上逐块消费，关闭时取消订阅
+        try (Stream<StreamChatResponse> chunks = requestCoalescer.stream(provider, fullRequest, upstream).toStream()) {
+            chunks.forEach(handler);
+        } catch (RuntimeException e) {
+            tokenBudgetLimiter.cancel(reservation);
+            throw e;
+        }
+        tokenBudgetLimiter.settle(reservation, usage.get(), responseContent.toString());
+    }
+
+    /**
+     * 响应式流式聊天，语义缓存查询和额度预扣是阻塞操作，需在弹性线程池上订阅
+     *
+     * @param provider    本次请求的服务提供方
+     * @param fullRequest 包含历史消息和 sessionId 的完整请求
+     * @param upstream    实际的上游流
+     * @param onFinished  收到结束数据块后以完整回答调用，在弹性线程池上执行，避免阻塞 I/O 线程
+     * @return 数据块流
+     */
+    public Flux<StreamChatResponse> streamFlux(LlmProviderEnum provider, ChatRequest fullRequest,
+                                               Supplier<Flux<StreamChatResponse>> upstream, Consumer<String> onFinished) {
+        StringBuilder responseContent = new StringBuilder();
+        AtomicReference<StreamChatResponse.Usage> usage = new AtomicReference<>();
+        SemanticResponseCache.Lookup cacheLookup = semanticResponseCache.lookup(provider, fullRequest);
+        long startTime = System.currentTimeMillis();
+        // 未命中缓存时按用户和服务提供方预扣令牌额度，流结束后按实际用量对账
+        TokenBudgetLimiter.Reservation reservation = cacheLookup.isHit() ? null
+                : tokenBudgetLimiter.reserve(fullRequest.getUserId(), provider, fullRequest);
+        Flux<StreamChatResponse> source = cacheLookup.isHit()
+                ? semanticResponseCache.replay(cacheLookup)
+                : requestCoalescer.stream(provider, fullRequest, upstream);
+        return source
+                .doOnNext(streamResponse -> {
+                    collect(streamResponse, responseContent, usage);
+                    if (streamResponse.isFinished()) {
+                        String content = responseContent.toString();
+                        semanticResponseCache.store(cacheLookup, content, System.currentTimeMillis() - startTime);
+                        Schedulers.boundedElastic().schedule(() -> onFinished.accept(content));
+                    }
+                })
+                .doOnError(e -> tokenBudgetLimiter.cancel(reservation))
+                .doFinally(signal -> tokenBudgetLimiter.settle(reservation, usage.get(), responseContent.toString()));
+    }
+
+    private void collect(StreamChatResponse streamResponse, StringBuilder responseContent,
+                         AtomicReference<StreamChatResponse.Usage> usage) {
+        if (streamResponse.getDeltaContent() != null) {
+            responseContent.append(streamResponse.getDeltaContent());
+        }
+        if (streamResponse.getUsage() != null) {
+            usage.set(streamResponse.getUsage());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.shaneShark.manager.llm;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.Message;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.ReactiveHttpOutputMessage;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.BodyInserter;
+import org.springframework.web.reactive.function.BodyInserters;
+import reactor.core.publisher.Flux;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 聊天请求体写入器
+ * 已持久化的历史消息内容不会再变化，按消息ID缓存其序列化后的 JSON 字节；
+ * 请求体由"缓存片段 + 本轮消息 + 其余参数"按顺序直接写入连接（OkHttp 的 Okio sink 或 WebClient 的 DataBuffer），
+ * 长会话每轮不再把全部历史重新序列化成一个大字符串再复制进请求体；其余参数只输出 OpenAI 兼容字段。
+ *
+ * @author Shane
+ */
+@Component
+public class ChatRequestBodyWriter {
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static final byte[] MESSAGES_START = "{\"messages\":[".getBytes(StandardCharsets.UTF_8);
+
+    private static final byte[] COMMA = {','};
+
+    private static final byte[] ARRAY_END = {']'};
+
+    private static final byte[] OBJECT_END = {'}'};
+
+    /**
+     * 每个缓存片段除内容外的估算占用
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    @Value("${llm.fragment-cache.max-memory-bytes:33554432}")
+    private long maxMemoryBytes;
+
+    @Value("${llm.fragment-cache.expire-after-access-seconds:1800}")
+    private long expireAfterAccessSeconds;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ObjectMapper objectMapper;
+
+    private Cache<String, byte[]> fragments;
+
+    public ChatRequestBodyWriter() {
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+    }
+
+    @PostConstruct
+    public void init() {
+        fragments = Caffeine.newBuilder()
+                .maximumWeight(maxMemoryBytes)
+                .weigher((String key, byte[] value) -> ENTRY_OVERHEAD_BYTES + 2 * key.length() + value.length)
+                .expireAfterAccess(Duration.ofSeconds(expireAfterAccessSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, fragments, "llm-message-fragment");
+    }
+
+    /**
+     * 创建 OkHttp 流式请求体，序列化在调用时完成，写入时只输出字节
+     *
+     * @param chatRequest 聊天请求
+     * @return 请求体（长度未知，按 chunked 方式发送）
+     * @throws IOException 序列化失败时抛出
+     */
+    public RequestBody requestBody(ChatRequest chatRequest) throws IOException {
+        List<byte[]> parts = parts(chatRequest);
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                for (byte[] part : parts) {
+                    sink.write(part);
+                }
+            }
+        };
+    }
+
+    /**
+     * 创建 WebClient 请求体，各片段直接包装为 DataBuffer，不再复制
+     *
+     * @param chatRequest 聊天请求
+     * @return 请求体写入器
+     * @throws IOException 序列化失败时抛出
+     */
+    public BodyInserter<Flux<DataBuffer>, ReactiveHttpOutputMessage> bodyInserter(ChatRequest chatRequest)
+            throws IOException {
+        List<byte[]> parts = parts(chatRequest);
+        return BodyInserters.fromDataBuffers(Flux.fromIterable(parts).map(DefaultDataBufferFactory.sharedInstance::wrap));
+    }
+
+    /**
+     * 按顺序拆分请求体：{"messages":[ 片段, 片段 ... ] , 其余参数 }
+     */
+    private List<byte[]> parts(ChatRequest chatRequest) throws IOException {
+        List<Message> messages = chatRequest.getMessages() != null ? chatRequest.getMessages() : List.of();
+        List<byte[]> parts = new ArrayList<>(messages.size() * 2 + 4);
+        parts.add(MESSAGES_START);
+        for (int i = 0; i < messages.size(); i++) {
+            if (i > 0) {
+                parts.add(COMMA);
+            }
+            parts.add(fragment(messages.get(i)));
+        }
+        parts.add(ARRAY_END);
+
+        // 其余参数只有少量字段，每次序列化
+        ObjectNode node = envelope(chatRequest);
+        if (node.isEmpty()) {
+            parts.add(OBJECT_END);
+        } else {
+            byte[] rest = objectMapper.writeValueAsBytes(node);
+            // 去掉开头的 "{"，以 "," 接在消息数组之后
+            rest[0] = ',';
+            parts.add(rest);
+        }
+        return parts;
+    }
+
+    /**
+     * 只输出 OpenAI 兼容的请求参数，会话ID、用户ID、请求ID 等内部字段不发送给第三方
+     */
+    private ObjectNode envelope(ChatRequest chatRequest) {
+        ObjectNode node = objectMapper.createObjectNode();
+        if (chatRequest.getModel() != null) {
+            node.put("model", chatRequest.getModel());
+        }
+        if (chatRequest.getStream() != null) {
+            node.put("stream", chatRequest.getStream());
+        }
+        if (chatRequest.getTemperature() != null) {
+            node.put("temperature", chatRequest.getTemperature());
+        }
+        if (chatRequest.getTopP() != null) {
+            node.put("top_p", chatRequest.getTopP());
+        }
+        if (chatRequest.getMaxTokens() != null) {
+            node.put("max_tokens", chatRequest.getMaxTokens());
+        }
+        if (chatRequest.getThinking() != null) {
+            node.set("thinking", objectMapper.valueToTree(chatRequest.getThinking()));
+        }
+        return node;
+    }
+
+    private byte[] fragment(Message message) throws IOException {
+        String key = message.getFragmentKey();
+        if (key == null) {
+            return objectMapper.writeValueAsBytes(message);
+        }
+        try {
+            return fragments.get(key, k -> {
+                try {
+                    return objectMapper.writeValueAsBytes(message);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.shaneShark.manager.llm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shaneShark.config.ContextWindowConfig;
+import com.shaneShark.config.LlmProviderProperties;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.entity.ChatMessage;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import com.shaneShark.utils.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按令牌预算构建聊天上下文窗口
+ * 预算 = 模型上下文长度 - 回答预留 - 当前消息 - 滚动摘要，系统消息始终保留，其余历史消息按整轮（用户提问及其后的回复）
+ * 从最近往前保留，放不下的更早轮次被裁掉。历史消息的令牌数按消息ID缓存，每轮重新计算几乎没有开销。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class ContextWindowBuilder {
+
+    private static final String SYSTEM_ROLE = "system";
+
+    private static final String USER_ROLE = "user";
+
+    @Resource
+    private ContextWindowConfig contextWindowConfig;
+
+    @Resource
+    private LlmTransport llmTransport;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, Integer> tokenCounts;
+
+    @PostConstruct
+    public void init() {
+        tokenCounts = Caffeine.newBuilder()
+                .maximumSize(contextWindowConfig.getTokenCacheSize())
+                .build();
+    }
+
+    /**
+     * 从历史消息中选出放得进上下文窗口的部分
+     *
+     * @param provider    服务提供方，请求未指定模型时使用其默认模型
+     * @param chatRequest 当前请求（含本轮消息和 maxTokens）
+     * @param summary     放在历史之前的滚动摘要消息，没有时为空
+     * @param history     按时间正序的历史消息
+     * @return 保留的历史消息，保持原有顺序
+     */
+    public List<ChatMessage> select(LlmProviderEnum provider, ChatRequest chatRequest, Message summary,
+                                    List<ChatMessage> history) {
+        if (!contextWindowConfig.isEnabled() || history.isEmpty()) {
+            return history;
+        }
+        String model = resolveModel(provider, chatRequest.getModel());
+        int outputTokens = chatRequest.getMaxTokens() != null
+                ? chatRequest.getMaxTokens() : contextWindowConfig.getReservedOutputTokens();
+        int budget = contextTokens(model) - outputTokens - TokenEstimator.estimate(chatRequest.getMessages());
+        if (contextWindowConfig.getMaxHistoryTokens() > 0) {
+            budget = Math.min(budget, contextWindowConfig.getMaxHistoryTokens());
+        }
+        // 摘要同样占用上下文，且不受裁剪
+        if (summary != null) {
+            budget -= TokenEstimator.estimate(summary);
+        }
+
+        boolean[] keep = new boolean[history.size()];
+        for (int i = 0; i < history.size(); i++) {
+            if (SYSTEM_ROLE.equals(history.get(i).getRole())) {
+                keep[i] = true;
+                budget -= count(history.get(i));
+            }
+        }
+
+        // 从最近往前按整轮保留：一轮从用户消息开始，到下一条用户消息之前结束
+        int used = 0;
+        int turnEnd = history.size();
+        int turnTokens = 0;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage message = history.get(i);
+            if (SYSTEM_ROLE.equals(message.getRole())) {
+                continue;
+            }
+            turnTokens += count(message);
+            if (!USER_ROLE.equals(message.getRole()) && i > 0) {
+                continue;
+            }
+            if (used + turnTokens > budget) {
+                break;
+            }
+            used += turnTokens;
+            for (int j = i; j < turnEnd; j++) {
+                keep[j] = true;
+            }
+            turnEnd = i;
+            turnTokens = 0;
+        }
+
+        List<ChatMessage> selected = new ArrayList<>(history.size());
+        for (int i = 0; i < history.size(); i++) {
+            if (keep[i]) {
+                selected.add(history.get(i));
+            }
+        }
+        int trimmed = history.size() - selected.size();
+        if (trimmed > 0) {
+            log.info("历史消息超出令牌预算，已裁剪: provider={}, model={}, budget={}, used={}, 保留{}条, 裁剪{}条",
+                    provider.getValue(), model, budget, used, selected.size(), trimmed);
+            meterRegistry.counter("llm.context.trimmed.messages", "provider", provider.getValue()).increment(trimmed);
+        }
+        return selected;
+    }
+
+    /**
+     * 估算历史消息的令牌数，有ID的消息内容不会再变化，按ID缓存
+     */
+    private int count(ChatMessage message) {
+        if (message.getId() == null) {
+            return estimate(message);
+        }
+        return tokenCounts.get(message.getId(), id -> estimate(message));
+    }
+
+    private int estimate(ChatMessage message) {
+        Message msg = new Message(message.getRole(), message.getContent());
+        msg.setImageUrls(message.getImageUrls());
+        msg.setVideoUrls(message.getVideoUrls());
+        return TokenEstimator.estimate(msg);
+    }
+
+    private String resolveModel(LlmProviderEnum provider, String model) {
+        if (StringUtils.isBlank(model) || LlmRouter.AUTO_MODEL.equalsIgnoreCase(model.trim())) {
+            LlmProviderProperties properties = llmTransport.getProperties(provider);
+            return properties != null ? properties.getModel() : model;
+        }
+        return model;
+    }
+
+    /**
+     * 按最长前缀匹配模型的上下文长度
+     */
+    private int contextTokens(String model) {
+        int contextTokens = contextWindowConfig.getDefaultContextTokens();
+        int matchedLength = -1;
+        if (model != null) {
+            for (Map.Entry<String, Integer> entry : contextWindowConfig.getModelContextTokens().entrySet()) {
+                if (model.startsWith(entry.getKey()) && entry.getKey().length() > matchedLength) {
+                    contextTokens = entry.getValue();
+                    matchedLength = entry.getKey().length();
+                }
+            }
+        }
+        return contextTokens;
+    }
+}
@@ -0,0 +1,72 @@
+package com.shaneShark.manager.llm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * 进程内令牌桶存储，单实例部署使用
+ * 长时间未访问的桶已经补满，与新建的桶等价，按访问时间淘汰，避免用户桶无限增长
+ *
+ * @author Shane
+ */
+public class InMemoryTokenBucketStore implements TokenBucketStore {
+
+    private final Cache<String, Bucket> buckets;
+
+    /**
+     * @param expireAfterAccess 桶的空闲淘汰时间，应不短于空桶补满所需的时间
+     */
+    public InMemoryTokenBucketStore(Duration expireAfterAccess) {
+        this.buckets = Caffeine.newBuilder().expireAfterAccess(expireAfterAccess).build();
+    }
+
+    @Override
+    public long tryConsume(String key, long tokens, long capacity, double refillPerSecond) {
+        return bucketOf(key, capacity).tryConsume(tokens, capacity, refillPerSecond);
+    }
+
+    @Override
+    public void adjust(String key, long delta, long capacity, double refillPerSecond) {
+        bucketOf(key, capacity).adjust(delta, capacity, refillPerSecond);
+    }
+
+    private Bucket bucketOf(String key, long capacity) {
+        return buckets.get(key, k -> new Bucket(capacity));
+    }
+
+    private static class Bucket {
+
+        private double tokens;
+
+        private long lastRefillNanos = System.nanoTime();
+
+        private Bucket(long capacity) {
+            this.tokens = capacity;
+        }
+
+        synchronized long tryConsume(long amount, long capacity, double refillPerSecond) {
+            refill(capacity, refillPerSecond);
+            if (tokens >= amount) {
+                tokens -= amount;
+                return 0;
+            }
+            if (refillPerSecond <= 0) {
+                return Long.MAX_VALUE;
+            }
+            return (long) Math.ceil((amount - tokens) / refillPerSecond * 1000);
+        }
+
+        synchronized void adjust(long delta, long capacity, double refillPerSecond) {
+            refill(capacity, refillPerSecond);
+            tokens = Math.min(capacity, tokens - delta);
+        }
+
+        private void refill(long capacity, double refillPerSecond) {
+            long now = System.nanoTime();
+            tokens = Math.min(capacity, tokens + (now - lastRefillNanos) / 1e9 * refillPerSecond);
+            lastRefillNanos = now;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import dev.langchain4j.data.image.Image;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.ImageContent;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.output.FinishReason;
+import dev.langchain4j.model.output.TokenUsage;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * langchain4j 消息与 OpenAI 兼容 DTO 之间的转换
+ * 供各 ChatLanguageModel / StreamingChatLanguageModel 实现共用，直接构建 {@link Message}，
+ * 不再经过 HashMap 树和反射读取图片地址。
+ *
+ * @author Shane
+ */
+@Slf4j
+public final class LangChainMessageConverter {
+
+    private static final String DEFAULT_IMAGE_MIME_TYPE = "image/jpeg";
+
+    private LangChainMessageConverter() {
+    }
+
+    /**
+     * 转换 langchain4j 消息列表
+     *
+     * @param messages langchain4j 消息
+     * @return 请求消息
+     */
+    public static List<Message> toMessages(List<ChatMessage> messages) {
+        List<Message> result = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (message instanceof UserMessage userMessage) {
+                result.add(toMessage(userMessage));
+            } else if (message instanceof AiMessage aiMessage) {
+                result.add(new Message("assistant", aiMessage.text()));
+            } else if (message instanceof SystemMessage systemMessage) {
+                result.add(new Message("system", systemMessage.text()));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 用户消息：纯文本时发送字符串，含图片时按原顺序发送多模态内容数组
+     */
+    private static Message toMessage(UserMessage userMessage) {
+        List<Content> contents = userMessage.contents();
+        if (userMessage.hasSingleText()) {
+            return new Message("user", userMessage.singleText());
+        }
+        List<Message.ContentItem> items = new ArrayList<>(contents.size());
+        for (Content content : contents) {
+            if (content instanceof TextContent textContent) {
+                Message.ContentItem item = new Message.ContentItem();
+                item.setType("text");
+                item.setText(textContent.text());
+                items.add(item);
+            } else if (content instanceof ImageContent imageContent) {
+                String url = imageUrl(imageContent.image());
+                if (url == null) {
+                    log.warn("图片内容既没有URL也没有Base64数据，已忽略");
+                    continue;
+                }
+                Message.ImageUrl imageUrl = new Message.ImageUrl();
+                imageUrl.setUrl(url);
+                Message.ContentItem item = new Message.ContentItem();
+                item.setType("image_url");
+                item.setImageUrl(imageUrl);
+                items.add(item);
+            }
+        }
+        Message message = new Message();
+        message.setRole("user");
+        message.setContentList(items);
+        return message;
+    }
+
+    private static String imageUrl(Image image) {
+        if (image == null) {
+            return null;
+        }
+        if (image.url() != null) {
+            return image.url().toString();
+        }
+        if (image.base64Data() != null) {
+            String mimeType = image.mimeType() != null ? image.mimeType() : DEFAULT_IMAGE_MIME_TYPE;
+            return "data:" + mimeType + ";base64," + image.base64Data();
+        }
+        return null;
+    }
+
+    /**
+     * 转换令牌用量
+     */
+    public static TokenUsage toTokenUsage(ChatResponse.Usage usage) {
+        if (usage == null) {
+            return null;
+        }
+        return new TokenUsage(usage.getPromptTokens(), usage.getCompletionTokens(), usage.getTotalTokens());
+    }
+
+    /**
+     * 转换令牌用量（流式）
+     */
+    public static TokenUsage toTokenUsage(StreamChatResponse.Usage usage) {
+        if (usage == null) {
+            return null;
+        }
+        return new TokenUsage(usage.getPromptTokens(), usage.getCompletionTokens(), usage.getTotalTokens());
+    }
+
+    /**
+     * 转换结束原因
+     */
+    public static FinishReason toFinishReason(String finishReason) {
+        if (finishReason == null) {
+            return null;
+        }
+        switch (finishReason) {
+            case "stop":
+                return FinishReason.STOP;
+            case "length":
+                return FinishReason.LENGTH;
+            case "tool_calls":
+            case "function_call":
+                return FinishReason.TOOL_EXECUTION;
+            case "content_filter":
+                return FinishReason.CONTENT_FILTER;
+            default:
+                return FinishReason.OTHER;
+        }
+    }
+}
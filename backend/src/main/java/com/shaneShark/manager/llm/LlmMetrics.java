@@ -0,0 +1,259 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import com.shaneShark.utils.TokenEstimator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.Resource;
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.Protocol;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import reactor.netty.channel.ChannelMetricsRecorder;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.SocketAddress;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用延迟指标
+ * 记录上游建连耗时、首字节时间（TTFB）、首字延迟（TTFT）、字间间隔、生成速度，以及服务层的历史加载和持久化耗时，
+ * 时间类指标发布百分位直方图，通过 actuator 导出。
+ * 调用类指标按 provider / model / endpoint 打标签，endpoint 为调用方式：chat（非流式）、stream（回调式流式）、flux（响应式流式）；
+ * 建连发生在连接池层，与模型和调用方式无关，只按 provider 和客户端类型打标签。
+ *
+ * @author Shane
+ */
+@Component
+public class LlmMetrics {
+
+    public static final String ENDPOINT_CHAT = "chat";
+
+    public static final String ENDPOINT_STREAM = "stream";
+
+    public static final String ENDPOINT_FLUX = "flux";
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 开始记录一次上游调用
+     *
+     * @param provider 服务提供方
+     * @param model    模型名
+     * @param endpoint 调用方式
+     * @return 调用记录器
+     */
+    public CallRecorder start(LlmProviderEnum provider, String model, String endpoint) {
+        return new CallRecorder(tags(provider, model, endpoint));
+    }
+
+    /**
+     * 记录历史消息加载耗时
+     */
+    public <T> T recordHistoryLoad(LlmProviderEnum provider, String model, String endpoint, Supplier<T> task) {
+        return timer("llm.chat.history.load", "加载并组装历史消息的耗时", tags(provider, model, endpoint))
+                .record(task);
+    }
+
+    /**
+     * 记录消息持久化耗时
+     *
+     * @param operation 持久化内容：user（用户消息）、assistant（AI 回复及会话时间）
+     */
+    public void recordPersistence(LlmProviderEnum provider, String model, String endpoint, String operation,
+                                  Runnable task) {
+        timer("llm.chat.persistence", "保存消息和更新会话的耗时",
+                tags(provider, model, endpoint).and("operation", operation))
+                .record(task);
+    }
+
+    /**
+     * 创建 OkHttp 事件监听工厂，记录建连耗时
+     */
+    public EventListener.Factory eventListenerFactory(LlmProviderEnum provider) {
+        return call -> new EventListener() {
+
+            private long connectStart;
+
+            @Override
+            public void connectStart(Call call, InetSocketAddress inetSocketAddress, Proxy proxy) {
+                connectStart = System.nanoTime();
+            }
+
+            @Override
+            public void connectEnd(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol) {
+                recordConnect(provider, "okhttp", "SUCCESS", System.nanoTime() - connectStart);
+            }
+
+            @Override
+            public void connectFailed(Call call, InetSocketAddress inetSocketAddress, Proxy proxy, Protocol protocol,
+                                      IOException ioe) {
+                recordConnect(provider, "okhttp", "ERROR", System.nanoTime() - connectStart);
+            }
+        };
+    }
+
+    /**
+     * 创建 Reactor Netty 通道指标记录器，只记录建连耗时（含 TLS 握手），其余通道指标忽略
+     */
+    public ChannelMetricsRecorder channelMetricsRecorder(LlmProviderEnum provider) {
+        return new ChannelMetricsRecorder() {
+
+            @Override
+            public void recordConnectTime(SocketAddress remoteAddress, Duration time, String status) {
+                recordConnect(provider, "netty", status, time.toNanos());
+            }
+
+            @Override
+            public void recordTlsHandshakeTime(SocketAddress remoteAddress, Duration time, String status) {
+                timer("llm.upstream.tls.handshake", "TLS 握手耗时",
+                        Tags.of("provider", provider.getValue(), "client", "netty", "status", status))
+                        .record(time);
+            }
+
+            @Override
+            public void recordDataReceived(SocketAddress remoteAddress, long bytes) {
+            }
+
+            @Override
+            public void recordDataSent(SocketAddress remoteAddress, long bytes) {
+            }
+
+            @Override
+            public void incrementErrorsCount(SocketAddress remoteAddress) {
+            }
+
+            @Override
+            public void recordResolveAddressTime(SocketAddress remoteAddress, Duration time, String status) {
+            }
+        };
+    }
+
+    private void recordConnect(LlmProviderEnum provider, String client, String status, long nanos) {
+        timer("llm.upstream.connect", "与上游建立连接的耗时",
+                Tags.of("provider", provider.getValue(), "client", client, "status", status))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Tags tags(LlmProviderEnum provider, String model, String endpoint) {
+        return Tags.of("provider", provider.getValue(),
+                "model", StringUtils.defaultIfBlank(model, "default"),
+                "endpoint", endpoint);
+    }
+
+    private Timer timer(String name, String description, Tags tags) {
+        return Timer.builder(name)
+                .description(description)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    /**
+     * 单次上游调用的记录器，流式数据块按顺序回调，不需要同步
+     */
+    public class CallRecorder {
+
+        private final Tags tags;
+
+        private final long startNanos = System.nanoTime();
+
+        private long firstByteNanos = -1;
+
+        private long firstTokenNanos = -1;
+
+        private long lastTokenNanos;
+
+        private int estimatedTokens;
+
+        private Integer completionTokens;
+
+        private boolean completed;
+
+        private CallRecorder(Tags tags) {
+            this.tags = tags;
+        }
+
+        /**
+         * 收到响应头时调用
+         */
+        public void firstByte() {
+            if (firstByteNanos < 0) {
+                firstByteNanos = System.nanoTime();
+                timer("llm.upstream.ttfb", "发出请求到收到响应头的耗时", tags)
+                        .record(firstByteNanos - startNanos, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        /**
+         * 收到流式数据块时调用，首个带内容的数据块记为首字，之后记录相邻两个带内容数据块的间隔
+         */
+        public void onChunk(StreamChatResponse chunk) {
+            if (chunk.getUsage() != null && chunk.getUsage().getCompletionTokens() != null) {
+                completionTokens = chunk.getUsage().getCompletionTokens();
+            }
+            String content = StringUtils.defaultString(chunk.getDeltaContent())
+                    + StringUtils.defaultString(chunk.getDeltaReasoningContent());
+            if (content.isEmpty()) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (firstTokenNanos < 0) {
+                firstTokenNanos = now;
+                timer("llm.stream.ttft", "发出请求到收到首个内容数据块的耗时", tags)
+                        .record(now - startNanos, TimeUnit.NANOSECONDS);
+            } else {
+                timer("llm.stream.inter.token", "相邻两个内容数据块的间隔", tags)
+                        .record(now - lastTokenNanos, TimeUnit.NANOSECONDS);
+            }
+            lastTokenNanos = now;
+            estimatedTokens += TokenEstimator.estimate(content);
+        }
+
+        /**
+         * 流式响应正常结束时调用，按首字到末字的时间计算生成速度；上游未返回用量时使用估算值
+         */
+        public void complete() {
+            if (completed || firstTokenNanos < 0 || lastTokenNanos <= firstTokenNanos) {
+                return;
+            }
+            completed = true;
+            int tokens = completionTokens != null ? completionTokens : estimatedTokens;
+            recordTokensPerSecond(tokens, lastTokenNanos - firstTokenNanos);
+        }
+
+        /**
+         * 非流式响应返回时调用，按整体耗时计算生成速度
+         */
+        public void complete(ChatResponse response) {
+            if (completed || response == null || response.getUsage() == null
+                    || response.getUsage().getCompletionTokens() == null) {
+                return;
+            }
+            completed = true;
+            recordTokensPerSecond(response.getUsage().getCompletionTokens(), System.nanoTime() - startNanos);
+        }
+
+        private void recordTokensPerSecond(int tokens, long nanos) {
+            if (tokens <= 0 || nanos <= 0) {
+                return;
+            }
+            DistributionSummary.builder("llm.tokens.per.second")
+                    .description("生成速度（令牌/秒）")
+                    .tags(tags)
+                    .publishPercentileHistogram()
+                    .register(meterRegistry)
+                    .record(tokens / (nanos / 1_000_000_000.0));
+        }
+    }
+}
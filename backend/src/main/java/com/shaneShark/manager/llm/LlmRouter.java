@@ -0,0 +1,306 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.config.LlmProviderProperties;
+import com.shaneShark.config.LlmRouterConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.manager.LlmChatManager;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * 大模型延迟感知路由
+ * 按服务提供方 + 模型统计首字延迟（TTFT）、整体延迟和错误率的 EWMA，
+ * 每个请求发往当前最快的健康提供方；没有样本的提供方优先试探，不健康的提供方冷却后重新试探。
+ * 非流式请求可选对冲：首个请求超过该提供方的 p95 延迟仍未返回时向次优提供方再发一次，先返回者胜出，另一个被取消。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class LlmRouter {
+
+    /**
+     * 请求的 model 为该值时走路由
+     */
+    public static final String AUTO_MODEL = "auto";
+
+    @Resource
+    private LlmRouterConfig llmRouterConfig;
+
+    @Resource
+    private LlmTransport llmTransport;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    @Resource
+    private ProviderGuard providerGuard;
+
+    @Resource
+    private List<LlmChatManager> llmChatManagers;
+
+    private final ConcurrentHashMap<String, ProviderStats> statsMap = new ConcurrentHashMap<>();
+
+    /**
+     * 请求是否需要路由
+     *
+     * @param chatRequest 聊天请求
+     * @return model 为 auto 时返回 true
+     */
+    public boolean isAuto(ChatRequest chatRequest) {
+        return AUTO_MODEL.equalsIgnoreCase(StringUtils.trim(chatRequest.getModel()));
+    }
+
+    /**
+     * 选择当前最优的提供方，调用方据此确定缓存、额度和指标归属后再用同一提供方发起请求
+     *
+     * @param streaming 是否流式请求（流式按首字延迟排序）
+     * @return 服务提供方
+     */
+    public LlmProviderEnum select(boolean streaming) {
+        return rank(streaming).get(0).getProvider();
+    }
+
+    /**
+     * 路由非流式请求，启用对冲时可能同时调用两个提供方
+     *
+     * @param chatRequest 聊天请求，不会被修改
+     * @return 先成功返回的响应
+     */
+    public ChatResponse chat(ChatRequest chatRequest) {
+        return chat(chatRequest, null);
+    }
+
+    /**
+     * 以指定提供方为首选路由非流式请求，对冲时向次优提供方再发一次
+     *
+     * @param chatRequest 聊天请求，不会被修改
+     * @param preferred   首选提供方（通常来自 {@link #select(boolean)}），为空时按当前排序
+     * @return 先成功返回的响应，{@link ChatResponse#getServedBy()} 为实际返回的提供方
+     */
+    public ChatResponse chat(ChatRequest chatRequest, LlmProviderEnum preferred) {
+        List<LlmChatManager> ranked = rank(false);
+        if (preferred != null) {
+            ranked.sort(Comparator.comparing(manager -> manager.getProvider() != preferred));
+        }
+        LlmChatManager primary = ranked.get(0);
+        Mono<ChatResponse> first = attempt(primary, chatRequest);
+        if (!llmRouterConfig.isHedgeEnabled() || ranked.size() < 2) {
+            return first.block();
+        }
+
+        LlmChatManager backup = ranked.get(1);
+        long hedgeDelay = statsOf(primary).hedgeDelay(llmRouterConfig);
+        Mono<ChatResponse> hedge = Mono.delay(Duration.ofMillis(hedgeDelay))
+                .then(Mono.defer(() -> {
+                    log.info("{} 超过 {}ms 未返回，对冲请求 {}", primary.getProvider().getValue(), hedgeDelay,
+                            backup.getProvider().getValue());
+                    meterRegistry.counter("llm.router.hedges", "provider", backup.getProvider().getValue()).increment();
+                    return attempt(backup, chatRequest);
+                }));
+        return Mono.firstWithValue(first, hedge)
+                .onErrorMap(e -> !(e instanceof BusinessException),
+                        e -> new BusinessException(ErrorCode.SYSTEM_ERROR, "AI服务调用异常: 所有服务提供方均失败"))
+                .block();
+    }
+
+    /**
+     * 路由流式请求，选择首字延迟最低的健康提供方
+     *
+     * @param chatRequest 聊天请求，不会被修改
+     * @return 数据块流
+     */
+    public Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest) {
+        return streamChatFlux(chatRequest, null);
+    }
+
+    /**
+     * 使用指定提供方执行流式请求，该提供方不可用时按当前排序选择
+     *
+     * @param chatRequest 聊天请求，不会被修改
+     * @param preferred   提供方（通常来自 {@link #select(boolean)}），为空时按当前排序
+     * @return 数据块流
+     */
+    public Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest, LlmProviderEnum preferred) {
+        return Flux.defer(() -> {
+            List<LlmChatManager> ranked = rank(true);
+            LlmChatManager manager = ranked.stream()
+                    .filter(candidate -> candidate.getProvider() == preferred)
+                    .findFirst()
+                    .orElse(ranked.get(0));
+            ProviderStats stats = statsOf(manager);
+            meterRegistry.counter("llm.router.requests", "provider", manager.getProvider().getValue(), "type", "stream")
+                    .increment();
+            long start = System.nanoTime();
+            AtomicBoolean firstChunk = new AtomicBoolean(true);
+            return manager.streamChatFlux(copyForProvider(chatRequest))
+                    .doOnNext(chunk -> {
+                        if (firstChunk.compareAndSet(true, false)) {
+                            stats.recordTtft(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), llmRouterConfig.getEwmaAlpha());
+                        }
+                    })
+                    .doOnComplete(() -> stats.recordResult(true, llmRouterConfig.getEwmaAlpha()))
+                    .doOnError(e -> stats.recordResult(false, llmRouterConfig.getEwmaAlpha()));
+        });
+    }
+
+    private Mono<ChatResponse> attempt(LlmChatManager manager, ChatRequest chatRequest) {
+        ProviderStats stats = statsOf(manager);
+        return Mono.defer(() -> {
+            meterRegistry.counter("llm.router.requests", "provider", manager.getProvider().getValue(), "type", "chat")
+                    .increment();
+            long start = System.nanoTime();
+            return manager.chatMono(copyForProvider(chatRequest))
+                    .doOnNext(response -> response.setServedBy(manager.getProvider()))
+                    .doOnSuccess(response -> {
+                        stats.recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), llmRouterConfig);
+                        stats.recordResult(true, llmRouterConfig.getEwmaAlpha());
+                    })
+                    .doOnError(e -> stats.recordResult(false, llmRouterConfig.getEwmaAlpha()));
+        });
+    }
+
+    /**
+     * 按健康状态和延迟对候选提供方排序
+     */
+    private List<LlmChatManager> rank(boolean streaming) {
+        List<String> allowed = llmRouterConfig.getProviders();
+        List<LlmChatManager> candidates = llmChatManagers.stream()
+                .filter(manager -> allowed.isEmpty() || allowed.contains(manager.getProvider().getValue()))
+                .filter(manager -> StringUtils.isNotBlank(llmTransport.getProperties(manager.getProvider()).getApiKey()))
+                .sorted(Comparator.<LlmChatManager, Boolean>comparing(manager -> providerGuard.isOpen(manager.getProvider())
+                                || !statsOf(manager).isHealthy(llmRouterConfig))
+                        .thenComparingDouble(manager -> statsOf(manager).score(streaming)))
+                .collect(Collectors.toList());
+        if (candidates.isEmpty()) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "没有可用的大模型服务");
+        }
+        return candidates;
+    }
+
+    /**
+     * 复制请求并清空模型名，由目标提供方使用自己的默认模型
+     */
+    private ChatRequest copyForProvider(ChatRequest chatRequest) {
+        ChatRequest copy = new ChatRequest();
+        BeanUtils.copyProperties(chatRequest, copy);
+        copy.setModel(null);
+        return copy;
+    }
+
+    private ProviderStats statsOf(LlmChatManager manager) {
+        LlmProviderProperties properties = llmTransport.getProperties(manager.getProvider());
+        String provider = manager.getProvider().getValue();
+        String model = StringUtils.defaultIfBlank(properties.getModel(), "default");
+        return statsMap.computeIfAbsent(provider + ":" + model, key -> {
+            ProviderStats stats = new ProviderStats(llmRouterConfig.getLatencyWindow());
+            Gauge.builder("llm.router.ttft.ewma", stats, s -> s.ttftEwma)
+                    .tags("provider", provider, "model", model).baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("llm.router.latency.ewma", stats, s -> s.latencyEwma)
+                    .tags("provider", provider, "model", model).baseUnit("milliseconds").register(meterRegistry);
+            Gauge.builder("llm.router.error.rate", stats, s -> s.errorRate)
+                    .tags("provider", provider, "model", model).register(meterRegistry);
+            return stats;
+        });
+    }
+
+    /**
+     * 单个提供方 + 模型的统计
+     */
+    private static class ProviderStats {
+
+        /**
+         * 首字延迟 EWMA（毫秒），-1 表示还没有样本
+         */
+        private volatile double ttftEwma = -1;
+
+        /**
+         * 非流式整体延迟 EWMA（毫秒），-1 表示还没有样本
+         */
+        private volatile double latencyEwma = -1;
+
+        private volatile double errorRate;
+
+        private volatile long lastErrorTime;
+
+        /**
+         * 最近的非流式延迟样本（环形缓冲），用于计算 p95
+         */
+        private final long[] window;
+
+        private int windowPosition;
+
+        private int windowCount;
+
+        private ProviderStats(int windowSize) {
+            this.window = new long[Math.max(1, windowSize)];
+        }
+
+        synchronized void recordTtft(long millis, double alpha) {
+            ttftEwma = ttftEwma < 0 ? millis : alpha * millis + (1 - alpha) * ttftEwma;
+        }
+
+        synchronized void recordLatency(long millis, LlmRouterConfig config) {
+            double alpha = config.getEwmaAlpha();
+            latencyEwma = latencyEwma < 0 ? millis : alpha * millis + (1 - alpha) * latencyEwma;
+            window[windowPosition] = millis;
+            windowPosition = (windowPosition + 1) % window.length;
+            windowCount = Math.min(windowCount + 1, window.length);
+        }
+
+        synchronized void recordResult(boolean success, double alpha) {
+            errorRate = alpha * (success ? 0 : 1) + (1 - alpha) * errorRate;
+            if (!success) {
+                lastErrorTime = System.currentTimeMillis();
+            }
+        }
+
+        boolean isHealthy(LlmRouterConfig config) {
+            return errorRate < config.getMaxErrorRate()
+                    || System.currentTimeMillis() - lastErrorTime > config.getUnhealthyCooldownMillis();
+        }
+
+        /**
+         * 排序分值，越小越优先；没有样本的提供方为 0，保证新提供方会被试探
+         */
+        double score(boolean streaming) {
+            double primary = streaming ? ttftEwma : latencyEwma;
+            double fallback = streaming ? latencyEwma : ttftEwma;
+            if (primary >= 0) {
+                return primary;
+            }
+            return Math.max(fallback, 0);
+        }
+
+        synchronized long hedgeDelay(LlmRouterConfig config) {
+            if (windowCount < config.getHedgeMinSamples()) {
+                return config.getHedgeDefaultDelayMillis();
+            }
+            long[] samples = Arrays.copyOf(window, windowCount);
+            Arrays.sort(samples);
+            long p95 = samples[Math.min(samples.length - 1, (int) Math.ceil(samples.length * 0.95) - 1)];
+            return Math.max(p95, config.getHedgeMinDelayMillis());
+        }
+    }
+}
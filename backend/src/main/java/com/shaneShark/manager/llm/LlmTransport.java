@@ -0,0 +1,223 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.config.DeepSeekConfig;
+import com.shaneShark.config.DoubaoConfig;
+import com.shaneShark.config.KimiConfig;
+import com.shaneShark.config.LlmProviderProperties;
+import com.shaneShark.config.LlmTransportConfig;
+import com.shaneShark.config.SiliconFlowConfig;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大模型 HTTP 传输层
+ * 为每个 provider 维护独立的连接池和 Dispatcher（按 host 限制并发），所有 provider 共享同一个调度线程池，
+ * 替代原先每个配置类各自创建的 OkHttpClient。
+ * 同时为每个 provider 提供基于 Reactor Netty 的 WebClient，用于非阻塞的流式调用
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class LlmTransport {
+
+    @Resource
+    private LlmTransportConfig llmTransportConfig;
+
+    @Resource
+    private DoubaoConfig doubaoConfig;
+
+    @Resource
+    private DeepSeekConfig deepSeekConfig;
+
+    @Resource
+    private KimiConfig kimiConfig;
+
+    @Resource
+    private SiliconFlowConfig siliconFlowConfig;
+
+    @Resource
+    private LlmMetrics llmMetrics;
+
+    private final Map<LlmProviderEnum, OkHttpClient> clients = new EnumMap<>(LlmProviderEnum.class);
+
+    private final Map<LlmProviderEnum, LlmProviderProperties> properties = new EnumMap<>(LlmProviderEnum.class);
+
+    private final Map<LlmProviderEnum, WebClient> webClients = new EnumMap<>(LlmProviderEnum.class);
+
+    private final Map<LlmProviderEnum, ConnectionProvider> connectionProviders = new EnumMap<>(LlmProviderEnum.class);
+
+    private ExecutorService dispatcherExecutor;
+
+    @PostConstruct
+    public void init() {
+        properties.put(LlmProviderEnum.DOUBAO, doubaoConfig);
+        properties.put(LlmProviderEnum.DEEPSEEK, deepSeekConfig);
+        properties.put(LlmProviderEnum.KIMI, kimiConfig);
+        properties.put(LlmProviderEnum.SILICON_FLOW, siliconFlowConfig);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        dispatcherExecutor = new ThreadPoolExecutor(
+                0,
+                Integer.MAX_VALUE,
+                60L,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "llm-transport-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+
+        List<Protocol> protocols = llmTransportConfig.isHttp2()
+                ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : List.of(Protocol.HTTP_1_1);
+
+        for (Map.Entry<LlmProviderEnum, LlmProviderProperties> entry : properties.entrySet()) {
+            LlmProviderEnum provider = entry.getKey();
+            LlmProviderProperties providerProperties = entry.getValue();
+            LlmTransportConfig.PoolConfig poolConfig = llmTransportConfig.getProviders()
+                    .getOrDefault(provider.getValue(), new LlmTransportConfig.PoolConfig());
+
+            int maxRequests = poolConfig.getMaxRequests() != null
+                    ? poolConfig.getMaxRequests() : llmTransportConfig.getMaxRequests();
+            int maxRequestsPerHost = poolConfig.getMaxRequestsPerHost() != null
+                    ? poolConfig.getMaxRequestsPerHost() : llmTransportConfig.getMaxRequestsPerHost();
+            int maxIdleConnections = poolConfig.getMaxIdleConnections() != null
+                    ? poolConfig.getMaxIdleConnections() : llmTransportConfig.getMaxIdleConnections();
+            long keepAliveMillis = poolConfig.getKeepAliveMillis() != null
+                    ? poolConfig.getKeepAliveMillis() : llmTransportConfig.getKeepAliveMillis();
+
+            Dispatcher dispatcher = new Dispatcher(dispatcherExecutor);
+            dispatcher.setMaxRequests(maxRequests);
+            dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+
+            int timeout = providerProperties.getTimeout();
+            OkHttpClient client = new OkHttpClient.Builder()
+                    .dispatcher(dispatcher)
+                    .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                    .protocols(protocols)
+                    .pingInterval(llmTransportConfig.getPingIntervalMillis(), TimeUnit.MILLISECONDS)
+                    .retryOnConnectionFailure(true)
+                    .eventListenerFactory(llmMetrics.eventListenerFactory(provider))
+                    .connectTimeout(timeout, TimeUnit.MILLISECONDS)
+                    .readTimeout(timeout, TimeUnit.MILLISECONDS)
+                    .writeTimeout(timeout, TimeUnit.MILLISECONDS)
+                    .build();
+            clients.put(provider, client);
+            webClients.put(provider, buildWebClient(provider, providerProperties, maxRequests, keepAliveMillis));
+            log.info("初始化大模型传输层: provider={}, maxRequests={}, maxRequestsPerHost={}, maxIdleConnections={}, keepAlive={}ms, http2={}",
+                    provider.getValue(), maxRequests, maxRequestsPerHost, maxIdleConnections,
+                    keepAliveMillis, llmTransportConfig.isHttp2());
+        }
+    }
+
+    /**
+     * 获取 provider 对应的 HTTP 客户端
+     *
+     * @param provider 服务提供方
+     * @return OkHttpClient 实例
+     */
+    public OkHttpClient getClient(LlmProviderEnum provider) {
+        return clients.get(provider);
+    }
+
+    /**
+     * 获取 provider 对应的非阻塞 WebClient（已设置 baseUrl）
+     *
+     * @param provider 服务提供方
+     * @return WebClient 实例
+     */
+    public WebClient getWebClient(LlmProviderEnum provider) {
+        return webClients.get(provider);
+    }
+
+    /**
+     * 获取 provider 对应的配置
+     *
+     * @param provider 服务提供方
+     * @return provider 配置
+     */
+    public LlmProviderProperties getProperties(LlmProviderEnum provider) {
+        return properties.get(provider);
+    }
+
+    /**
+     * 获取全部 provider 配置
+     *
+     * @return provider 到配置的只读映射
+     */
+    public Map<LlmProviderEnum, LlmProviderProperties> getAllProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * 创建基于 Reactor Netty 的 WebClient，连接数上限与 OkHttp 的 maxRequests 保持一致
+     */
+    private WebClient buildWebClient(LlmProviderEnum provider, LlmProviderProperties providerProperties,
+                                     int maxConnections, long keepAliveMillis) {
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("llm-" + provider.getValue())
+                .maxConnections(maxConnections)
+                .maxIdleTime(Duration.ofMillis(keepAliveMillis))
+                .evictInBackground(Duration.ofMillis(keepAliveMillis))
+                .build();
+        connectionProviders.put(provider, connectionProvider);
+
+        // HTTP/2 需要 TLS（ALPN 协商），明文地址只能使用 HTTP/1.1
+        String baseUrl = providerProperties.getBaseUrl();
+        boolean secure = baseUrl != null && baseUrl.startsWith("https");
+        HttpProtocol[] protocols = llmTransportConfig.isHttp2() && secure
+                ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                : new HttpProtocol[]{HttpProtocol.HTTP11};
+
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .protocol(protocols)
+                .responseTimeout(Duration.ofMillis(providerProperties.getTimeout()))
+                .metrics(true, () -> llmMetrics.channelMetricsRecorder(provider));
+        if (secure) {
+            httpClient = httpClient.secure();
+        }
+        return WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (OkHttpClient client : clients.values()) {
+            client.connectionPool().evictAll();
+        }
+        for (ConnectionProvider connectionProvider : connectionProviders.values()) {
+            connectionProvider.dispose();
+        }
+        if (dispatcherExecutor != null) {
+            dispatcherExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.shaneShark.manager.llm;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 提示词缓存的内存映射磁盘层
+ * 整个文件映射到内存，记录顺序追加：[魔数][key 长度][value 长度][过期时间][key][value]，
+ * 启动时顺序扫描重建索引，因此进程重启后缓存依然可用。
+ * 文件写满后整体从头覆盖，不做压缩整理；内存层已经承担热点淘汰，磁盘层只做兜底。
+ *
+ * @author Shane
+ */
+@Slf4j
+public class MappedPromptStore implements Closeable {
+
+    private static final int MAGIC = 0x50435231;
+
+    /**
+     * 魔数 + key 长度 + value 长度 + 过期时间
+     */
+    private static final int HEADER_SIZE = 4 + 4 + 4 + 8;
+
+    private final FileChannel channel;
+
+    private final MappedByteBuffer buffer;
+
+    private final Map<String, Integer> index = new HashMap<>();
+
+    private int writePosition;
+
+    /**
+     * 打开（不存在则创建）磁盘层文件
+     *
+     * @param path     文件路径
+     * @param maxBytes 文件大小上限
+     * @throws IOException 文件无法创建或映射时抛出
+     */
+    public MappedPromptStore(Path path, long maxBytes) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        int capacity = (int) Math.min(Math.max(maxBytes, 1024 * 1024), Integer.MAX_VALUE - 8);
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        recover();
+    }
+
+    /**
+     * 读取缓存值
+     *
+     * @param key 缓存键
+     * @return 缓存值，不存在或已过期时返回 null
+     */
+    public synchronized String get(String key) {
+        Integer offset = index.get(key);
+        if (offset == null) {
+            return null;
+        }
+        int keyLength = buffer.getInt(offset + 4);
+        int valueLength = buffer.getInt(offset + 8);
+        long expireAt = buffer.getLong(offset + 12);
+        if (expireAt < System.currentTimeMillis()) {
+            index.remove(key);
+            return null;
+        }
+        byte[] value = new byte[valueLength];
+        buffer.get(offset + HEADER_SIZE + keyLength, value);
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 追加写入缓存值，同一个 key 以最后一次写入为准
+     *
+     * @param key      缓存键
+     * @param value    缓存值
+     * @param expireAt 过期时间戳（毫秒）
+     */
+    public synchronized void put(String key, String value, long expireAt) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        byte[] valueBytes = value.getBytes(StandardCharsets.UTF_8);
+        int recordSize = HEADER_SIZE + keyBytes.length + valueBytes.length;
+        // 单条记录超过文件的四分之一时不写入，避免频繁整体覆盖
+        if (recordSize > buffer.capacity() / 4) {
+            return;
+        }
+        if (writePosition + recordSize + 4 > buffer.capacity()) {
+            log.info("提示词缓存磁盘层已写满，从头覆盖，丢弃条目数: {}", index.size());
+            index.clear();
+            writePosition = 0;
+        }
+
+        int offset = writePosition;
+        // 先写结束标记和记录内容，最后写魔数，进程中途崩溃时扫描会停在这条不完整的记录之前
+        buffer.putInt(offset + recordSize, 0);
+        buffer.putInt(offset + 4, keyBytes.length);
+        buffer.putInt(offset + 8, valueBytes.length);
+        buffer.putLong(offset + 12, expireAt);
+        buffer.put(offset + HEADER_SIZE, keyBytes);
+        buffer.put(offset + HEADER_SIZE + keyBytes.length, valueBytes);
+        buffer.putInt(offset, MAGIC);
+
+        index.put(key, offset);
+        writePosition = offset + recordSize;
+    }
+
+    /**
+     * 有效条目数
+     */
+    public synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * 已使用的字节数
+     */
+    public synchronized int usedBytes() {
+        return writePosition;
+    }
+
+    /**
+     * 顺序扫描文件重建索引
+     */
+    private void recover() {
+        long now = System.currentTimeMillis();
+        int offset = 0;
+        while (offset + HEADER_SIZE <= buffer.capacity() - 4 && buffer.getInt(offset) == MAGIC) {
+            int keyLength = buffer.getInt(offset + 4);
+            int valueLength = buffer.getInt(offset + 8);
+            int recordSize = HEADER_SIZE + keyLength + valueLength;
+            if (keyLength < 0 || valueLength < 0 || offset + recordSize + 4 > buffer.capacity()) {
+                break;
+            }
+            if (buffer.getLong(offset + 12) >= now) {
+                byte[] key = new byte[keyLength];
+                buffer.get(offset + HEADER_SIZE, key);
+                index.put(new String(key, StandardCharsets.UTF_8), offset);
+            }
+            offset += recordSize;
+        }
+        writePosition = offset;
+        log.info("提示词缓存磁盘层加载完成，有效条目数: {}, 已用字节: {}", index.size(), writePosition);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        buffer.force();
+        channel.close();
+    }
+}
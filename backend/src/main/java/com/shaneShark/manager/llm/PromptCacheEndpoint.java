@@ -0,0 +1,27 @@
+package com.shaneShark.manager.llm;
+
+import jakarta.annotation.Resource;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * 提示词精确缓存的 actuator 端点（/actuator/promptcache）
+ * 汇总每个缓存的命中、未命中、淘汰次数和内存/磁盘占用
+ *
+ * @author Shane
+ */
+@Component
+@Endpoint(id = "promptcache")
+public class PromptCacheEndpoint {
+
+    @Resource
+    private PromptResultCache promptResultCache;
+
+    @ReadOperation
+    public Map<String, Object> stats() {
+        return promptResultCache.stats();
+    }
+}
@@ -0,0 +1,295 @@
+package com.shaneShark.manager.llm;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.shaneShark.config.PromptCacheConfig;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 大模型提示词结果精确缓存
+ * 以模型 + 消息 + 采样参数的规范化 JSON 的 SHA-256 作为缓存键，只用于确定性调用。
+ * 内存层使用 Caffeine（W-TinyLFU 准入 + 按字节计重的容量上限），
+ * 可选的内存映射磁盘层在进程重启后依然有效，内存层未命中时回源磁盘层并回填。
+ * 每个缓存的命中、未命中和淘汰统计通过 Micrometer 和 promptcache 端点暴露在 actuator 上。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class PromptResultCache {
+
+    /**
+     * 聊天服务中 temperature 为 0 的非流式请求
+     */
+    public static final String CHAT = "chat";
+
+    /**
+     * MCP text2cypher 固定提示词请求
+     */
+    public static final String TEXT2CYPHER = "text2cypher";
+
+    /**
+     * langchain4j ChatLanguageModel.generate 调用
+     */
+    public static final String CHAT_MODEL = "chat-model";
+
+    /**
+     * 规范化序列化：属性和 Map 键按字母排序、忽略 null，保证同样的请求得到同样的缓存键
+     */
+    private static final ObjectMapper CANONICAL_MAPPER = JsonMapper.builder()
+            .enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY)
+            .enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES)
+            .serializationInclusion(JsonInclude.Include.NON_NULL)
+            .build();
+
+    /**
+     * 每个缓存条目的固定开销估算（字节）
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 96;
+
+    @Resource
+    private PromptCacheConfig promptCacheConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, Cache<String, String>> caches = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Counter> diskHitCounters = new ConcurrentHashMap<>();
+
+    private volatile MappedPromptStore diskStore;
+
+    @PostConstruct
+    public void init() {
+        if (!promptCacheConfig.isEnabled()) {
+            log.info("提示词精确缓存未启用");
+            return;
+        }
+        PromptCacheConfig.Disk disk = promptCacheConfig.getDisk();
+        if (disk.isEnabled()) {
+            try {
+                diskStore = new MappedPromptStore(Paths.get(disk.getPath()), disk.getMaxFileBytes());
+            } catch (IOException e) {
+                log.error("提示词缓存磁盘层初始化失败，仅使用内存层: {}", disk.getPath(), e);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        MappedPromptStore store = diskStore;
+        if (store != null) {
+            try {
+                store.close();
+            } catch (IOException e) {
+                log.warn("关闭提示词缓存磁盘层失败", e);
+            }
+        }
+    }
+
+    /**
+     * 读取缓存值
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存键，见 {@link #key(Object...)}
+     * @return 缓存值，未命中或未启用时返回 null
+     */
+    public String get(String cacheName, String key) {
+        if (!promptCacheConfig.isEnabled() || key == null) {
+            return null;
+        }
+        Cache<String, String> cache = getCache(cacheName);
+        String value = cache.getIfPresent(key);
+        if (value != null) {
+            return value;
+        }
+        MappedPromptStore store = diskStore;
+        if (store == null) {
+            return null;
+        }
+        value = store.get(cacheName + ":" + key);
+        if (value != null) {
+            diskHitCounters.get(cacheName).increment();
+            cache.put(key, value);
+        }
+        return value;
+    }
+
+    /**
+     * 读取缓存值并反序列化为指定类型
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存键
+     * @param type      目标类型
+     * @return 缓存对象，未命中或反序列化失败时返回 null
+     */
+    public <T> T get(String cacheName, String key, Class<T> type) {
+        String value = get(cacheName, key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return CANONICAL_MAPPER.readValue(value, type);
+        } catch (JsonProcessingException e) {
+            log.warn("提示词缓存反序列化失败，忽略该条目: cache={}", cacheName, e);
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，非字符串的值序列化为 JSON 保存
+     *
+     * @param cacheName 缓存名称
+     * @param key       缓存键
+     * @param value     缓存值
+     */
+    public void put(String cacheName, String key, Object value) {
+        if (!promptCacheConfig.isEnabled() || key == null || value == null) {
+            return;
+        }
+        String serialized;
+        if (value instanceof String) {
+            serialized = (String) value;
+        } else {
+            try {
+                serialized = CANONICAL_MAPPER.writeValueAsString(value);
+            } catch (JsonProcessingException e) {
+                log.warn("提示词缓存序列化失败，跳过写入: cache={}", cacheName, e);
+                return;
+            }
+        }
+        if (StringUtils.isBlank(serialized)) {
+            return;
+        }
+        getCache(cacheName).put(key, serialized);
+        MappedPromptStore store = diskStore;
+        if (store != null) {
+            long expireAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(promptCacheConfig.getTtlSeconds());
+            store.put(cacheName + ":" + key, serialized, expireAt);
+        }
+    }
+
+    /**
+     * 计算缓存键：各部分按规范化 JSON 序列化后取 SHA-256
+     *
+     * @param parts 参与计算的模型、消息、采样参数等
+     * @return 十六进制缓存键，序列化失败时返回 null（即不缓存）
+     */
+    public String key(Object... parts) {
+        try {
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsBytes(parts);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(canonical));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            log.warn("提示词缓存键计算失败", e);
+            return null;
+        }
+    }
+
+    /**
+     * 计算聊天请求的缓存键，只有 temperature 为 0 的确定性请求才可缓存
+     *
+     * @param provider    服务提供方
+     * @param fullRequest 包含历史消息的完整请求
+     * @return 缓存键，不可缓存时返回 null
+     */
+    public String chatKey(LlmProviderEnum provider, ChatRequest fullRequest) {
+        Double temperature = fullRequest.getTemperature();
+        if (!promptCacheConfig.isEnabled() || temperature == null || temperature != 0) {
+            return null;
+        }
+        return requestKey(provider, fullRequest);
+    }
+
+    /**
+     * 计算聊天请求的规范化哈希（模型 + 消息 + 采样参数），不判断是否可缓存
+     *
+     * @param provider    服务提供方
+     * @param fullRequest 包含历史消息的完整请求
+     * @return 请求哈希，序列化失败时返回 null
+     */
+    public String requestKey(LlmProviderEnum provider, ChatRequest fullRequest) {
+        return key(provider.getValue(), fullRequest.getModel(), fullRequest.getMessages(), fullRequest.getTemperature(),
+                fullRequest.getTopP(), fullRequest.getMaxTokens(), fullRequest.getThinking());
+    }
+
+    /**
+     * 各缓存的统计信息
+     *
+     * @return 缓存名称 -> 统计项
+     */
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", promptCacheConfig.isEnabled());
+        caches.forEach((name, cache) -> {
+            CacheStats stats = cache.stats();
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("requestCount", stats.requestCount());
+            item.put("hitCount", stats.hitCount());
+            item.put("missCount", stats.missCount());
+            item.put("hitRate", stats.hitRate());
+            item.put("diskHitCount", (long) diskHitCounters.get(name).count());
+            item.put("evictionCount", stats.evictionCount());
+            item.put("evictionBytes", stats.evictionWeight());
+            item.put("entries", cache.estimatedSize());
+            item.put("usedBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0L)).orElse(0L));
+            item.put("maxBytes", promptCacheConfig.resolveMaxMemoryBytes(name));
+            result.put(name, item);
+        });
+        MappedPromptStore store = diskStore;
+        if (store != null) {
+            Map<String, Object> disk = new LinkedHashMap<>();
+            disk.put("entries", store.size());
+            disk.put("usedBytes", store.usedBytes());
+            disk.put("path", promptCacheConfig.getDisk().getPath());
+            result.put("disk", disk);
+        }
+        return result;
+    }
+
+    private Cache<String, String> getCache(String cacheName) {
+        return caches.computeIfAbsent(cacheName, name -> {
+            Cache<String, String> cache = Caffeine.newBuilder()
+                    .maximumWeight(promptCacheConfig.resolveMaxMemoryBytes(name))
+                    .weigher((String key, String value) -> ENTRY_OVERHEAD_BYTES + 2 * (key.length() + value.length()))
+                    .expireAfterWrite(Duration.ofSeconds(promptCacheConfig.getTtlSeconds()))
+                    .recordStats()
+                    .build();
+            CaffeineCacheMetrics.monitor(meterRegistry, cache, "llm-prompt-" + name);
+            diskHitCounters.put(name, Counter.builder("llm.cache.prompt.disk.hits")
+                    .description("提示词缓存内存层未命中、磁盘层命中的次数")
+                    .tag("cache", name)
+                    .register(meterRegistry));
+            return cache;
+        });
+    }
+}
@@ -0,0 +1,312 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.config.LlmGuardConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.exception.TooManyRequestsException;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * 大模型调用保护：每个服务提供方独立的自适应并发限制 + 熔断器
+ * 并发上限按 AIMD 调整：首个响应及时返回且并发已用到一半以上时加 1，失败或慢调用时按比例缩减；
+ * 熔断器统计最近 N 次调用的失败率，超过阈值后打开并快速失败，等待一段时间后半开放行少量试探请求。
+ * 被拒绝的请求抛出 {@link TooManyRequestsException}，带建议的重试等待时间。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class ProviderGuard {
+
+    @Resource
+    private LlmGuardConfig llmGuardConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<LlmProviderEnum, GuardState> states = new ConcurrentHashMap<>();
+
+    /**
+     * 获取调用许可，调用结束后必须调用许可的 onSuccess / onError / onCancel 之一
+     *
+     * @param provider 服务提供方
+     * @return 调用许可
+     * @throws TooManyRequestsException 熔断打开或并发已满时抛出
+     */
+    public Permit acquire(LlmProviderEnum provider) {
+        if (!llmGuardConfig.isEnabled()) {
+            return new Permit(null, false);
+        }
+        return stateOf(provider).acquire();
+    }
+
+    /**
+     * 在保护下执行阻塞调用
+     *
+     * @param provider 服务提供方
+     * @param call     实际调用
+     * @return 调用结果
+     */
+    public <T> T call(LlmProviderEnum provider, Supplier<T> call) {
+        Permit permit = acquire(provider);
+        try {
+            T result = call.get();
+            permit.onSuccess();
+            return result;
+        } catch (RuntimeException e) {
+            permit.onError(e);
+            throw e;
+        }
+    }
+
+    /**
+     * 在保护下执行响应式单值调用，订阅时获取许可
+     */
+    public <T> Mono<T> guard(LlmProviderEnum provider, Mono<T> source) {
+        return Mono.defer(() -> {
+            Permit permit = acquire(provider);
+            return source.doOnSuccess(value -> permit.onSuccess())
+                    .doOnError(permit::onError)
+                    .doOnCancel(permit::onCancel);
+        });
+    }
+
+    /**
+     * 在保护下执行响应式流式调用，订阅时获取许可，首个数据块的延迟作为调整并发上限的依据
+     */
+    public <T> Flux<T> guard(LlmProviderEnum provider, Flux<T> source) {
+        return Flux.defer(() -> {
+            Permit permit = acquire(provider);
+            return source.doOnNext(value -> permit.onResponse())
+                    .doOnComplete(permit::onSuccess)
+                    .doOnError(permit::onError)
+                    .doOnCancel(permit::onCancel);
+        });
+    }
+
+    /**
+     * 熔断器是否处于打开状态（路由层据此把该提供方排到最后）
+     */
+    public boolean isOpen(LlmProviderEnum provider) {
+        GuardState state = states.get(provider);
+        return state != null && state.isOpen();
+    }
+
+    private GuardState stateOf(LlmProviderEnum provider) {
+        return states.computeIfAbsent(provider, key -> {
+            GuardState state = new GuardState(key);
+            String value = key.getValue();
+            Gauge.builder("llm.guard.limit", state, s -> s.limit).tag("provider", value).register(meterRegistry);
+            Gauge.builder("llm.guard.inflight", state, s -> s.inFlight).tag("provider", value).register(meterRegistry);
+            Gauge.builder("llm.guard.state", state, s -> s.circuitState.ordinal())
+                    .description("熔断器状态：0 关闭，1 半开，2 打开")
+                    .tag("provider", value).register(meterRegistry);
+            return state;
+        });
+    }
+
+    private enum CircuitState {
+        CLOSED, HALF_OPEN, OPEN
+    }
+
+    private enum Outcome {
+        SUCCESS, FAILURE, IGNORED
+    }
+
+    /**
+     * 调用许可，只会释放一次
+     */
+    public static class Permit {
+
+        private final GuardState state;
+
+        private final boolean probe;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private volatile long firstResponseMillis = -1;
+
+        private Permit(GuardState state, boolean probe) {
+            this.state = state;
+            this.probe = probe;
+        }
+
+        /**
+         * 收到首个响应（流式为首个数据块）时调用，记录首个响应延迟
+         */
+        public void onResponse() {
+            if (firstResponseMillis < 0) {
+                firstResponseMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+            }
+        }
+
+        public void onSuccess() {
+            onResponse();
+            release(Outcome.SUCCESS);
+        }
+
+        /**
+         * 只有上游调用失败（BusinessException）计入失败，调用方自身的异常（如客户端断开）不计入
+         */
+        public void onError(Throwable e) {
+            release(e instanceof BusinessException && !(e instanceof TooManyRequestsException)
+                    ? Outcome.FAILURE : Outcome.IGNORED);
+        }
+
+        public void onCancel() {
+            release(Outcome.IGNORED);
+        }
+
+        private void release(Outcome outcome) {
+            if (state != null && released.compareAndSet(false, true)) {
+                long latency = firstResponseMillis >= 0 ? firstResponseMillis
+                        : TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+                state.release(outcome, latency, probe);
+            }
+        }
+    }
+
+    /**
+     * 单个服务提供方的并发限制和熔断状态
+     */
+    private class GuardState {
+
+        private final LlmProviderEnum provider;
+
+        private volatile double limit;
+
+        private volatile int inFlight;
+
+        private volatile CircuitState circuitState = CircuitState.CLOSED;
+
+        private long openedAt;
+
+        private int probesInFlight;
+
+        private int probeSuccesses;
+
+        /**
+         * 最近 N 次调用是否失败（环形缓冲）
+         */
+        private boolean[] window;
+
+        private int windowPosition;
+
+        private int windowCount;
+
+        private int windowFailures;
+
+        private GuardState(LlmProviderEnum provider) {
+            this.provider = provider;
+            this.limit = llmGuardConfig.getInitialLimit();
+            this.window = new boolean[Math.max(1, llmGuardConfig.getSlidingWindowSize())];
+        }
+
+        synchronized Permit acquire() {
+            boolean probe = false;
+            long now = System.currentTimeMillis();
+            if (circuitState == CircuitState.OPEN) {
+                long remaining = llmGuardConfig.getOpenMillis() - (now - openedAt);
+                if (remaining > 0) {
+                    throw reject("circuit_open", Math.max(1, TimeUnit.MILLISECONDS.toSeconds(remaining + 999)));
+                }
+                transition(CircuitState.HALF_OPEN);
+            }
+            if (circuitState == CircuitState.HALF_OPEN) {
+                if (probesInFlight + probeSuccesses >= llmGuardConfig.getHalfOpenPermits()) {
+                    throw reject("circuit_half_open", 1);
+                }
+                probesInFlight++;
+                probe = true;
+            } else if (inFlight >= (int) limit) {
+                throw reject("limit", 1);
+            }
+            inFlight++;
+            return new Permit(this, probe);
+        }
+
+        private TooManyRequestsException reject(String reason, long retryAfterSeconds) {
+            meterRegistry.counter("llm.guard.rejected", "provider", provider.getValue(), "reason", reason).increment();
+            return new TooManyRequestsException(provider.getText() + "服务繁忙，请" + retryAfterSeconds + "秒后重试",
+                    retryAfterSeconds);
+        }
+
+        synchronized void release(Outcome outcome, long latencyMillis, boolean probe) {
+            inFlight--;
+            if (probe) {
+                probesInFlight--;
+            }
+            if (outcome == Outcome.IGNORED) {
+                return;
+            }
+            boolean failure = outcome == Outcome.FAILURE;
+
+            // AIMD 调整并发上限
+            if (failure || latencyMillis > llmGuardConfig.getSlowCallMillis()) {
+                limit = Math.max(llmGuardConfig.getMinLimit(), limit * llmGuardConfig.getBackoffRatio());
+            } else if ((inFlight + 1) * 2 >= limit) {
+                limit = Math.min(llmGuardConfig.getMaxLimit(), limit + 1);
+            }
+
+            // 熔断器
+            if (probe && circuitState == CircuitState.HALF_OPEN) {
+                if (failure) {
+                    transition(CircuitState.OPEN);
+                } else if (++probeSuccesses >= llmGuardConfig.getHalfOpenPermits()) {
+                    transition(CircuitState.CLOSED);
+                }
+                return;
+            }
+            if (circuitState != CircuitState.CLOSED) {
+                return;
+            }
+            if (windowCount == window.length && window[windowPosition]) {
+                windowFailures--;
+            }
+            window[windowPosition] = failure;
+            windowPosition = (windowPosition + 1) % window.length;
+            windowCount = Math.min(windowCount + 1, window.length);
+            if (failure) {
+                windowFailures++;
+            }
+            if (windowCount >= llmGuardConfig.getMinimumCalls()
+                    && (double) windowFailures / windowCount >= llmGuardConfig.getFailureRateThreshold()) {
+                transition(CircuitState.OPEN);
+            }
+        }
+
+        boolean isOpen() {
+            return circuitState == CircuitState.OPEN;
+        }
+
+        private void transition(CircuitState target) {
+            log.warn("{}熔断器状态变更: {} -> {}, 当前并发上限: {}", provider.getText(), circuitState, target, (int) limit);
+            meterRegistry.counter("llm.guard.transitions", "provider", provider.getValue(), "to", target.name())
+                    .increment();
+            circuitState = target;
+            if (target == CircuitState.OPEN) {
+                openedAt = System.currentTimeMillis();
+            } else if (target == CircuitState.HALF_OPEN) {
+                probeSuccesses = 0;
+            } else {
+                window = new boolean[window.length];
+                windowPosition = 0;
+                windowCount = 0;
+                windowFailures = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.shaneShark.manager.llm;
+
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.util.Collections;
+
+/**
+ * 基于 Redis 的令牌桶存储，多实例部署时共享额度
+ * 每个桶是一个 hash（tokens、ts），补充和扣除在 Lua 脚本中原子完成，时间取 Redis 服务器时间避免各实例时钟不一致
+ *
+ * @author Shane
+ */
+public class RedisTokenBucketStore implements TokenBucketStore {
+
+    private static final String KEY_PREFIX = "llm:token-bucket:";
+
+    /**
+     * ARGV: 数量（扣除为正，adjust 时为 delta）、容量、每秒补充量、模式（1 尝试扣除，0 无条件调整）
+     * 返回 0 表示成功，否则为需要等待的毫秒数
+     */
+    private static final RedisScript<Long> SCRIPT = new DefaultRedisScript<>(
+            "local now = redis.call('TIME')\n" +
+            "local nowMs = tonumber(now[1]) * 1000 + math.floor(tonumber(now[2]) / 1000)\n" +
+            "local amount = tonumber(ARGV[1])\n" +
+            "local capacity = tonumber(ARGV[2])\n" +
+            "local rate = tonumber(ARGV[3])\n" +
+            "local tokens = tonumber(redis.call('HGET', KEYS[1], 'tokens'))\n" +
+            "local ts = tonumber(redis.call('HGET', KEYS[1], 'ts'))\n" +
+            "if tokens == nil then tokens = capacity; ts = nowMs end\n" +
+            "tokens = math.min(capacity, tokens + (nowMs - ts) / 1000 * rate)\n" +
+            "local wait = 0\n" +
+            "if ARGV[4] == '1' then\n" +
+            "  if tokens >= amount then tokens = tokens - amount\n" +
+            "  elseif rate > 0 then wait = math.ceil((amount - tokens) / rate * 1000)\n" +
+            "  else wait = -1 end\n" +
+            "else\n" +
+            "  tokens = math.min(capacity, tokens - amount)\n" +
+            "end\n" +
+            "redis.call('HSET', KEYS[1], 'tokens', tostring(tokens), 'ts', tostring(nowMs))\n" +
+            "if rate > 0 then redis.call('PEXPIRE', KEYS[1], math.ceil(capacity / rate * 1000) + 60000) end\n" +
+            "return wait",
+            Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public RedisTokenBucketStore(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    @Override
+    public long tryConsume(String key, long tokens, long capacity, double refillPerSecond) {
+        Long wait = execute(key, tokens, capacity, refillPerSecond, true);
+        if (wait == null) {
+            return 0;
+        }
+        return wait < 0 ? Long.MAX_VALUE : wait;
+    }
+
+    @Override
+    public void adjust(String key, long delta, long capacity, double refillPerSecond) {
+        execute(key, delta, capacity, refillPerSecond, false);
+    }
+
+    private Long execute(String key, long amount, long capacity, double refillPerSecond, boolean consume) {
+        return stringRedisTemplate.execute(SCRIPT, Collections.singletonList(KEY_PREFIX + key),
+                String.valueOf(amount), String.valueOf(capacity), String.valueOf(refillPerSecond), consume ? "1" : "0");
+    }
+}
@@ -0,0 +1,135 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 大模型请求合并（single-flight）
+ * 热门问题（如每日一题）会在几秒内被大量用户同时提问，完整消息列表和采样参数相同的在途请求只发起一次上游调用：
+ * 非流式请求共享同一个结果；流式请求共享同一条上游 SSE 流，中途加入的订阅者会先收到已到达数据块的回放。
+ * 请求结束后立即移除，之后的相同请求交给精确缓存/语义缓存处理。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class RequestCoalescer {
+
+    @Value("${llm.coalesce.enabled:true}")
+    private boolean enabled;
+
+    @Resource
+    private PromptResultCache promptResultCache;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final ConcurrentHashMap<String, CompletableFuture<ChatResponse>> inFlightCalls = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, Flux<StreamChatResponse>> inFlightStreams = new ConcurrentHashMap<>();
+
+    /**
+     * 执行非流式请求，相同的在途请求共享一次上游调用
+     *
+     * @param provider    服务提供方
+     * @param fullRequest 包含历史消息的完整请求
+     * @param call        实际的上游调用
+     * @return 响应（每个调用方拿到独立的副本，可以自行设置 sessionId）
+     */
+    public ChatResponse chat(LlmProviderEnum provider, ChatRequest fullRequest, Supplier<ChatResponse> call) {
+        String key = enabled ? promptResultCache.requestKey(provider, fullRequest) : null;
+        if (key == null) {
+            return call.get();
+        }
+
+        CompletableFuture<ChatResponse> future = new CompletableFuture<>();
+        CompletableFuture<ChatResponse> existing = inFlightCalls.putIfAbsent(key, future);
+        if (existing != null) {
+            record(provider, "chat", "joined");
+            log.info("合并相同的在途请求: provider={}", provider.getValue());
+            return copyOf(await(existing));
+        }
+
+        record(provider, "chat", "leader");
+        try {
+            ChatResponse response = call.get();
+            future.complete(response);
+            return response;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlightCalls.remove(key, future);
+        }
+    }
+
+    /**
+     * 执行流式请求，相同的在途请求共享同一条上游流
+     * 所有订阅者都取消后上游连接随之取消
+     *
+     * @param provider    服务提供方
+     * @param fullRequest 包含历史消息的完整请求
+     * @param call        实际的上游流式调用
+     * @return 数据块流，中途加入时会先回放已收到的数据块
+     */
+    public Flux<StreamChatResponse> stream(LlmProviderEnum provider, ChatRequest fullRequest,
+                                           Supplier<Flux<StreamChatResponse>> call) {
+        String key = enabled ? promptResultCache.requestKey(provider, fullRequest) : null;
+        if (key == null) {
+            return call.get();
+        }
+
+        AtomicReference<Flux<StreamChatResponse>> holder = new AtomicReference<>();
+        Flux<StreamChatResponse> shared = Flux.defer(call)
+                .doFinally(signal -> inFlightStreams.remove(key, holder.get()))
+                .replay()
+                .refCount();
+        holder.set(shared);
+
+        Flux<StreamChatResponse> existing = inFlightStreams.putIfAbsent(key, shared);
+        if (existing != null) {
+            record(provider, "stream", "joined");
+            log.info("合并相同的在途流式请求: provider={}", provider.getValue());
+            return existing;
+        }
+        record(provider, "stream", "leader");
+        return shared;
+    }
+
+    private void record(LlmProviderEnum provider, String type, String result) {
+        meterRegistry.counter("llm.coalesce.requests", "provider", provider.getValue(), "type", type, "result", result)
+                .increment();
+    }
+
+    private static ChatResponse await(CompletableFuture<ChatResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private static ChatResponse copyOf(ChatResponse response) {
+        ChatResponse copy = new ChatResponse();
+        BeanUtils.copyProperties(response, copy);
+        return copy;
+    }
+}
@@ -0,0 +1,391 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.config.SemanticCacheConfig;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.model.embedding.onnx.allminilml6v2.AllMiniLmL6V2EmbeddingModel;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 大模型语义缓存
+ * 在进程内用 MiniLM 向量模型对最后一轮用户提问做向量化，在内存向量索引中按余弦相似度查找，
+ * 相似度超过阈值时直接复用已有答案（流式请求会模拟成数据块流回放）。
+ * 缓存按 provider + 模型 + 系统提示词隔离，不同人设/模型之间不会串答案。
+ * 只缓存没有历史对话的首轮提问，多轮对话中的追问（如“继续”“详细说说”）依赖上文，不查也不写缓存。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class SemanticResponseCache {
+
+    @Resource
+    private SemanticCacheConfig semanticCacheConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    /**
+     * 向量模型加载较慢（ONNX 模型约 90MB），在后台加载，加载完成前缓存直接跳过
+     */
+    private volatile EmbeddingModel embeddingModel;
+
+    private final ConcurrentHashMap<String, Scope> scopes = new ConcurrentHashMap<>();
+
+    private final AtomicInteger entryCount = new AtomicInteger();
+
+    private Counter hitCounter;
+
+    private Counter missCounter;
+
+    private Counter bypassCounter;
+
+    private Timer savedLatencyTimer;
+
+    @PostConstruct
+    public void init() {
+        hitCounter = Counter.builder("llm.cache.semantic.requests").tag("result", "hit").register(meterRegistry);
+        missCounter = Counter.builder("llm.cache.semantic.requests").tag("result", "miss").register(meterRegistry);
+        bypassCounter = Counter.builder("llm.cache.semantic.requests").tag("result", "bypass").register(meterRegistry);
+        savedLatencyTimer = Timer.builder("llm.cache.semantic.saved")
+                .description("语义缓存命中时节省的上游调用耗时")
+                .register(meterRegistry);
+        Gauge.builder("llm.cache.semantic.entries", entryCount, AtomicInteger::get).register(meterRegistry);
+
+        if (!semanticCacheConfig.isEnabled()) {
+            log.info("语义缓存未启用");
+            return;
+        }
+        Thread loader = new Thread(() -> {
+            try {
+                long start = System.currentTimeMillis();
+                embeddingModel = new AllMiniLmL6V2EmbeddingModel();
+                log.info("语义缓存向量模型加载完成，耗时: {}ms", System.currentTimeMillis() - start);
+            } catch (Throwable e) {
+                log.error("语义缓存向量模型加载失败，语义缓存将不可用", e);
+            }
+        }, "semantic-cache-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    /**
+     * 查找缓存
+     * 向量化是 CPU 密集操作，调用方需在非 I/O 线程上调用
+     *
+     * @param provider    服务提供方
+     * @param fullRequest 包含历史消息的完整请求
+     * @return 查找结果，未启用或不可缓存时 {@link Lookup#isCacheable()} 为 false
+     */
+    public Lookup lookup(LlmProviderEnum provider, ChatRequest fullRequest) {
+        EmbeddingModel model = embeddingModel;
+        String query = lastUserQuery(fullRequest);
+        if (model == null || query == null) {
+            bypassCounter.increment();
+            return Lookup.NOT_CACHEABLE;
+        }
+
+        String modelName = StringUtils.defaultIfBlank(fullRequest.getModel(), "default");
+        String scopeKey = provider.getValue() + ":" + modelName + ":" + systemPromptHash(fullRequest);
+        float[] vector = normalize(model.embed(query).content().vector());
+
+        Scope scope = scopes.get(scopeKey);
+        Entry best = scope == null ? null : scope.findBest(vector, semanticCacheConfig.getSimilarityThreshold(),
+                TimeUnit.SECONDS.toMillis(semanticCacheConfig.getTtlSeconds()), entryCount);
+        if (best == null) {
+            missCounter.increment();
+            return new Lookup(scopeKey, modelName, vector, null, 0);
+        }
+        hitCounter.increment();
+        savedLatencyTimer.record(best.latencyMillis, TimeUnit.MILLISECONDS);
+        log.info("语义缓存命中: scope={}, 节省耗时={}ms", scopeKey, best.latencyMillis);
+        return new Lookup(scopeKey, modelName, vector, best.answer, best.latencyMillis);
+    }
+
+    /**
+     * 写入缓存，命中或不可缓存的查找结果会被忽略
+     *
+     * @param lookup        查找结果
+     * @param answer        模型回答
+     * @param latencyMillis 本次上游调用耗时
+     */
+    public void store(Lookup lookup, String answer, long latencyMillis) {
+        if (!lookup.isCacheable() || lookup.isHit() || StringUtils.isBlank(answer)) {
+            return;
+        }
+        Scope scope = scopes.computeIfAbsent(lookup.scopeKey, key -> new Scope());
+        scope.add(new Entry(lookup.vector, answer, latencyMillis, System.currentTimeMillis()),
+                semanticCacheConfig.getMaxEntriesPerScope(), entryCount);
+    }
+
+    /**
+     * 将命中的答案包装为非流式响应
+     */
+    public ChatResponse toChatResponse(Lookup lookup) {
+        ChatResponse.Choice choice = new ChatResponse.Choice();
+        choice.setIndex(0);
+        choice.setMessage(Message.assistant(lookup.getAnswer()));
+        choice.setFinishReason("stop");
+
+        ChatResponse response = new ChatResponse();
+        response.setId("cache-" + UUID.randomUUID());
+        response.setObject("chat.completion");
+        response.setCreated(System.currentTimeMillis() / 1000);
+        response.setModel(lookup.modelName);
+        response.setChoices(new ChatResponse.Choice[]{choice});
+        return response;
+    }
+
+    /**
+     * 将命中的答案切分为流式数据块，最后一块带 finish_reason
+     */
+    public List<StreamChatResponse> toStreamChunks(Lookup lookup) {
+        String answer = lookup.getAnswer();
+        String id = "cache-" + UUID.randomUUID();
+        long created = System.currentTimeMillis() / 1000;
+        int chunkChars = Math.max(1, semanticCacheConfig.getReplayChunkChars());
+
+        List<StreamChatResponse> chunks = new ArrayList<>();
+        int codePoints = answer.codePointCount(0, answer.length());
+        int begin = 0;
+        for (int emitted = 0; emitted < codePoints; emitted += chunkChars) {
+            int end = answer.offsetByCodePoints(begin, Math.min(chunkChars, codePoints - emitted));
+            boolean last = emitted + chunkChars >= codePoints;
+            chunks.add(buildChunk(id, created, lookup.modelName, answer.substring(begin, end), last ? "stop" : null));
+            begin = end;
+        }
+        return chunks;
+    }
+
+    /**
+     * 将命中的答案模拟为流式输出
+     */
+    public Flux<StreamChatResponse> replay(Lookup lookup) {
+        Flux<StreamChatResponse> chunks = Flux.defer(() -> Flux.fromIterable(toStreamChunks(lookup)));
+        long interval = semanticCacheConfig.getReplayIntervalMillis();
+        return interval > 0 ? chunks.delayElements(Duration.ofMillis(interval)) : chunks;
+    }
+
+    private StreamChatResponse buildChunk(String id, long created, String model, String content, String finishReason) {
+        StreamChatResponse.StreamChoice choice = new StreamChatResponse.StreamChoice();
+        choice.setIndex(0);
+        choice.setDelta(Message.assistant(content));
+        choice.setFinishReason(finishReason);
+
+        StreamChatResponse chunk = new StreamChatResponse();
+        chunk.setId(id);
+        chunk.setObject("chat.completion.chunk");
+        chunk.setCreated(created);
+        chunk.setModel(model);
+        chunk.setChoices(new StreamChatResponse.StreamChoice[]{choice});
+        return chunk;
+    }
+
+    /**
+     * 取最后一条用户消息作为缓存查询，之前有用户或助手消息或对话摘要（多轮对话）、多模态或过短的提问不缓存
+     */
+    private String lastUserQuery(ChatRequest fullRequest) {
+        if (!semanticCacheConfig.isEnabled() || fullRequest.getMessages() == null) {
+            return null;
+        }
+        List<Message> messages = fullRequest.getMessages();
+        for (int i = messages.size() - 1; i >= 0; i--) {
+            Message message = messages.get(i);
+            if (!"user".equals(message.getRole())) {
+                continue;
+            }
+            if (message.hasMultimodalContent()) {
+                return null;
+            }
+            String content = StringUtils.trimToNull(message.getContent());
+            if (content == null || content.length() < semanticCacheConfig.getMinQueryLength()) {
+                return null;
+            }
+            return hasPriorTurns(messages, i) ? null : content;
+        }
+        return null;
+    }
+
+    private static boolean hasPriorTurns(List<Message> messages, int lastUserIndex) {
+        for (int i = 0; i < lastUserIndex; i++) {
+            Message message = messages.get(i);
+            if ("user".equals(message.getRole()) || "assistant".equals(message.getRole())) {
+                return true;
+            }
+            // 早期对话被压缩成摘要后同样属于多轮对话
+            if ("system".equals(message.getRole()) && message.getContent() != null
+                    && message.getContent().startsWith(SessionSummarizer.SUMMARY_PREFIX)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String systemPromptHash(ChatRequest fullRequest) {
+        StringBuilder systemPrompt = new StringBuilder();
+        for (Message message : fullRequest.getMessages()) {
+            if ("system".equals(message.getRole()) && message.getContent() != null) {
+                systemPrompt.append(message.getContent()).append('\n');
+            }
+        }
+        if (systemPrompt.length() == 0) {
+            return "none";
+        }
+        return DigestUtils.md5DigestAsHex(systemPrompt.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        if (norm == 0) {
+            return vector;
+        }
+        float[] normalized = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    /**
+     * 缓存查找结果
+     */
+    public static class Lookup {
+
+        private static final Lookup NOT_CACHEABLE = new Lookup(null, null, null, null, 0);
+
+        private final String scopeKey;
+
+        private final String modelName;
+
+        private final float[] vector;
+
+        /**
+         * 命中的答案，未命中时为 null
+         */
+        @Getter
+        private final String answer;
+
+        /**
+         * 命中条目原始的上游调用耗时（毫秒）
+         */
+        @Getter
+        private final long savedMillis;
+
+        private Lookup(String scopeKey, String modelName, float[] vector, String answer, long savedMillis) {
+            this.scopeKey = scopeKey;
+            this.modelName = modelName;
+            this.vector = vector;
+            this.answer = answer;
+            this.savedMillis = savedMillis;
+        }
+
+        public boolean isCacheable() {
+            return scopeKey != null;
+        }
+
+        public boolean isHit() {
+            return answer != null;
+        }
+    }
+
+    private static class Entry {
+
+        private final float[] vector;
+
+        private final String answer;
+
+        private final long latencyMillis;
+
+        private final long createTime;
+
+        private Entry(float[] vector, String answer, long latencyMillis, long createTime) {
+            this.vector = vector;
+            this.answer = answer;
+            this.latencyMillis = latencyMillis;
+            this.createTime = createTime;
+        }
+    }
+
+    /**
+     * 单个缓存域，条目按写入顺序排列，最旧的在队头
+     */
+    private static class Scope {
+
+        private static final double DUPLICATE_THRESHOLD = 0.999;
+
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+        synchronized Entry findBest(float[] vector, double threshold, long ttlMillis, AtomicInteger entryCount) {
+            long expireBefore = System.currentTimeMillis() - ttlMillis;
+            while (!entries.isEmpty() && entries.peekFirst().createTime < expireBefore) {
+                entries.pollFirst();
+                entryCount.decrementAndGet();
+            }
+            Entry best = null;
+            double bestScore = threshold;
+            Iterator<Entry> iterator = entries.descendingIterator();
+            while (iterator.hasNext()) {
+                Entry entry = iterator.next();
+                double score = dot(vector, entry.vector);
+                if (score >= bestScore) {
+                    bestScore = score;
+                    best = entry;
+                }
+            }
+            return best;
+        }
+
+        synchronized void add(Entry entry, int maxEntries, AtomicInteger entryCount) {
+            // 合并的并发请求会各自写入同一个问题，几乎相同的向量已存在时不再重复保存
+            for (Entry existing : entries) {
+                if (dot(entry.vector, existing.vector) >= DUPLICATE_THRESHOLD) {
+                    return;
+                }
+            }
+            entries.addLast(entry);
+            entryCount.incrementAndGet();
+            while (entries.size() > maxEntries) {
+                entries.pollFirst();
+                entryCount.decrementAndGet();
+            }
+        }
+
+        private static double dot(float[] a, float[] b) {
+            double sum = 0;
+            for (int i = 0; i < a.length; i++) {
+                sum += a[i] * b[i];
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.shaneShark.manager.llm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shaneShark.config.HistoryCacheConfig;
+import com.shaneShark.model.entity.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.annotation.Resource;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 会话历史热缓存
+ * 加载历史时写入缓存（摘要 + 摘要之后的消息），保存消息时追加到已缓存的会话，删除会话或摘要更新时失效，
+ * 同一节点上连续对话的后续轮次不再查询会话和历史消息。按估算字节数限制总内存，长时间未访问的会话被淘汰。
+ * 加载期间如有追加或失效（按会话ID分段计数），加载结果不写入缓存，避免覆盖更新的内容。
+ * 启用 Redis 失效时，追加和失效都会广播会话ID，其他节点收到后丢弃该会话的缓存。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class SessionHistoryCache {
+
+    private static final int STRIPES = 1024;
+
+    /**
+     * 每个缓存条目和每条消息除内容外的估算占用
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 256;
+
+    private static final int MESSAGE_OVERHEAD_BYTES = 160;
+
+    private static final String SEPARATOR = "|";
+
+    @Resource
+    private HistoryCacheConfig historyCacheConfig;
+
+    @Resource
+    private ObjectProvider<StringRedisTemplate> stringRedisTemplateProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final AtomicLongArray generations = new AtomicLongArray(STRIPES);
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    private Cache<String, Entry> entries;
+
+    private StringRedisTemplate stringRedisTemplate;
+
+    private RedisMessageListenerContainer listenerContainer;
+
+    /**
+     * 启用且失效方式可用时为 true
+     */
+    private volatile boolean active;
+
+    @PostConstruct
+    public void init() {
+        entries = Caffeine.newBuilder()
+                .maximumWeight(historyCacheConfig.getMaxMemoryBytes())
+                .weigher((String key, Entry entry) -> (int) Math.min(Integer.MAX_VALUE, entry.getBytes()))
+                .expireAfterAccess(Duration.ofSeconds(historyCacheConfig.getExpireAfterAccessSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, entries, "chat-session-history");
+
+        if (!historyCacheConfig.isEnabled()) {
+            return;
+        }
+        String invalidation = historyCacheConfig.getInvalidation();
+        if ("none".equalsIgnoreCase(invalidation)) {
+            log.info("会话历史缓存已启用，仅在本节点内失效（只适用于单实例部署）");
+            active = true;
+            return;
+        }
+        stringRedisTemplate = stringRedisTemplateProvider.getIfAvailable();
+        if (stringRedisTemplate == null) {
+            if ("redis".equalsIgnoreCase(invalidation)) {
+                // 无法跨实例失效时宁可不缓存，避免用其他节点已更新的会话的旧历史构建提示词
+                log.warn("会话历史缓存配置为 redis 失效，但 Redis 未启用，会话历史缓存不启用");
+            } else {
+                log.info("会话历史缓存已启用，Redis 未启用，仅在本节点内失效（只适用于单实例部署）");
+                active = true;
+            }
+            return;
+        }
+        active = true;
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(stringRedisTemplate.getRequiredConnectionFactory());
+        listenerContainer.addMessageListener((message, pattern) -> onRemoteInvalidate(
+                new String(message.getBody(), StandardCharsets.UTF_8)), new ChannelTopic(historyCacheConfig.getChannel()));
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+        log.info("会话历史缓存已订阅 Redis 失效频道: {}", historyCacheConfig.getChannel());
+    }
+
+    /**
+     * 开始加载前获取会话的版本，加载结果写入缓存时校验
+     *
+     * @param sessionId 会话ID
+     * @return 版本号
+     */
+    public long generation(String sessionId) {
+        return generations.get(stripe(sessionId));
+    }
+
+    /**
+     * 读取缓存的会话历史
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 缓存条目，未命中或不属于该用户时为空
+     */
+    public Entry get(String sessionId, Long userId) {
+        if (!active || sessionId == null) {
+            return null;
+        }
+        Entry entry = entries.getIfPresent(sessionId);
+        return entry != null && entry.getUserId().equals(userId) ? entry : null;
+    }
+
+    /**
+     * 写入从数据库加载的会话历史，加载期间会话有变化时放弃写入
+     *
+     * @param sessionId    会话ID
+     * @param userId       用户ID
+     * @param summary      滚动摘要，没有时为空
+     * @param summaryUntil 摘要覆盖到的时间
+     * @param messages     摘要之后的消息，按时间正序
+     * @param generation   加载前获取的版本号
+     */
+    public void put(String sessionId, Long userId, String summary, LocalDateTime summaryUntil,
+                    List<ChatMessage> messages, long generation) {
+        if (!active || sessionId == null || userId == null) {
+            return;
+        }
+        Entry entry = new Entry(userId, summary, summaryUntil, Collections.unmodifiableList(new ArrayList<>(messages)));
+        entries.asMap().compute(sessionId, (key, existing) ->
+                generation(sessionId) == generation ? entry : existing);
+    }
+
+    /**
+     * 保存消息后追加到已缓存的会话
+     *
+     * @param message 新保存的消息
+     */
+    public void append(ChatMessage message) {
+        if (!active || message.getSessionId() == null) {
+            return;
+        }
+        generations.incrementAndGet(stripe(message.getSessionId()));
+        entries.asMap().computeIfPresent(message.getSessionId(), (key, entry) ->
+                entry.getUserId().equals(message.getUserId()) ? entry.append(message) : null);
+        publish(message.getSessionId());
+    }
+
+    /**
+     * 使会话缓存失效（删除会话、摘要更新时调用），并通知其他节点
+     *
+     * @param sessionId 会话ID
+     */
+    public void invalidate(String sessionId) {
+        if (!active || sessionId == null) {
+            return;
+        }
+        invalidateLocal(sessionId);
+        publish(sessionId);
+    }
+
+    @PreDestroy
+    public void shutdown() throws Exception {
+        if (listenerContainer != null) {
+            listenerContainer.destroy();
+        }
+    }
+
+    private void invalidateLocal(String sessionId) {
+        generations.incrementAndGet(stripe(sessionId));
+        entries.invalidate(sessionId);
+    }
+
+    private void publish(String sessionId) {
+        if (stringRedisTemplate == null) {
+            return;
+        }
+        try {
+            stringRedisTemplate.convertAndSend(historyCacheConfig.getChannel(), nodeId + SEPARATOR + sessionId);
+        } catch (RuntimeException e) {
+            log.warn("发布会话历史失效通知失败: sessionId={}, error={}", sessionId, e.getMessage());
+        }
+    }
+
+    private void onRemoteInvalidate(String payload) {
+        int index = payload.indexOf(SEPARATOR);
+        if (index <= 0 || nodeId.equals(payload.substring(0, index))) {
+            return;
+        }
+        invalidateLocal(payload.substring(index + 1));
+    }
+
+    private int stripe(String sessionId) {
+        return (sessionId.hashCode() & Integer.MAX_VALUE) % STRIPES;
+    }
+
+    private static long estimate(ChatMessage message) {
+        long bytes = MESSAGE_OVERHEAD_BYTES;
+        if (message.getContent() != null) {
+            bytes += 2L * message.getContent().length();
+        }
+        bytes += estimate(message.getImageUrls()) + estimate(message.getVideoUrls());
+        return bytes;
+    }
+
+    private static long estimate(List<String> urls) {
+        long bytes = 0;
+        if (urls != null) {
+            for (String url : urls) {
+                bytes += 48 + (url != null ? 2L * url.length() : 0);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * 缓存的会话历史，不可变，追加时生成新条目
+     */
+    @Getter
+    public static class Entry {
+
+        private final Long userId;
+
+        private final String summary;
+
+        private final LocalDateTime summaryUntil;
+
+        private final List<ChatMessage> messages;
+
+        private final long bytes;
+
+        private Entry(Long userId, String summary, LocalDateTime summaryUntil, List<ChatMessage> messages) {
+            this.userId = userId;
+            this.summary = summary;
+            this.summaryUntil = summaryUntil;
+            this.messages = messages;
+            long total = ENTRY_OVERHEAD_BYTES + (summary != null ? 2L * summary.length() : 0);
+            for (ChatMessage message : messages) {
+                total += estimate(message);
+            }
+            this.bytes = total;
+        }
+
+        private Entry(Entry previous, ChatMessage appended) {
+            List<ChatMessage> messages = new ArrayList<>(previous.messages.size() + 1);
+            messages.addAll(previous.messages);
+            messages.add(appended);
+            this.userId = previous.userId;
+            this.summary = previous.summary;
+            this.summaryUntil = previous.summaryUntil;
+            this.messages = Collections.unmodifiableList(messages);
+            this.bytes = previous.bytes + estimate(appended);
+        }
+
+        private Entry append(ChatMessage message) {
+            return new Entry(this, message);
+        }
+    }
+}
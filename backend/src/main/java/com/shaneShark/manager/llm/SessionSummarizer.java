@@ -0,0 +1,315 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.config.SessionSummaryConfig;
+import com.shaneShark.exception.TooManyRequestsException;
+import com.shaneShark.manager.ChatMessagePersister;
+import com.shaneShark.manager.LlmChatManager;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.entity.ChatMessage;
+import com.shaneShark.model.entity.ChatSession;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import com.shaneShark.repository.ChatMessageRepository;
+import com.shaneShark.repository.ChatSessionRepository;
+import com.shaneShark.utils.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 长会话滚动摘要
+ * 每轮对话保存后检查会话中未摘要的历史，超过阈值时在后台线程池中调用大模型，
+ * 把较早的轮次连同已有摘要压缩成新的滚动摘要写回会话；构建上下文时发送"摘要 + 摘要之后的消息"。
+ * 同一会话同时只有一个摘要任务，写回时校验摘要位置未被其他任务改动。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class SessionSummarizer {
+
+    /**
+     * 摘要系统消息的前缀
+     */
+    public static final String SUMMARY_PREFIX = "以下是此前对话的摘要：\n";
+
+    private static final String SUMMARY_PROMPT = "你是对话摘要助手。请把已有摘要和新增对话合并成一份简洁的摘要，"
+            + "保留用户的身份、偏好、目标、已确认的结论和未解决的问题，省略寒暄和重复内容。只输出摘要正文。";
+
+    @Resource
+    private SessionSummaryConfig sessionSummaryConfig;
+
+    @Resource
+    private ChatSessionRepository chatSessionRepository;
+
+    @Resource
+    private ChatMessageRepository chatMessageRepository;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private ChatMessagePersister chatMessagePersister;
+
+    @Resource
+    private SessionHistoryCache sessionHistoryCache;
+
+    @Resource
+    private List<LlmChatManager> llmChatManagers;
+
+    @Resource
+    private TokenBudgetLimiter tokenBudgetLimiter;
+
+    @Resource
+    private ProviderGuard providerGuard;
+
+    @Resource(name = "summaryExecutor")
+    private ExecutorService summaryExecutor;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 加载会话历史：有滚动摘要时只加载摘要之后的消息，摘要作为系统消息返回。
+     * 优先读取热缓存，未命中时查询数据库并写入缓存
+     *
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     * @return 摘要消息（可能为空）和按时间正序的历史消息
+     */
+    public History loadHistory(String sessionId, Long userId) {
+        SessionHistoryCache.Entry cached = sessionHistoryCache.get(sessionId, userId);
+        if (cached != null) {
+            meterRegistry.counter("chat.history.loads", "source", "cache").increment();
+            return toHistory(cached.getSummary(), cached.getMessages());
+        }
+        long generation = sessionHistoryCache.generation(sessionId);
+        ChatSession session = sessionSummaryConfig.isEnabled()
+                ? chatSessionRepository.findById(sessionId).orElse(null) : null;
+        String summary = null;
+        LocalDateTime summaryUntil = null;
+        List<ChatMessage> messages;
+        // 合并本节点尚未落库的消息
+        if (session == null || StringUtils.isBlank(session.getSummary()) || session.getSummaryUntil() == null) {
+            messages = chatMessagePersister.withPending(sessionId, userId, null, chatMessageRepository
+                    .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false));
+        } else {
+            summary = session.getSummary();
+            summaryUntil = session.getSummaryUntil();
+            messages = chatMessagePersister.withPending(sessionId, userId, summaryUntil,
+                    chatMessageRepository.findBySessionIdAndUserIdAndIsDeleteAndCreateTimeAfterOrderByCreateTimeAsc(
+                            sessionId, userId, false, summaryUntil));
+        }
+        meterRegistry.counter("chat.history.loads", "source", "mongo").increment();
+        sessionHistoryCache.put(sessionId, userId, summary, summaryUntil, messages, generation);
+        return toHistory(summary, messages);
+    }
+
+    private History toHistory(String summary, List<ChatMessage> messages) {
+        return new History(summary != null ? new Message("system", SUMMARY_PREFIX + summary) : null, messages);
+    }
+
+    /**
+     * 提交摘要检查，不阻塞调用方；同一会话已有任务或线程池已满时忽略
+     *
+     * @param provider  用于生成摘要的服务提供方
+     * @param sessionId 会话ID
+     * @param userId    用户ID
+     */
+    public void submit(LlmProviderEnum provider, String sessionId, Long userId) {
+        if (!sessionSummaryConfig.isEnabled() || sessionId == null || userId == null || !running.add(sessionId)) {
+            return;
+        }
+        // 服务提供方熔断时不再为摘要增加上游压力，下一轮对话结束时会重新检查
+        if (providerGuard.isOpen(provider)) {
+            running.remove(sessionId);
+            meterRegistry.counter("llm.summary.runs", "result", "throttled").increment();
+            return;
+        }
+        try {
+            summaryExecutor.execute(() -> {
+                try {
+                    summarize(provider, sessionId, userId);
+                } catch (TooManyRequestsException e) {
+                    // 额度不足或并发已满，本次跳过
+                    log.info("会话摘要被限流，跳过: sessionId={}, {}", sessionId, e.getMessage());
+                    meterRegistry.counter("llm.summary.runs", "result", "throttled").increment();
+                } catch (Exception e) {
+                    log.warn("会话摘要失败: sessionId={}, error={}", sessionId, e.getMessage());
+                    meterRegistry.counter("llm.summary.runs", "result", "error").increment();
+                } finally {
+                    running.remove(sessionId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            running.remove(sessionId);
+            meterRegistry.counter("llm.summary.runs", "result", "rejected").increment();
+        }
+    }
+
+    private void summarize(LlmProviderEnum provider, String sessionId, Long userId) {
+        ChatSession session = chatSessionRepository.findById(sessionId).orElse(null);
+        if (session == null || Boolean.TRUE.equals(session.getIsDelete())) {
+            return;
+        }
+        LocalDateTime summaryUntil = session.getSummaryUntil();
+        List<ChatMessage> messages = chatMessagePersister.withPending(sessionId, userId, summaryUntil, summaryUntil == null
+                ? chatMessageRepository.findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false)
+                : chatMessageRepository.findBySessionIdAndUserIdAndIsDeleteAndCreateTimeAfterOrderByCreateTimeAsc(
+                        sessionId, userId, false, summaryUntil));
+
+        int total = 0;
+        int[] tokens = new int[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            tokens[i] = estimate(messages.get(i));
+            total += tokens[i];
+        }
+        if (total < sessionSummaryConfig.getTriggerTokens()) {
+            return;
+        }
+
+        // 从最近往前按整轮保留原文，切分点落在用户消息上
+        int cut = messages.size();
+        int kept = 0;
+        for (int i = messages.size() - 1; i > 0; i--) {
+            kept += tokens[i];
+            if (kept > sessionSummaryConfig.getKeepRecentTokens()) {
+                break;
+            }
+            if ("user".equals(messages.get(i).getRole())) {
+                cut = i;
+            }
+        }
+        if (cut == messages.size()) {
+            // 最近一轮就超过保留上限时，只保留最后一条用户消息之后的内容
+            for (int i = messages.size() - 1; i > 0; i--) {
+                if ("user".equals(messages.get(i).getRole())) {
+                    cut = i;
+                    break;
+                }
+            }
+        }
+        if (cut <= 0 || cut == messages.size()) {
+            return;
+        }
+        List<ChatMessage> compacted = messages.subList(0, cut);
+
+        long startTime = System.currentTimeMillis();
+        String summary = requestSummary(provider, userId, session.getSummary(), compacted);
+        if (StringUtils.isBlank(summary)) {
+            return;
+        }
+
+        // 只有摘要位置未被其他任务改动时才写回
+        LocalDateTime newSummaryUntil = compacted.get(compacted.size() - 1).getCreateTime();
+        Query query = Query.query(Criteria.where("_id").is(sessionId).and("summaryUntil").is(summaryUntil));
+        Update update = new Update().set("summary", summary.trim()).set("summaryUntil", newSummaryUntil);
+        long modified = mongoTemplate.updateFirst(query, update, ChatSession.class).getModifiedCount();
+        if (modified > 0) {
+            // 缓存中的历史按旧摘要位置加载，需要重新加载
+            sessionHistoryCache.invalidate(sessionId);
+        }
+        meterRegistry.counter("llm.summary.runs", "result", modified > 0 ? "success" : "conflict").increment();
+        log.info("会话摘要完成: sessionId={}, 压缩消息数={}, 保留消息数={}, 摘要长度={}, 耗时={}ms",
+                sessionId, compacted.size(), messages.size() - cut, summary.length(),
+                System.currentTimeMillis() - startTime);
+    }
+
+    /**
+     * 调用上游生成摘要，与聊天请求一样计入用户和服务提供方的令牌额度；
+     * 并发上限和熔断由 Manager 层的 {@link ProviderGuard} 统一控制
+     */
+    private String requestSummary(LlmProviderEnum provider, Long userId, String previousSummary,
+                                  List<ChatMessage> compacted) {
+        StringBuilder dialog = new StringBuilder();
+        if (StringUtils.isNotBlank(previousSummary)) {
+            dialog.append("已有摘要：\n").append(previousSummary).append("\n\n");
+        }
+        dialog.append("新增对话：\n");
+        for (ChatMessage message : compacted) {
+            if ("system".equals(message.getRole())) {
+                continue;
+            }
+            dialog.append("user".equals(message.getRole()) ? "用户：" : "助手：")
+                    .append(StringUtils.defaultString(message.getContent()));
+            if (message.getImageUrls() != null && !message.getImageUrls().isEmpty()) {
+                dialog.append("[图片]");
+            }
+            if (message.getVideoUrls() != null && !message.getVideoUrls().isEmpty()) {
+                dialog.append("[视频]");
+            }
+            dialog.append('\n');
+        }
+
+        List<Message> prompt = new ArrayList<>(2);
+        prompt.add(new Message("system", SUMMARY_PROMPT));
+        prompt.add(new Message("user", dialog.toString()));
+        ChatRequest request = new ChatRequest();
+        request.setMessages(prompt);
+        request.setTemperature(0.3);
+        request.setMaxTokens(sessionSummaryConfig.getMaxSummaryTokens());
+
+        LlmChatManager manager = llmChatManagers.stream()
+                .filter(candidate -> candidate.getProvider() == provider)
+                .findFirst()
+                .orElse(llmChatManagers.get(0));
+        TokenBudgetLimiter.Reservation reservation = tokenBudgetLimiter.reserve(userId, manager.getProvider(), request);
+        ChatResponse response;
+        try {
+            response = manager.chat(request);
+        } catch (RuntimeException e) {
+            tokenBudgetLimiter.cancel(reservation);
+            throw e;
+        }
+        if (response == null) {
+            tokenBudgetLimiter.cancel(reservation);
+            return null;
+        }
+        tokenBudgetLimiter.settle(reservation, response);
+        return response.getContent();
+    }
+
+    private int estimate(ChatMessage message) {
+        Message msg = new Message(message.getRole(), message.getContent());
+        msg.setImageUrls(message.getImageUrls());
+        msg.setVideoUrls(message.getVideoUrls());
+        return TokenEstimator.estimate(msg);
+    }
+
+    /**
+     * 会话历史
+     */
+    @Data
+    @AllArgsConstructor
+    public static class History {
+
+        /**
+         * 滚动摘要对应的系统消息，没有摘要时为空
+         */
+        private Message summary;
+
+        /**
+         * 摘要之后的消息，按时间正序
+         */
+        private List<ChatMessage> messages;
+    }
+}
@@ -0,0 +1,335 @@
+package com.shaneShark.manager.llm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import lombok.extern.slf4j.Slf4j;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 大模型 SSE 流式响应解码器
+ * 直接在 Okio 字节缓冲上按行切分 SSE 帧，并用 Jackson 流式 JsonParser 只提取
+ * delta.content、delta.reasoning_content、finish_reason、usage 等必要字段，
+ * 避免逐行 readLine + substring + 完整对象树反序列化带来的大量临时对象。
+ * 每个流持有一个解码器实例，行缓冲在整个流内复用，非线程安全。
+ *
+ * @author Shane
+ */
+@Slf4j
+public class SseStreamDecoder {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static final ByteString DATA_PREFIX = ByteString.encodeUtf8("data:");
+
+    private static final ByteString DONE_MARKER = ByteString.encodeUtf8("[DONE]");
+
+    /**
+     * SSE 行结束符可以是 \r\n、\n 或单独的 \r
+     */
+    private static final ByteString LINE_TERMINATORS = ByteString.encodeUtf8("\r\n");
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    private final BufferedSource source;
+
+    /**
+     * 行缓冲，按需扩容并在流内复用
+     */
+    private byte[] lineBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+    /**
+     * 同一个流中 id / model 每帧相同，复用上一次的字符串实例
+     */
+    private String lastId;
+
+    private String lastModel;
+
+    private String lastObject;
+
+    /**
+     * 上一行以 \r 结束，紧随其后的 \n 属于同一个行结束符
+     */
+    private boolean skipLineFeed;
+
+    /**
+     * 创建绑定到响应体的解码器
+     *
+     * @param source 响应体字节源
+     */
+    public SseStreamDecoder(BufferedSource source) {
+        this.source = source;
+    }
+
+    /**
+     * 创建不绑定字节源的解码器，仅用于 {@link #decodeData(String)}
+     */
+    public SseStreamDecoder() {
+        this(null);
+    }
+
+    /**
+     * 读取下一个数据块
+     *
+     * @return 解析后的数据块，流结束（[DONE] 或 EOF）时返回 null
+     * @throws IOException 读取响应体失败时抛出
+     */
+    public StreamChatResponse next() throws IOException {
+        while (true) {
+            if (skipLineFeed) {
+                // \r 之后的 \n 可能在下一个网络包中才到达，读下一行时再跳过，不为它单独等待
+                skipLineFeed = false;
+                if (source.request(1) && source.getBuffer().getByte(0) == '\n') {
+                    source.skip(1);
+                }
+            }
+            long terminator = source.indexOfElement(LINE_TERMINATORS);
+            int lineLength;
+            if (terminator == -1) {
+                // 最后一行可能没有换行符
+                if (source.exhausted()) {
+                    return null;
+                }
+                lineLength = (int) source.getBuffer().size();
+            } else {
+                lineLength = (int) terminator;
+            }
+
+            int length = readLine(lineLength);
+            if (terminator != -1) {
+                skipLineFeed = source.readByte() == '\r';
+            }
+
+            // 只处理 data: 行，忽略空行、注释和 event: 等字段
+            if (length < DATA_PREFIX.size() || !startsWith(lineBuffer, length, DATA_PREFIX, 0)) {
+                continue;
+            }
+            int offset = DATA_PREFIX.size();
+            if (offset < length && lineBuffer[offset] == ' ') {
+                offset++;
+            }
+            int dataLength = length - offset;
+            if (dataLength == 0) {
+                continue;
+            }
+            if (dataLength == DONE_MARKER.size() && startsWith(lineBuffer, length, DONE_MARKER, offset)) {
+                return null;
+            }
+
+            try {
+                return decode(lineBuffer, offset, dataLength);
+            } catch (IOException e) {
+                log.warn("解析流式响应数据失败: {}", new String(lineBuffer, offset, dataLength, StandardCharsets.UTF_8), e);
+            }
+        }
+    }
+
+    /**
+     * 解析单个 data 字段的 JSON 内容（已去掉 "data:" 前缀）
+     *
+     * @param data JSON 字符串
+     * @return 解析后的数据块，[DONE] 时返回 null
+     * @throws IOException JSON 格式错误时抛出
+     */
+    public StreamChatResponse decodeData(String data) throws IOException {
+        if (data == null || data.isEmpty() || "[DONE]".equals(data)) {
+            return null;
+        }
+        byte[] bytes = data.getBytes(StandardCharsets.UTF_8);
+        return decode(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 从已缓冲的数据中读取一行到行缓冲
+     */
+    private int readLine(int lineLength) throws IOException {
+        if (lineBuffer.length < lineLength) {
+            lineBuffer = new byte[Math.max(lineLength, lineBuffer.length * 2)];
+        }
+        Buffer buffer = source.getBuffer();
+        int read = 0;
+        while (read < lineLength) {
+            int n = buffer.read(lineBuffer, read, lineLength - read);
+            if (n == -1) {
+                break;
+            }
+            read += n;
+        }
+        return read;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, ByteString prefix, int offset) {
+        if (length - offset < prefix.size()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.size(); i++) {
+            if (bytes[offset + i] != prefix.getByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 用流式 JsonParser 解析一帧数据，只保留第一个 choice
+     */
+    private StreamChatResponse decode(byte[] bytes, int offset, int length) throws IOException {
+        StreamChatResponse response = new StreamChatResponse();
+        try (JsonParser parser = JSON_FACTORY.createParser(bytes, offset, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("流式响应数据不是JSON对象");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "id":
+                        lastId = reuse(parser, token, lastId);
+                        response.setId(lastId);
+                        break;
+                    case "object":
+                        lastObject = reuse(parser, token, lastObject);
+                        response.setObject(lastObject);
+                        break;
+                    case "model":
+                        lastModel = reuse(parser, token, lastModel);
+                        response.setModel(lastModel);
+                        break;
+                    case "created":
+                        response.setCreated(token == JsonToken.VALUE_NUMBER_INT ? parser.getLongValue() : null);
+                        break;
+                    case "usage":
+                        response.setUsage(token == JsonToken.START_OBJECT ? readUsage(parser) : null);
+                        break;
+                    case "choices":
+                        if (token == JsonToken.START_ARRAY) {
+                            response.setChoices(readChoices(parser));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return response;
+    }
+
+    private StreamChatResponse.StreamChoice[] readChoices(JsonParser parser) throws IOException {
+        StreamChatResponse.StreamChoice choice = null;
+        JsonToken element;
+        while ((element = parser.nextToken()) != JsonToken.END_ARRAY && element != null) {
+            if (choice != null || element != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            choice = new StreamChatResponse.StreamChoice();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                switch (field) {
+                    case "index":
+                        choice.setIndex(token == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null);
+                        break;
+                    case "finish_reason":
+                        choice.setFinishReason(token == JsonToken.VALUE_STRING ? parser.getText() : null);
+                        break;
+                    case "delta":
+                        if (token == JsonToken.START_OBJECT) {
+                            choice.setDelta(readDelta(parser));
+                        } else {
+                            parser.skipChildren();
+                        }
+                        break;
+                    default:
+                        parser.skipChildren();
+                        break;
+                }
+            }
+        }
+        return choice == null ? new StreamChatResponse.StreamChoice[0] : new StreamChatResponse.StreamChoice[]{choice};
+    }
+
+    private Message readDelta(JsonParser parser) throws IOException {
+        Message delta = new Message();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            switch (field) {
+                case "role":
+                    delta.setRole(token == JsonToken.VALUE_STRING ? parser.getText() : null);
+                    break;
+                case "content":
+                    delta.setContent(token == JsonToken.VALUE_STRING ? parser.getText() : null);
+                    break;
+                case "reasoning_content":
+                    delta.setReasoningContent(token == JsonToken.VALUE_STRING ? parser.getText() : null);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return delta;
+    }
+
+    private StreamChatResponse.Usage readUsage(JsonParser parser) throws IOException {
+        StreamChatResponse.Usage usage = new StreamChatResponse.Usage();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            Integer value = token == JsonToken.VALUE_NUMBER_INT ? parser.getIntValue() : null;
+            switch (field) {
+                case "prompt_tokens":
+                    usage.setPromptTokens(value);
+                    break;
+                case "completion_tokens":
+                    usage.setCompletionTokens(value);
+                    break;
+                case "total_tokens":
+                    usage.setTotalTokens(value);
+                    break;
+                default:
+                    parser.skipChildren();
+                    break;
+            }
+        }
+        return usage;
+    }
+
+    /**
+     * 字段值与上一帧相同则复用已有字符串，避免每帧重复分配
+     */
+    private static String reuse(JsonParser parser, JsonToken token, String previous) throws IOException {
+        if (token != JsonToken.VALUE_STRING) {
+            return null;
+        }
+        if (previous != null) {
+            char[] chars = parser.getTextCharacters();
+            int offset = parser.getTextOffset();
+            int length = parser.getTextLength();
+            if (length == previous.length()) {
+                boolean same = true;
+                for (int i = 0; i < length; i++) {
+                    if (chars[offset + i] != previous.charAt(i)) {
+                        same = false;
+                        break;
+                    }
+                }
+                if (same) {
+                    return previous;
+                }
+            }
+        }
+        return parser.getText();
+    }
+}
@@ -0,0 +1,204 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.config.StreamCoalesceConfig;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 流式输出合帧
+ * 窗口内第一个增量到达时开始计时，窗口结束、累积字节数达到上限或收到结束块时，
+ * 把期间的正文增量和推理增量各自拼接成一个数据块发送；元数据（id、model、用量、结束原因）取最后一个数据块。
+ * 同时提供回调和 Flux 两种形式，分别用于 SseEmitter 接口和 WebFlux 接口。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class StreamCoalescer {
+
+    @Resource
+    private StreamCoalesceConfig streamCoalesceConfig;
+
+    /**
+     * 包装回调：调用方在上游结束后需要调用 {@link Session#flush()} 发送剩余增量。
+     * 回调（如 SseEmitter.send）可能阻塞在网络写出上，窗口到期的发送在弹性线程池上执行
+     *
+     * @param downstream 接收合并后数据块的回调
+     * @return 合帧会话
+     */
+    public Session wrap(Consumer<StreamChatResponse> downstream) {
+        return new Session(downstream, streamCoalesceConfig.isEnabled(), Schedulers.boundedElastic());
+    }
+
+    /**
+     * 对响应式数据块流合帧，上游结束或出错前先发送剩余增量
+     *
+     * @param source 上游数据块流
+     * @return 合并后的数据块流
+     */
+    public Flux<StreamChatResponse> coalesce(Flux<StreamChatResponse> source) {
+        if (!streamCoalesceConfig.isEnabled()) {
+            return source;
+        }
+        return Flux.create(sink -> {
+            Session session = new Session(sink::next, true, Schedulers.parallel());
+            Disposable upstream = source.subscribe(session,
+                    e -> {
+                        session.flush();
+                        sink.error(e);
+                    },
+                    () -> {
+                        session.flush();
+                        sink.complete();
+                    });
+            sink.onDispose(() -> {
+                upstream.dispose();
+                session.cancel();
+            });
+        });
+    }
+
+    /**
+     * 单个流的合帧状态，上游线程和定时器线程通过对象锁串行访问
+     */
+    public class Session implements Consumer<StreamChatResponse> {
+
+        private final Consumer<StreamChatResponse> downstream;
+
+        private final boolean enabled;
+
+        private final Scheduler scheduler;
+
+        private final StringBuilder content = new StringBuilder();
+
+        private final StringBuilder reasoning = new StringBuilder();
+
+        private String role;
+
+        private StreamChatResponse last;
+
+        private StreamChatResponse.Usage usage;
+
+        private int pendingBytes;
+
+        private Disposable timer;
+
+        private boolean cancelled;
+
+        private Session(Consumer<StreamChatResponse> downstream, boolean enabled, Scheduler scheduler) {
+            this.downstream = downstream;
+            this.enabled = enabled;
+            this.scheduler = scheduler;
+        }
+
+        @Override
+        public synchronized void accept(StreamChatResponse chunk) {
+            if (cancelled) {
+                return;
+            }
+            if (!enabled) {
+                downstream.accept(chunk);
+                return;
+            }
+            String delta = chunk.getDeltaContent();
+            String reasoningDelta = chunk.getDeltaReasoningContent();
+            if (delta != null) {
+                content.append(delta);
+                pendingBytes += delta.length() * 3;
+            }
+            if (reasoningDelta != null) {
+                reasoning.append(reasoningDelta);
+                pendingBytes += reasoningDelta.length() * 3;
+            }
+            if (role == null && chunk.getChoices() != null && chunk.getChoices().length > 0
+                    && chunk.getChoices()[0].getDelta() != null) {
+                role = chunk.getChoices()[0].getDelta().getRole();
+            }
+            if (chunk.getUsage() != null) {
+                usage = chunk.getUsage();
+            }
+            last = chunk;
+
+            if (chunk.isFinished() || pendingBytes >= streamCoalesceConfig.getMaxBytes()) {
+                flush();
+            } else if (timer == null) {
+                timer = scheduler.schedule(this::flushOnTimer, streamCoalesceConfig.getWindowMillis(),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+
+        /**
+         * 立即发送窗口内累积的增量
+         */
+        public synchronized void flush() {
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+            if (last == null || cancelled) {
+                return;
+            }
+            StreamChatResponse merged = merge();
+            content.setLength(0);
+            reasoning.setLength(0);
+            role = null;
+            usage = null;
+            last = null;
+            pendingBytes = 0;
+            downstream.accept(merged);
+        }
+
+        /**
+         * 下游已取消，丢弃未发送的增量
+         */
+        public synchronized void cancel() {
+            cancelled = true;
+            if (timer != null) {
+                timer.dispose();
+                timer = null;
+            }
+        }
+
+        private synchronized void flushOnTimer() {
+            timer = null;
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn("合帧定时发送失败: {}", e.getMessage());
+            }
+        }
+
+        private StreamChatResponse merge() {
+            StreamChatResponse merged = new StreamChatResponse();
+            merged.setId(last.getId());
+            merged.setObject(last.getObject());
+            merged.setCreated(last.getCreated());
+            merged.setModel(last.getModel());
+            merged.setSystemFingerprint(last.getSystemFingerprint());
+            merged.setUsage(usage);
+
+            Message delta = new Message(role, content.toString());
+            if (reasoning.length() > 0) {
+                delta.setReasoningContent(reasoning.toString());
+            }
+            StreamChatResponse.StreamChoice choice = new StreamChatResponse.StreamChoice();
+            choice.setIndex(0);
+            choice.setDelta(delta);
+            if (last.getChoices() != null && last.getChoices().length > 0) {
+                choice.setFinishReason(last.getChoices()[0].getFinishReason());
+            }
+            merged.setChoices(new StreamChatResponse.StreamChoice[]{choice});
+            return merged;
+        }
+    }
+}
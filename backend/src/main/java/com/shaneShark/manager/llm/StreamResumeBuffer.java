@@ -0,0 +1,304 @@
+package com.shaneShark.manager.llm;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.config.StreamResumeConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 流式聊天断线续传缓冲
+ * 每次流式生成的数据块按顺序编号缓存在服务端，SSE 事件 ID 为 "请求ID:序号"。
+ * 客户端断线后生成继续进行并写入缓冲，客户端携带 Last-Event-ID 重连时先回放缺失的数据块，
+ * 生成仍在进行时再跟随后续数据块，全程不会重新调用上游，也不会重复保存消息。
+ * 缓冲按字节计重，受单流上限、全局内存上限和过期时间约束。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class StreamResumeBuffer {
+
+    /**
+     * 单个数据块除内容外的估算占用（对象头、字段、元数据等）
+     */
+    private static final int CHUNK_OVERHEAD_BYTES = 256;
+
+    /**
+     * 生成中的流每增长这么多字节重新计重一次，避免每个数据块都写缓存
+     */
+    private static final long REWEIGH_STEP_BYTES = 16 * 1024;
+
+    @Resource
+    private StreamResumeConfig streamResumeConfig;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private Cache<String, ResumableStream> streams;
+
+    @PostConstruct
+    public void init() {
+        streams = Caffeine.newBuilder()
+                .maximumWeight(streamResumeConfig.getMaxMemoryBytes())
+                .weigher((String key, ResumableStream stream) -> stream.weight())
+                .expireAfterWrite(Duration.ofSeconds(streamResumeConfig.getTtlSeconds()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, streams, "llm-stream-resume");
+    }
+
+    /**
+     * 生成 SSE 事件 ID
+     *
+     * @param requestId 请求ID
+     * @param seq       数据块序号
+     * @return 事件 ID
+     */
+    public static String eventId(String requestId, long seq) {
+        return requestId + ":" + seq;
+    }
+
+    /**
+     * 开始缓冲一次流式生成，未启用续传时返回的流只负责编号，不会被登记
+     *
+     * @param sessionId 会话ID，新会话为空
+     * @param requestId 请求ID
+     * @param userId    用户ID
+     * @return 缓冲流
+     */
+    public ResumableStream open(String sessionId, String requestId, Long userId) {
+        ResumableStream stream = new ResumableStream(key(sessionId, requestId), userId,
+                streamResumeConfig.getMaxStreamBytes());
+        if (streamResumeConfig.isEnabled()) {
+            streams.put(stream.key, stream);
+        }
+        return stream;
+    }
+
+    /**
+     * 追加数据块，缓冲增长到一定量时按实际占用重新计重，超出单流上限时不再保留
+     *
+     * @param stream 缓冲流
+     * @param chunk  数据块
+     * @return 数据块序号
+     */
+    public long append(ResumableStream stream, StreamChatResponse chunk) {
+        long seq = stream.append(chunk);
+        if (streamResumeConfig.isEnabled() && stream.needsReweigh()) {
+            // 超出上限后缓冲已释放、计重归零，保留到生成结束，续传请求能得到明确提示
+            streams.asMap().replace(stream.key, stream, stream);
+        }
+        return seq;
+    }
+
+    /**
+     * 生成结束后按实际占用重新计重，并从此刻开始计算过期时间
+     *
+     * @param stream 缓冲流
+     */
+    public void complete(ResumableStream stream) {
+        stream.complete(null);
+        refresh(stream);
+    }
+
+    /**
+     * 生成失败，正在续传的客户端收到同样的错误
+     *
+     * @param stream 缓冲流
+     * @param error  异常
+     */
+    public void fail(ResumableStream stream, Throwable error) {
+        stream.complete(error);
+        refresh(stream);
+    }
+
+    /**
+     * 从 Last-Event-ID 之后续传
+     *
+     * @param sessionId   会话ID，须与首次请求一致
+     * @param lastEventId 客户端收到的最后一个事件 ID
+     * @param userId      用户ID，须与首次请求一致
+     * @return 缺失的数据块及生成仍在进行时的后续数据块
+     */
+    public Flux<BufferedChunk> resume(String sessionId, String lastEventId, Long userId) {
+        int separator = lastEventId.lastIndexOf(':');
+        long lastSeq;
+        try {
+            lastSeq = Long.parseLong(lastEventId.substring(separator + 1).trim());
+        } catch (NumberFormatException e) {
+            return Flux.error(new BusinessException(ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误"));
+        }
+        if (separator <= 0) {
+            return Flux.error(new BusinessException(ErrorCode.PARAMS_ERROR, "Last-Event-ID 格式错误"));
+        }
+        String requestId = lastEventId.substring(0, separator);
+        ResumableStream stream = streams.getIfPresent(key(sessionId, requestId));
+        if (stream == null || !Objects.equals(stream.userId, userId)) {
+            return Flux.error(new BusinessException(ErrorCode.NOT_FOUND_ERROR, "续传数据已过期，请重新发起请求"));
+        }
+        if (stream.overflowed) {
+            return Flux.error(new BusinessException(ErrorCode.NOT_FOUND_ERROR, "回答过长，不支持续传，请重新发起请求"));
+        }
+        log.info("续传流式响应: requestId={}, lastSeq={}", requestId, lastSeq);
+        meterRegistry.counter("llm.stream.resumed").increment();
+        // 锁内只把数据块放入订阅方的缓冲队列，发送在弹性线程上进行，慢客户端不会阻塞生成线程
+        return Flux.<BufferedChunk>create(sink -> stream.follow(sink, lastSeq + 1), FluxSink.OverflowStrategy.BUFFER)
+                .publishOn(Schedulers.boundedElastic());
+    }
+
+    private void refresh(ResumableStream stream) {
+        if (!streamResumeConfig.isEnabled()) {
+            return;
+        }
+        if (stream.overflowed) {
+            streams.asMap().remove(stream.key, stream);
+            return;
+        }
+        // 重新写入以按实际占用计重，并从此刻开始计算过期时间
+        streams.asMap().replace(stream.key, stream, stream);
+    }
+
+    private static String key(String sessionId, String requestId) {
+        return StringUtils.defaultString(sessionId) + ":" + requestId;
+    }
+
+    /**
+     * 带序号的数据块
+     */
+    @Data
+    @AllArgsConstructor
+    public static class BufferedChunk {
+
+        private long seq;
+
+        private StreamChatResponse chunk;
+    }
+
+    /**
+     * 单次流式生成的缓冲，写入和续传订阅都在锁内完成，保证续传客户端不丢块、不重复；
+     * 锁内只向订阅方的缓冲队列投递，不执行发送
+     */
+    public static class ResumableStream {
+
+        private final String key;
+
+        private final Long userId;
+
+        private final long maxBytes;
+
+        private final List<StreamChatResponse> chunks = new ArrayList<>();
+
+        private final List<FluxSink<BufferedChunk>> followers = new CopyOnWriteArrayList<>();
+
+        private long nextSeq;
+
+        private long bytes;
+
+        /**
+         * 上次计重时的占用
+         */
+        private long weighedBytes;
+
+        private volatile boolean overflowed;
+
+        private boolean completed;
+
+        private Throwable error;
+
+        private ResumableStream(String key, Long userId, long maxBytes) {
+            this.key = key;
+            this.userId = userId;
+            this.maxBytes = maxBytes;
+        }
+
+        private synchronized long append(StreamChatResponse chunk) {
+            long seq = nextSeq++;
+            if (overflowed) {
+                return seq;
+            }
+            bytes += CHUNK_OVERHEAD_BYTES + 2L * (StringUtils.length(chunk.getDeltaContent())
+                    + StringUtils.length(chunk.getDeltaReasoningContent()));
+            if (bytes > maxBytes) {
+                // 超出上限后释放缓冲，只继续编号；正在续传的客户端收到错误后重新发起请求
+                overflowed = true;
+                chunks.clear();
+                BusinessException overflowError = new BusinessException(ErrorCode.NOT_FOUND_ERROR, "回答过长，不支持续传，请重新发起请求");
+                followers.forEach(follower -> follower.error(overflowError));
+                followers.clear();
+                return seq;
+            }
+            chunks.add(chunk);
+            BufferedChunk bufferedChunk = new BufferedChunk(seq, chunk);
+            followers.forEach(follower -> follower.next(bufferedChunk));
+            return seq;
+        }
+
+        private synchronized void complete(Throwable failure) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            error = failure;
+            followers.forEach(this::finish);
+            followers.clear();
+        }
+
+        private synchronized void follow(FluxSink<BufferedChunk> sink, long fromSeq) {
+            if (overflowed) {
+                sink.error(new BusinessException(ErrorCode.NOT_FOUND_ERROR, "回答过长，不支持续传，请重新发起请求"));
+                return;
+            }
+            for (int seq = (int) Math.max(0, fromSeq); seq < chunks.size(); seq++) {
+                sink.next(new BufferedChunk(seq, chunks.get(seq)));
+            }
+            if (completed) {
+                finish(sink);
+                return;
+            }
+            followers.add(sink);
+            sink.onDispose(() -> unfollow(sink));
+        }
+
+        private synchronized void unfollow(FluxSink<BufferedChunk> sink) {
+            followers.remove(sink);
+        }
+
+        private void finish(FluxSink<BufferedChunk> sink) {
+            if (error != null) {
+                sink.error(error);
+            } else {
+                sink.complete();
+            }
+        }
+
+        private synchronized boolean needsReweigh() {
+            return overflowed ? weighedBytes > 0 : bytes - weighedBytes >= REWEIGH_STEP_BYTES;
+        }
+
+        private synchronized int weight() {
+            // 按实际缓冲的字节计重，单流上限由 overflowed 保证
+            weighedBytes = overflowed ? 0 : bytes;
+            return (int) Math.min(Integer.MAX_VALUE, weighedBytes);
+        }
+    }
+}
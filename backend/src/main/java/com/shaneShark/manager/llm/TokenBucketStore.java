@@ -0,0 +1,31 @@
+package com.shaneShark.manager.llm;
+
+/**
+ * 令牌桶存储
+ * 桶按 key 独立计算，容量和补充速率由调用方传入，实现需要保证单个桶上的操作原子
+ *
+ * @author Shane
+ */
+public interface TokenBucketStore {
+
+    /**
+     * 尝试从桶中扣除令牌
+     *
+     * @param key              桶标识
+     * @param tokens           扣除数量
+     * @param capacity         桶容量
+     * @param refillPerSecond  每秒补充数量
+     * @return 0 表示扣除成功；大于 0 表示余量不足，值为预计需要等待的毫秒数（此时不扣除）
+     */
+    long tryConsume(String key, long tokens, long capacity, double refillPerSecond);
+
+    /**
+     * 无条件调整桶中的令牌，用于按实际用量对账
+     *
+     * @param key             桶标识
+     * @param delta           正数为补扣（余量可以为负，之后的请求需等待补足），负数为退还（不超过容量）
+     * @param capacity        桶容量
+     * @param refillPerSecond 每秒补充数量
+     */
+    void adjust(String key, long delta, long capacity, double refillPerSecond);
+}
@@ -0,0 +1,223 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.config.TokenBudgetConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.exception.TooManyRequestsException;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import com.shaneShark.utils.TokenEstimator;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 大模型令牌额度限流
+ * 按用户和按服务提供方各维护一个令牌桶，防止少数重度用户耗尽上游额度：
+ * 请求前按估算的提示词令牌数同时预扣两个桶，任一不足则快速失败并给出重试等待时间，超过桶容量的请求直接拒绝；
+ * 响应结束后用响应中的 usage（没有时用估算值）与预扣值对账，多退少补。
+ * 后端存储出错时放行，不影响正常聊天。
+ *
+ * @author Shane
+ */
+@Component
+@Slf4j
+public class TokenBudgetLimiter {
+
+    @Resource
+    private TokenBudgetConfig tokenBudgetConfig;
+
+    @Resource
+    private ObjectProvider<StringRedisTemplate> stringRedisTemplateProvider;
+
+    @Resource
+    private MeterRegistry meterRegistry;
+
+    private TokenBucketStore tokenBucketStore;
+
+    private DistributionSummary reconcileSummary;
+
+    @PostConstruct
+    public void init() {
+        StringRedisTemplate stringRedisTemplate = "redis".equalsIgnoreCase(tokenBudgetConfig.getBackend())
+                ? stringRedisTemplateProvider.getIfAvailable() : null;
+        if (stringRedisTemplate != null) {
+            tokenBucketStore = new RedisTokenBucketStore(stringRedisTemplate);
+        } else {
+            if ("redis".equalsIgnoreCase(tokenBudgetConfig.getBackend())) {
+                log.warn("令牌额度限流配置为 redis，但 Redis 未启用，改用进程内存储");
+            }
+            tokenBucketStore = new InMemoryTokenBucketStore(idleExpiry());
+        }
+        reconcileSummary = DistributionSummary.builder("llm.token-budget.reconcile.delta")
+                .description("实际令牌用量与预扣估算值的差")
+                .register(meterRegistry);
+        log.info("令牌额度限流存储: {}", tokenBucketStore.getClass().getSimpleName());
+    }
+
+    /**
+     * 预扣令牌
+     *
+     * @param userId      用户ID，为空时只检查服务提供方额度
+     * @param provider    服务提供方
+     * @param fullRequest 包含历史消息的完整请求
+     * @return 预扣记录，响应结束后需调用 {@link #settle} 或 {@link #cancel}
+     * @throws TooManyRequestsException 额度不足时抛出
+     */
+    public Reservation reserve(Long userId, LlmProviderEnum provider, ChatRequest fullRequest) {
+        if (!tokenBudgetConfig.isEnabled()) {
+            return null;
+        }
+        long estimated = TokenEstimator.estimate(fullRequest.getMessages());
+        String userKey = userId == null ? null : "user:" + userId;
+        // 超过桶容量的请求等多久都不会成功，直接按参数错误拒绝
+        long capacity = userKey == null ? tokenBudgetConfig.getProviderCapacity()
+                : Math.min(tokenBudgetConfig.getUserCapacity(), tokenBudgetConfig.getProviderCapacity());
+        if (estimated > capacity) {
+            meterRegistry.counter("llm.token-budget.rejected", "scope", "oversize", "provider", provider.getValue()).increment();
+            throw new BusinessException(ErrorCode.PARAMS_ERROR,
+                    "请求过长：估算" + estimated + "个令牌，超过单次上限" + capacity + "，请缩短消息或新建会话");
+        }
+        String providerKey = "provider:" + provider.getValue();
+        try {
+            if (userKey != null) {
+                long wait = tokenBucketStore.tryConsume(userKey, estimated, tokenBudgetConfig.getUserCapacity(), userRate());
+                if (wait > 0) {
+                    throw reject("user", provider, wait);
+                }
+            }
+            long wait = tokenBucketStore.tryConsume(providerKey, estimated, tokenBudgetConfig.getProviderCapacity(), providerRate());
+            if (wait > 0) {
+                if (userKey != null) {
+                    tokenBucketStore.adjust(userKey, -estimated, tokenBudgetConfig.getUserCapacity(), userRate());
+                }
+                throw reject("provider", provider, wait);
+            }
+        } catch (TooManyRequestsException e) {
+            throw e;
+        } catch (Exception e) {
+            log.warn("令牌额度限流存储异常，本次请求放行: {}", e.getMessage());
+            return null;
+        }
+        return new Reservation(userKey, providerKey, provider, estimated);
+    }
+
+    /**
+     * 按非流式响应的实际用量对账
+     *
+     * @param reservation 预扣记录，可以为 null
+     * @param response    模型响应
+     */
+    public void settle(Reservation reservation, ChatResponse response) {
+        ChatResponse.Usage usage = response.getUsage();
+        settle(reservation, usage == null ? null : usage.getTotalTokens(), response.getContent());
+    }
+
+    /**
+     * 按流式响应的实际用量对账
+     *
+     * @param reservation 预扣记录，可以为 null
+     * @param usage       最后一个数据块携带的用量，没有时按估算值计算
+     * @param completion  模型输出内容
+     */
+    public void settle(Reservation reservation, StreamChatResponse.Usage usage, String completion) {
+        settle(reservation, usage == null ? null : usage.getTotalTokens(), completion);
+    }
+
+    private void settle(Reservation reservation, Integer totalTokens, String completion) {
+        if (reservation == null || !reservation.done.compareAndSet(false, true)) {
+            return;
+        }
+        long actual = totalTokens != null ? totalTokens : reservation.charged + TokenEstimator.estimate(completion);
+        long delta = actual - reservation.charged;
+        reconcileSummary.record(Math.abs(delta));
+        meterRegistry.counter("llm.token-budget.tokens", "provider", reservation.provider.getValue()).increment(actual);
+        adjust(reservation, delta);
+    }
+
+    /**
+     * 上游调用失败时退还预扣的令牌
+     *
+     * @param reservation 预扣记录，可以为 null
+     */
+    public void cancel(Reservation reservation) {
+        if (reservation == null || !reservation.done.compareAndSet(false, true)) {
+            return;
+        }
+        adjust(reservation, -reservation.charged);
+    }
+
+    private void adjust(Reservation reservation, long delta) {
+        if (delta == 0) {
+            return;
+        }
+        try {
+            if (reservation.userKey != null) {
+                tokenBucketStore.adjust(reservation.userKey, delta, tokenBudgetConfig.getUserCapacity(), userRate());
+            }
+            tokenBucketStore.adjust(reservation.providerKey, delta, tokenBudgetConfig.getProviderCapacity(), providerRate());
+        } catch (Exception e) {
+            log.warn("令牌额度对账失败: {}", e.getMessage());
+        }
+    }
+
+    private TooManyRequestsException reject(String scope, LlmProviderEnum provider, long waitMillis) {
+        meterRegistry.counter("llm.token-budget.rejected", "scope", scope, "provider", provider.getValue()).increment();
+        long retryAfterSeconds = Math.max(1, TimeUnit.MILLISECONDS.toSeconds(Math.min(waitMillis, TimeUnit.HOURS.toMillis(1)) + 999));
+        String message = "user".equals(scope) ? "令牌额度已用完，请" + retryAfterSeconds + "秒后重试"
+                : provider.getText() + "服务额度紧张，请" + retryAfterSeconds + "秒后重试";
+        return new TooManyRequestsException(message, retryAfterSeconds);
+    }
+
+    /**
+     * 空桶补满所需的时间（取用户桶和服务提供方桶的较大值）的两倍，至少 10 分钟
+     */
+    private Duration idleExpiry() {
+        double userSeconds = userRate() > 0 ? tokenBudgetConfig.getUserCapacity() / userRate() : 0;
+        double providerSeconds = providerRate() > 0 ? tokenBudgetConfig.getProviderCapacity() / providerRate() : 0;
+        long seconds = (long) Math.ceil(Math.max(userSeconds, providerSeconds) * 2);
+        return Duration.ofSeconds(Math.max(seconds, TimeUnit.MINUTES.toSeconds(10)));
+    }
+
+    private double userRate() {
+        return tokenBudgetConfig.getUserRefillPerMinute() / 60.0;
+    }
+
+    private double providerRate() {
+        return tokenBudgetConfig.getProviderRefillPerMinute() / 60.0;
+    }
+
+    /**
+     * 预扣记录，只会对账一次
+     */
+    public static class Reservation {
+
+        private final String userKey;
+
+        private final String providerKey;
+
+        private final LlmProviderEnum provider;
+
+        private final long charged;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private Reservation(String userKey, String providerKey, LlmProviderEnum provider, long charged) {
+            this.userKey = userKey;
+            this.providerKey = providerKey;
+            this.provider = provider;
+            this.charged = charged;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.shaneShark.model.dto.batch;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 创建批量补全任务请求（与 JSONL 文件一起以 multipart 表单提交）
+ *
+ * @author Shane
+ */
+@Data
+public class BatchJobCreateRequest implements Serializable {
+
+    /**
+     * 任务名称
+     */
+    private String name;
+
+    /**
+     * 服务提供方（doubao/deepseek/kimi/silicon-flow），默认 doubao
+     */
+    private String provider;
+
+    /**
+     * 模型名称，为空时使用服务提供方的默认模型，auto 时走延迟感知路由
+     */
+    private String model;
+
+    /**
+     * 所有提示词共用的系统提示词
+     */
+    private String systemPrompt;
+
+    /**
+     * 温度参数
+     */
+    private Double temperature;
+
+    /**
+     * 最大生成令牌数
+     */
+    private Integer maxTokens;
+
+    /**
+     * 并发度
+     */
+    private Integer parallelism;
+
+    /**
+     * 每秒最多发出的请求数
+     */
+    private Double requestsPerSecond;
+
+    /**
+     * 单条提示词的最大重试次数
+     */
+    private Integer maxRetries;
+
+    /**
+     * 是否把结果写回 qa_info：行内带 qaId 时更新该条答案，带 question 时新增一条
+     */
+    private Boolean writeToQa;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,47 @@
+package com.shaneShark.model.dto.batch;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量任务上传文件中的一行
+ * 例：{"id":"q-1","prompt":"...","qaId":123} 或 {"prompt":"...","question":"...","tag":"..."}
+ *
+ * @author Shane
+ */
+@Data
+public class BatchJobLine implements Serializable {
+
+    /**
+     * 自定义ID，结果中原样返回
+     */
+    private String id;
+
+    /**
+     * 提示词
+     */
+    private String prompt;
+
+    /**
+     * 本条的系统提示词
+     */
+    private String system;
+
+    /**
+     * 要更新答案的 qa_info ID
+     */
+    private Long qaId;
+
+    /**
+     * 新增到 qa_info 的问题标题
+     */
+    private String question;
+
+    /**
+     * 新增到 qa_info 的标签
+     */
+    private String tag;
+
+    private static final long serialVersionUID = 1L;
+}
@@ -0,0 +1,38 @@
+package com.shaneShark.model.dto.chat;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 消息历史分页请求
+ * 按 (createTime, _id) 键集分页：传 beforeId 向更早翻页，传 afterId 向更新翻页，都不传时返回最新一页
+ *
+ * @author Shane
+ */
+@Data
+public class ChatMessagePageRequest implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 返回该消息之前（更早）的消息，结果按时间倒序
+     */
+    private String beforeId;
+
+    /**
+     * 返回该消息之后（更新）的消息，结果按时间正序
+     */
+    private String afterId;
+
+    /**
+     * 返回条数
+     */
+    private Integer limit;
+
+    /**
+     * 返回的字段，逗号分隔，可选 id、sessionId、userId、role、content、imageUrls、videoUrls、createTime；
+     * 为空时返回全部字段，id 和 createTime 始终返回（用于继续翻页）
+     */
+    private String fields;
+}
@@ -56,6 +56,11 @@ public class ChatRequest implements Serializable {
      */
     private Long userId;
 
+    /**
+     * 请求ID（客户端生成，断线重连时与 Last-Event-ID 一起用于续传）
+     */
+    private String requestId;
+
     /**
      * 思考方式
      */
@@ -1,7 +1,9 @@
 package com.shaneShark.model.dto.chat;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
+import com.shaneShark.model.enums.LlmProviderEnum;
 import lombok.Data;
 
 import java.io.Serializable;
@@ -52,6 +54,12 @@ public class ChatResponse implements Serializable {
      */
     private String sessionId;
 
+    /**
+     * 实际返回响应的服务提供方（仅路由请求设置，不返回给客户端）
+     */
+    @JsonIgnore
+    private transient LlmProviderEnum servedBy;
+
     /**
      * 响应选择项
      */
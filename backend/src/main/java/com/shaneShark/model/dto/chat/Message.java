@@ -60,6 +60,13 @@ public class Message implements Serializable {
     @JsonProperty("reasoning_content")
     private String reasoningContent;
 
+    /**
+     * 序列化片段缓存键（已持久化消息的ID，内部字段，不参与JSON序列化）
+     * 为空表示本轮新消息，每次重新序列化
+     */
+    @JsonIgnore
+    private transient String fragmentKey;
+
     /**
      * JSON序列化：content字段
      * 使用 @JsonGetter 明确指定属性名为 "content"
@@ -254,6 +261,16 @@ public class Message implements Serializable {
         this.reasoningContent = reasoningContent;
     }
 
+    @JsonIgnore
+    public String getFragmentKey() {
+        return fragmentKey;
+    }
+
+    @JsonIgnore
+    public void setFragmentKey(String fragmentKey) {
+        this.fragmentKey = fragmentKey;
+    }
+
     /**
      * 构造函数
      *
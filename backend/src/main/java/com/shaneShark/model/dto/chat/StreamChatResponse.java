@@ -117,6 +117,18 @@ public class StreamChatResponse implements Serializable {
         return "";
     }
 
+    /**
+     * 获取增量推理内容（深度思考）
+     *
+     * @return 增量推理文本，如果没有则返回 null
+     */
+    public String getDeltaReasoningContent() {
+        if (choices != null && choices.length > 0 && choices[0].getDelta() != null) {
+            return choices[0].getDelta().getReasoningContent();
+        }
+        return null;
+    }
+
     /**
      * 判断是否是流结束标记
      *
@@ -0,0 +1,109 @@
+package com.shaneShark.model.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量补全任务实体
+ * 存储在MongoDB中，记录任务参数和进度；每条提示词的状态保存在 batch_job_items 中作为断点
+ *
+ * @author Shane
+ */
+@Data
+@Document(collection = "batch_jobs")
+public class BatchJob {
+
+    /**
+     * 任务ID
+     */
+    @Id
+    private String id;
+
+    /**
+     * 任务名称
+     */
+    private String name;
+
+    /**
+     * 服务提供方（doubao/deepseek/kimi/silicon-flow）
+     */
+    private String provider;
+
+    /**
+     * 模型名称，为空时使用服务提供方的默认模型，auto 时走延迟感知路由
+     */
+    private String model;
+
+    /**
+     * 所有提示词共用的系统提示词
+     */
+    private String systemPrompt;
+
+    /**
+     * 温度参数
+     */
+    private Double temperature;
+
+    /**
+     * 最大生成令牌数
+     */
+    private Integer maxTokens;
+
+    /**
+     * 并发度
+     */
+    private Integer parallelism;
+
+    /**
+     * 每秒最多发出的请求数
+     */
+    private Double requestsPerSecond;
+
+    /**
+     * 单条提示词的最大重试次数
+     */
+    private Integer maxRetries;
+
+    /**
+     * 是否把结果写回 qa_info
+     */
+    private Boolean writeToQa;
+
+    /**
+     * 任务状态：running/completed/cancelled
+     */
+    private String status;
+
+    /**
+     * 提示词总数
+     */
+    private Integer total;
+
+    /**
+     * 成功条数
+     */
+    private Integer succeeded;
+
+    /**
+     * 失败条数
+     */
+    private Integer failed;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+
+    /**
+     * 结束时间
+     */
+    private LocalDateTime finishTime;
+}
@@ -0,0 +1,101 @@
+package com.shaneShark.model.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * 批量补全任务条目实体
+ * 对应上传文件中的一行提示词，状态即任务的断点：重启后只重新处理仍为 pending 的条目
+ *
+ * @author Shane
+ */
+@Data
+@Document(collection = "batch_job_items")
+@CompoundIndex(name = "job_line", def = "{'jobId': 1, 'lineNo': 1}")
+public class BatchJobItem {
+
+    /**
+     * 条目ID
+     */
+    @Id
+    private String id;
+
+    /**
+     * 任务ID
+     */
+    private String jobId;
+
+    /**
+     * 在上传文件中的行号（从1开始）
+     */
+    private Integer lineNo;
+
+    /**
+     * 调用方自定义的ID，原样返回
+     */
+    private String customId;
+
+    /**
+     * 提示词
+     */
+    private String prompt;
+
+    /**
+     * 本条的系统提示词，为空时使用任务的系统提示词
+     */
+    private String systemPrompt;
+
+    /**
+     * 写回的 qa_info ID；新增问题时在上传阶段预先分配，保证重试和恢复时不会重复插入
+     */
+    private Long qaId;
+
+    /**
+     * 新增到 qa_info 的问题标题
+     */
+    private String question;
+
+    /**
+     * 新增到 qa_info 的标签
+     */
+    private String tag;
+
+    /**
+     * 条目状态：pending/succeeded/failed
+     */
+    private String status;
+
+    /**
+     * 已尝试次数
+     */
+    private Integer attempts;
+
+    /**
+     * 生成结果
+     */
+    private String content;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    /**
+     * 输入令牌数
+     */
+    private Integer promptTokens;
+
+    /**
+     * 输出令牌数
+     */
+    private Integer completionTokens;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updateTime;
+}
@@ -2,6 +2,7 @@ package com.shaneShark.model.entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -10,11 +11,13 @@ import java.util.List;
 /**
  * 聊天消息实体
  * 存储在MongoDB中，用于保存聊天记录
+ * 复合索引支持按会话加载历史和按 (createTime, _id) 键集分页
  *
  * @author Shane
  */
 @Data
 @Document(collection = "chat_messages")
+@CompoundIndex(name = "session_history", def = "{'sessionId': 1, 'userId': 1, 'isDelete': 1, 'createTime': 1, '_id': 1}")
 public class ChatMessage {
 
     /**
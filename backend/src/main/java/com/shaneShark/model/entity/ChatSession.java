@@ -2,6 +2,7 @@ package com.shaneShark.model.entity;
 
 import lombok.Data;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.time.LocalDateTime;
@@ -9,11 +10,13 @@ import java.time.LocalDateTime;
 /**
  * 聊天会话实体
  * 存储在MongoDB中，用于管理用户的聊天会话
+ * 复合索引支持按用户取最近会话和按 (updateTime, _id) 游标分页
  *
  * @author Shane
  */
 @Data
 @Document(collection = "chat_sessions")
+@CompoundIndex(name = "user_latest", def = "{'userId': 1, 'isDelete': 1, 'updateTime': -1, '_id': -1}")
 public class ChatSession {
 
     /**
@@ -42,6 +45,16 @@ public class ChatSession {
      */
     private LocalDateTime updateTime;
 
+    /**
+     * 滚动摘要：summaryUntil 及之前的消息已压缩进该摘要
+     */
+    private String summary;
+
+    /**
+     * 已摘要的最后一条消息的创建时间，之后的消息仍按原文发送
+     */
+    private LocalDateTime summaryUntil;
+
     /**
      * 是否删除
      */
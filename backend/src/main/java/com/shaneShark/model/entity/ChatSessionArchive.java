@@ -0,0 +1,71 @@
+package com.shaneShark.model.entity;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * 归档会话实体
+ * 会话及其全部消息的原始文档按行序列化为 JSON（第一行为会话，其余为消息），gzip 压缩后存为一个字段
+ *
+ * @author Shane
+ */
+@Data
+@Document(collection = "chat_session_archives")
+public class ChatSessionArchive {
+
+    /**
+     * 会话ID
+     */
+    @Id
+    private String id;
+
+    /**
+     * 用户ID
+     */
+    private Long userId;
+
+    /**
+     * 会话标题
+     */
+    private String title;
+
+    /**
+     * 会话创建时间
+     */
+    private LocalDateTime createTime;
+
+    /**
+     * 会话最后更新时间
+     */
+    private LocalDateTime updateTime;
+
+    /**
+     * 归档前是否已被用户删除
+     */
+    private Boolean deleted;
+
+    /**
+     * 消息条数
+     */
+    private Integer messageCount;
+
+    /**
+     * 压缩前字节数
+     */
+    private Long rawBytes;
+
+    /**
+     * gzip 压缩的 JSONL 内容
+     */
+    private byte[] payload;
+
+    /**
+     * 归档时间，保留期按该时间计算
+     */
+    @Indexed(name = "archived_at")
+    private LocalDateTime archivedAt;
+}
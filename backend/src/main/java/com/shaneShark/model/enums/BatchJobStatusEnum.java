@@ -0,0 +1,62 @@
+package com.shaneShark.model.enums;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 批量任务状态枚举
+ *
+ * @author Shane
+ */
+public enum BatchJobStatusEnum {
+
+    RUNNING("运行中", "running"),
+    COMPLETED("已完成", "completed"),
+    CANCELLED("已取消", "cancelled");
+
+    private final String text;
+
+    private final String value;
+
+    BatchJobStatusEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 获取值列表
+     *
+     * @return
+     */
+    public static List<String> getValues() {
+        return Arrays.stream(values()).map(item -> item.value).collect(Collectors.toList());
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return
+     */
+    public static BatchJobStatusEnum getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (BatchJobStatusEnum anEnum : BatchJobStatusEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,63 @@
+package com.shaneShark.model.enums;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.apache.commons.lang3.ObjectUtils;
+
+/**
+ * 大模型服务提供方枚举
+ *
+ * @author Shane
+ */
+public enum LlmProviderEnum {
+
+    DOUBAO("豆包", "doubao"),
+    DEEPSEEK("DeepSeek", "deepseek"),
+    KIMI("Kimi", "kimi"),
+    SILICON_FLOW("硅基流动", "silicon-flow");
+
+    private final String text;
+
+    private final String value;
+
+    LlmProviderEnum(String text, String value) {
+        this.text = text;
+        this.value = value;
+    }
+
+    /**
+     * 获取值列表
+     *
+     * @return
+     */
+    public static List<String> getValues() {
+        return Arrays.stream(values()).map(item -> item.value).collect(Collectors.toList());
+    }
+
+    /**
+     * 根据 value 获取枚举
+     *
+     * @param value
+     * @return
+     */
+    public static LlmProviderEnum getEnumByValue(String value) {
+        if (ObjectUtils.isEmpty(value)) {
+            return null;
+        }
+        for (LlmProviderEnum anEnum : LlmProviderEnum.values()) {
+            if (anEnum.value.equals(value)) {
+                return anEnum;
+            }
+        }
+        return null;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public String getText() {
+        return text;
+    }
+}
@@ -0,0 +1,61 @@
+package com.shaneShark.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 批量任务结果（JSONL 中的一行）
+ *
+ * @author Shane
+ */
+@Data
+public class BatchJobResultVO implements Serializable {
+
+    /**
+     * 行号
+     */
+    private Integer line;
+
+    /**
+     * 自定义ID
+     */
+    private String id;
+
+    /**
+     * 条目状态：succeeded/failed
+     */
+    private String status;
+
+    /**
+     * 生成结果
+     */
+    private String content;
+
+    /**
+     * 失败原因
+     */
+    private String error;
+
+    /**
+     * 写回的 qa_info ID
+     */
+    private Long qaId;
+
+    /**
+     * 已尝试次数
+     */
+    private Integer attempts;
+
+    /**
+     * 输入令牌数
+     */
+    private Integer promptTokens;
+
+    /**
+     * 输出令牌数
+     */
+    private Integer completionTokens;
+
+    private static final long serialVersionUID = 1L;
+}
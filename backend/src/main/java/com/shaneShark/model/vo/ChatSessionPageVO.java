@@ -0,0 +1,32 @@
+package com.shaneShark.model.vo;
+
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+
+/**
+ * 会话列表游标分页结果
+ *
+ * @author Shane
+ */
+@Data
+public class ChatSessionPageVO implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 本页会话，按更新时间倒序
+     */
+    private List<ChatSessionVO> records;
+
+    /**
+     * 下一页游标，没有更多数据时为空
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private Boolean hasMore;
+}
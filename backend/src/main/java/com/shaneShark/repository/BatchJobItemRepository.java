@@ -0,0 +1,32 @@
+package com.shaneShark.repository;
+
+import com.shaneShark.model.entity.BatchJobItem;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 批量补全任务条目Repository
+ *
+ * @author Shane
+ */
+@Repository
+public interface BatchJobItemRepository extends MongoRepository<BatchJobItem, String> {
+
+    /**
+     * 按任务ID和状态查询条目，按行号正序
+     *
+     * @param jobId  任务ID
+     * @param status 条目状态
+     * @return 条目列表
+     */
+    List<BatchJobItem> findByJobIdAndStatusOrderByLineNoAsc(String jobId, String status);
+
+    /**
+     * 按任务ID删除条目
+     *
+     * @param jobId 任务ID
+     */
+    void deleteByJobId(String jobId);
+}
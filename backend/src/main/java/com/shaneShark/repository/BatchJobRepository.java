@@ -0,0 +1,31 @@
+package com.shaneShark.repository;
+
+import com.shaneShark.model.entity.BatchJob;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * 批量补全任务Repository
+ *
+ * @author Shane
+ */
+@Repository
+public interface BatchJobRepository extends MongoRepository<BatchJob, String> {
+
+    /**
+     * 按状态查询任务
+     *
+     * @param status 任务状态
+     * @return 任务列表
+     */
+    List<BatchJob> findByStatus(String status);
+
+    /**
+     * 查询所有任务，按创建时间倒序
+     *
+     * @return 任务列表
+     */
+    List<BatchJob> findAllByOrderByCreateTimeDesc();
+}
@@ -5,6 +5,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.data.mongodb.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -47,6 +48,19 @@ public interface ChatMessageRepository extends MongoRepository<ChatMessage, Stri
     @Query(value = "{ 'sessionId': ?0, 'userId': ?1, 'isDelete': { $ne: true } }", sort = "{ 'createTime': 1 }")
     List<ChatMessage> findBySessionIdAndUserIdDebug(String sessionId, Long userId);
 
+    /**
+     * 根据会话ID和用户ID查询某一时间之后的未删除消息，按创建时间正序
+     * 会话有滚动摘要时只需加载摘要之后的消息
+     *
+     * @param sessionId 会话ID
+     * @param userId 用户ID
+     * @param isDelete 是否删除
+     * @param createTime 起始时间（不含）
+     * @return 消息列表
+     */
+    List<ChatMessage> findBySessionIdAndUserIdAndIsDeleteAndCreateTimeAfterOrderByCreateTimeAsc(
+            String sessionId, Long userId, Boolean isDelete, LocalDateTime createTime);
+
     /**
      * 根据会话ID删除所有消息（软删除）
      *
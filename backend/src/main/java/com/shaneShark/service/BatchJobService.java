@@ -0,0 +1,68 @@
+package com.shaneShark.service;
+
+import com.shaneShark.model.dto.batch.BatchJobCreateRequest;
+import com.shaneShark.model.entity.BatchJob;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 离线批量补全任务服务
+ * 管理员上传 JSONL 提示词文件，后台按并发度、重试和速率限制调用大模型，逐条保存结果作为断点
+ *
+ * @author Shane
+ */
+public interface BatchJobService {
+
+    /**
+     * 创建任务并立即开始执行
+     *
+     * @param createRequest 任务参数
+     * @param file          JSONL 提示词文件，每行一个 JSON 对象
+     * @return 任务
+     */
+    BatchJob createJob(BatchJobCreateRequest createRequest, MultipartFile file);
+
+    /**
+     * 获取任务（含进度）
+     *
+     * @param jobId 任务ID
+     * @return 任务
+     */
+    BatchJob getJob(String jobId);
+
+    /**
+     * 查询所有任务，按创建时间倒序
+     *
+     * @return 任务列表
+     */
+    List<BatchJob> listJobs();
+
+    /**
+     * 取消任务，已完成的条目保留，之后可以恢复
+     *
+     * @param jobId 任务ID
+     * @return 任务
+     */
+    BatchJob cancelJob(String jobId);
+
+    /**
+     * 恢复任务，从未完成的条目继续执行
+     *
+     * @param jobId       任务ID
+     * @param retryFailed 是否同时重新执行失败的条目
+     * @return 任务
+     */
+    BatchJob resumeJob(String jobId, boolean retryFailed);
+
+    /**
+     * 按行号顺序把已完成条目的结果以 JSONL 写出
+     *
+     * @param jobId        任务ID
+     * @param outputStream 输出流
+     * @throws IOException 写出失败时抛出
+     */
+    void writeResults(String jobId, OutputStream outputStream) throws IOException;
+}
@@ -1,11 +1,15 @@
 package com.shaneShark.service;
 
+import com.shaneShark.model.dto.chat.ChatMessagePageRequest;
 import com.shaneShark.model.dto.chat.ChatRequest;
 import com.shaneShark.model.dto.chat.ChatResponse;
 import com.shaneShark.model.dto.chat.ChatSessionRequest;
 import com.shaneShark.model.dto.chat.StreamChatResponse;
 import com.shaneShark.model.vo.ChatMessageVO;
+import com.shaneShark.model.vo.ChatSessionPageVO;
 import com.shaneShark.model.vo.ChatSessionVO;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
 
 import java.util.List;
 import java.util.function.Consumer;
@@ -34,6 +38,15 @@ public interface ChatService {
      */
     void streamChat(ChatRequest chatRequest, Consumer<StreamChatResponse> onChunk);
 
+    /**
+     * 发送流式聊天请求（响应式，非阻塞）
+     * 上游 SSE 通过异步 I/O 读取，生成期间不占用请求线程
+     *
+     * @param chatRequest 聊天请求对象
+     * @return 数据块流
+     */
+    Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest);
+
     /**
      * 创建聊天会话
      *
@@ -50,6 +63,16 @@ public interface ChatService {
      */
     List<ChatSessionVO> getSessions(Long userId);
 
+    /**
+     * 按游标分页获取用户的会话列表
+     *
+     * @param userId   用户ID
+     * @param cursor   上一页返回的游标，为空表示第一页
+     * @param pageSize 每页条数
+     * @return 会话分页结果
+     */
+    ChatSessionPageVO getSessionPage(Long userId, String cursor, Integer pageSize);
+
     /**
      * 获取会话的消息列表
      *
@@ -59,6 +82,16 @@ public interface ChatService {
      */
     List<ChatMessageVO> getMessages(String sessionId, Long userId);
 
+    /**
+     * 按 (createTime, _id) 键集分页获取会话消息，结果以 JSON 数组流式写出
+     *
+     * @param sessionId   会话ID
+     * @param userId      用户ID
+     * @param pageRequest 分页请求（游标、条数、字段）
+     * @return 响应体，会话归属和分页参数在返回前校验
+     */
+    StreamingResponseBody getMessagePage(String sessionId, Long userId, ChatMessagePageRequest pageRequest);
+
     /**
      * 删除会话（软删除）
      *
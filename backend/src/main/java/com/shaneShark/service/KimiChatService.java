@@ -3,7 +3,18 @@ package com.shaneShark.service;
 import com.shaneShark.common.ErrorCode;
 import com.shaneShark.exception.BusinessException;
 import com.shaneShark.exception.ThrowUtils;
+import com.shaneShark.manager.ChatMessageHistory;
+import com.shaneShark.manager.ChatMessagePersister;
+import com.shaneShark.manager.ChatSessionIndex;
+import com.shaneShark.manager.ChatSessionLifecycle;
+import com.shaneShark.manager.SessionToucher;
 import com.shaneShark.manager.KimiManager;
+import com.shaneShark.manager.llm.ChatCompletionPipeline;
+import com.shaneShark.manager.llm.ContextWindowBuilder;
+import com.shaneShark.manager.llm.LlmMetrics;
+import com.shaneShark.manager.llm.SessionHistoryCache;
+import com.shaneShark.manager.llm.SessionSummarizer;
+import com.shaneShark.model.dto.chat.ChatMessagePageRequest;
 import com.shaneShark.model.dto.chat.ChatRequest;
 import com.shaneShark.model.dto.chat.ChatResponse;
 import com.shaneShark.model.dto.chat.ChatSessionRequest;
@@ -11,7 +22,9 @@ import com.shaneShark.model.dto.chat.Message;
 import com.shaneShark.model.dto.chat.StreamChatResponse;
 import com.shaneShark.model.entity.ChatMessage;
 import com.shaneShark.model.entity.ChatSession;
+import com.shaneShark.model.enums.LlmProviderEnum;
 import com.shaneShark.model.vo.ChatMessageVO;
+import com.shaneShark.model.vo.ChatSessionPageVO;
 import com.shaneShark.model.vo.ChatSessionVO;
 import com.shaneShark.repository.ChatMessageRepository;
 import com.shaneShark.repository.ChatSessionRepository;
@@ -19,6 +32,10 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import jakarta.annotation.Resource;
 import java.time.LocalDateTime;
@@ -41,12 +58,42 @@ public class KimiChatService implements ChatService {
     @Resource
     private KimiManager kimiManager;
 
+    @Resource
+    private ChatCompletionPipeline chatCompletionPipeline;
+
+    @Resource
+    private LlmMetrics llmMetrics;
+
+    @Resource
+    private ContextWindowBuilder contextWindowBuilder;
+
+    @Resource
+    private SessionSummarizer sessionSummarizer;
+
     @Resource
     private ChatSessionRepository chatSessionRepository;
 
     @Resource
     private ChatMessageRepository chatMessageRepository;
 
+    @Resource
+    private ChatMessagePersister chatMessagePersister;
+
+    @Resource
+    private ChatSessionIndex chatSessionIndex;
+
+    @Resource
+    private ChatMessageHistory chatMessageHistory;
+
+    @Resource
+    private SessionToucher sessionToucher;
+
+    @Resource
+    private SessionHistoryCache sessionHistoryCache;
+
+    @Resource
+    private ChatSessionLifecycle chatSessionLifecycle;
+
     @Override
     public ChatResponse chat(ChatRequest chatRequest) {
         // 参数校验
@@ -56,7 +103,8 @@ public class KimiChatService implements ChatService {
         String sessionId = getOrCreateSession(chatRequest);
 
         // 构建完整的消息列表（包含历史记录）
-        List<Message> fullMessages = buildMessageList(chatRequest, sessionId);
+        List<Message> fullMessages = llmMetrics.recordHistoryLoad(LlmProviderEnum.KIMI, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT,
+                () -> buildMessageList(chatRequest, sessionId));
 
         // 打印完整的消息列表用于调试
         log.info("准备发送给Kimi的消息列表: sessionId={}, userId={}, 总消息数={}", 
@@ -72,19 +120,24 @@ public class KimiChatService implements ChatService {
         fullRequest.setSessionId(sessionId);
 
         // 保存用户消息
-        saveUserMessage(chatRequest, sessionId);
+        llmMetrics.recordPersistence(LlmProviderEnum.KIMI, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT, "user",
+                () -> saveUserMessage(chatRequest, sessionId));
 
-        // 调用Manager层执行聊天请求
-        ChatResponse response = kimiManager.chat(fullRequest);
+        // 缓存、额度预扣、合并在途请求和用量对账
+        ChatResponse response = chatCompletionPipeline.chat(LlmProviderEnum.KIMI, fullRequest, () -> kimiManager.chat(fullRequest));
 
         // 设置sessionId到响应中，方便客户端后续使用
         response.setSessionId(sessionId);
 
-        // 保存AI回复
-        saveAssistantMessage(response, sessionId, chatRequest.getUserId());
+        // 保存AI回复并更新会话时间
+        ChatResponse assistantResponse = response;
+        llmMetrics.recordPersistence(LlmProviderEnum.KIMI, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT, "assistant", () -> {
+            saveAssistantMessage(assistantResponse, sessionId, chatRequest.getUserId());
+            updateSessionTime(sessionId, chatRequest.getUserId());
+        });
 
-        // 更新会话时间
-        updateSessionTime(sessionId);
+        // 历史过长时在后台压缩为滚动摘要
+        sessionSummarizer.submit(LlmProviderEnum.KIMI, sessionId, chatRequest.getUserId());
 
         log.info("Kimi聊天完成: sessionId={}, userId={}, 历史消息数={}, 当前消息数={}", 
                 sessionId, chatRequest.getUserId(), 
@@ -96,6 +149,47 @@ public class KimiChatService implements ChatService {
 
     @Override
     public void streamChat(ChatRequest chatRequest, Consumer<StreamChatResponse> onChunk) {
+        // 参数校验、获取会话、构建历史消息并保存用户消息
+        ChatRequest fullRequest = prepareStreamRequest(chatRequest, LlmMetrics.ENDPOINT_STREAM);
+        String sessionId = fullRequest.getSessionId();
+
+        // 语义缓存命中时模拟流式回放，否则调用Manager层执行流式聊天请求，流结束后保存AI回复
+        chatCompletionPipeline.stream(LlmProviderEnum.KIMI, fullRequest, () -> kimiManager.streamChatFlux(fullRequest), onChunk,
+                content -> saveStreamAnswer(chatRequest, sessionId, LlmProviderEnum.KIMI, LlmMetrics.ENDPOINT_STREAM, content));
+    }
+
+    @Override
+    public Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest) {
+        // 会话查询、历史加载、用户消息保存和缓存向量化都是阻塞操作，只在弹性线程池上执行一次，
+        // 之后的上游流式读取完全异步
+        return Mono.fromCallable(() -> prepareStreamRequest(chatRequest, LlmMetrics.ENDPOINT_FLUX))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(fullRequest -> {
+                    String sessionId = fullRequest.getSessionId();
+                    return chatCompletionPipeline.streamFlux(LlmProviderEnum.KIMI, fullRequest, () -> kimiManager.streamChatFlux(fullRequest),
+                            content -> saveStreamAnswer(chatRequest, sessionId, LlmProviderEnum.KIMI, LlmMetrics.ENDPOINT_FLUX, content));
+                });
+    }
+
+    /**
+     * 流式回答结束后保存AI回复、更新会话时间，并在历史过长时提交摘要
+     */
+    private void saveStreamAnswer(ChatRequest chatRequest, String sessionId, LlmProviderEnum provider,
+                                  String endpoint, String content) {
+        llmMetrics.recordPersistence(provider, chatRequest.getModel(), endpoint, "assistant", () -> {
+            saveAssistantMessage(content, sessionId, chatRequest.getUserId());
+            updateSessionTime(sessionId, chatRequest.getUserId());
+        });
+        sessionSummarizer.submit(provider, sessionId, chatRequest.getUserId());
+    }
+
+    /**
+     * 流式请求的前置处理：参数校验、获取会话、构建历史消息并保存用户消息
+     *
+     * @param endpoint 调用方式，用于指标标签
+     * @return 包含历史消息和 sessionId 的完整请求
+     */
+    private ChatRequest prepareStreamRequest(ChatRequest chatRequest, String endpoint) {
         // 参数校验
         validateChatRequest(chatRequest);
 
@@ -103,7 +197,8 @@ public class KimiChatService implements ChatService {
         String sessionId = getOrCreateSession(chatRequest);
 
         // 构建完整的消息列表（包含历史记录）
-        List<Message> fullMessages = buildMessageList(chatRequest, sessionId);
+        List<Message> fullMessages = llmMetrics.recordHistoryLoad(LlmProviderEnum.KIMI, chatRequest.getModel(), endpoint,
+                () -> buildMessageList(chatRequest, sessionId));
 
         // 处理多模态消息
         List<Message> processedMessages = processMultimodalMessages(fullMessages);
@@ -115,28 +210,10 @@ public class KimiChatService implements ChatService {
         fullRequest.setSessionId(sessionId);
 
         // 保存用户消息
-        saveUserMessage(chatRequest, sessionId);
+        llmMetrics.recordPersistence(LlmProviderEnum.KIMI, chatRequest.getModel(), endpoint, "user",
+                () -> saveUserMessage(chatRequest, sessionId));
 
-        // 用于收集流式响应内容
-        StringBuilder responseContent = new StringBuilder();
-
-        // 调用Manager层执行流式聊天请求
-        kimiManager.streamChat(fullRequest, streamResponse -> {
-            // 收集内容
-            String deltaContent = streamResponse.getDeltaContent();
-            if (deltaContent != null) {
-                responseContent.append(deltaContent);
-            }
-
-            // 调用回调
-            onChunk.accept(streamResponse);
-
-            // 如果流结束，保存AI回复
-            if (streamResponse.isFinished()) {
-                saveAssistantMessage(responseContent.toString(), sessionId, chatRequest.getUserId());
-                updateSessionTime(sessionId);
-            }
-        });
+        return fullRequest;
     }
 
     // 以下方法复用ChatServiceImpl的逻辑
@@ -150,10 +227,8 @@ public class KimiChatService implements ChatService {
             ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
             if (session == null) {
                 log.warn("会话不存在: sessionId={}, userId={}", sessionId, userId);
-                List<ChatSession> recentSessions = chatSessionRepository
-                        .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-                if (!recentSessions.isEmpty()) {
-                    String recentSessionId = recentSessions.get(0).getId();
+                String recentSessionId = chatSessionIndex.latestSessionId(userId);
+                if (recentSessionId != null) {
                     log.info("未找到指定会话，使用最近会话: sessionId={}, userId={}", recentSessionId, userId);
                     return recentSessionId;
                 }
@@ -162,10 +237,8 @@ public class KimiChatService implements ChatService {
             }
             if (session.getIsDelete()) {
                 log.warn("会话已删除: sessionId={}, userId={}", sessionId, userId);
-                List<ChatSession> recentSessions = chatSessionRepository
-                        .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-                if (!recentSessions.isEmpty()) {
-                    String recentSessionId = recentSessions.get(0).getId();
+                String recentSessionId = chatSessionIndex.latestSessionId(userId);
+                if (recentSessionId != null) {
                     log.info("指定会话已删除，使用最近会话: sessionId={}, userId={}", recentSessionId, userId);
                     return recentSessionId;
                 }
@@ -175,12 +248,9 @@ public class KimiChatService implements ChatService {
             return sessionId;
         }
         
-        List<ChatSession> recentSessions = chatSessionRepository
-                .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-        if (!recentSessions.isEmpty()) {
-            String recentSessionId = recentSessions.get(0).getId();
-            log.info("未提供sessionId，使用最近会话: sessionId={}, userId={}, title={}", 
-                    recentSessionId, userId, recentSessions.get(0).getTitle());
+        String recentSessionId = chatSessionIndex.latestSessionId(userId);
+        if (recentSessionId != null) {
+            log.info("未提供sessionId，使用最近会话: sessionId={}, userId={}", recentSessionId, userId);
             return recentSessionId;
         }
 
@@ -195,6 +265,7 @@ public class KimiChatService implements ChatService {
         
         try {
             ChatSession saved = chatSessionRepository.save(session);
+            chatSessionIndex.touch(userId, saved.getId());
             log.info("创建新会话成功: sessionId={}, userId={}, title={}", saved.getId(), userId, session.getTitle());
             return saved.getId();
         } catch (Exception e) {
@@ -234,13 +305,18 @@ public class KimiChatService implements ChatService {
         }
 
         try {
-            List<ChatMessage> historyMessages = chatMessageRepository
-                    .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false);
+            // 有滚动摘要时只加载摘要之后的消息，摘要作为系统消息放在最前面
+            SessionSummarizer.History history = sessionSummarizer.loadHistory(sessionId, userId);
+            if (history.getSummary() != null) {
+                messages.add(history.getSummary());
+            }
+            List<ChatMessage> historyMessages = history.getMessages();
 
             log.info("加载历史消息: sessionId={}, userId={}, 历史消息数={}", 
                     sessionId, userId, historyMessages.size());
 
-            for (ChatMessage historyMsg : historyMessages) {
+            // 按模型上下文长度裁剪历史消息，只保留令牌预算内最近的若干轮
+            for (ChatMessage historyMsg : contextWindowBuilder.select(LlmProviderEnum.KIMI, chatRequest, history.getSummary(), historyMessages)) {
                 if (!userId.equals(historyMsg.getUserId()) || !sessionId.equals(historyMsg.getSessionId())) {
                     log.warn("消息归属验证失败，跳过: messageId={}", historyMsg.getId());
                     continue;
@@ -249,6 +325,8 @@ public class KimiChatService implements ChatService {
                 Message msg = new Message();
                 msg.setRole(historyMsg.getRole());
                 msg.setContent(historyMsg.getContent());
+                // 已持久化消息的序列化结果按消息ID缓存
+                msg.setFragmentKey(historyMsg.getId());
                 if (historyMsg.getImageUrls() != null && !historyMsg.getImageUrls().isEmpty()) {
                     msg.setImageUrls(historyMsg.getImageUrls());
                 }
@@ -274,6 +352,7 @@ public class KimiChatService implements ChatService {
             if (msg.hasMultimodalContent()) {
                 Message processedMsg = new Message();
                 processedMsg.setRole(msg.getRole());
+                processedMsg.setFragmentKey(msg.getFragmentKey());
                 List<Message.ContentItem> contentList = new ArrayList<>();
                 if (StringUtils.isNotBlank(msg.getContent())) {
                     Message.ContentItem textItem = new Message.ContentItem();
@@ -331,7 +410,7 @@ public class KimiChatService implements ChatService {
                     chatMessage.setVideoUrls(msg.getVideoUrls());
                     chatMessage.setCreateTime(LocalDateTime.now());
                     chatMessage.setIsDelete(false);
-                    chatMessageRepository.save(chatMessage);
+                    chatMessagePersister.save(chatMessage);
                     log.info("保存用户消息成功: sessionId={}, messageId={}, userId={}", 
                             sessionId, chatMessage.getId(), userId);
                 } catch (Exception e) {
@@ -360,7 +439,7 @@ public class KimiChatService implements ChatService {
             chatMessage.setContent(content);
             chatMessage.setCreateTime(LocalDateTime.now());
             chatMessage.setIsDelete(false);
-            chatMessageRepository.save(chatMessage);
+            chatMessagePersister.save(chatMessage);
             log.info("保存AI回复成功: sessionId={}, messageId={}, userId={}", 
                     sessionId, chatMessage.getId(), userId);
         } catch (Exception e) {
@@ -382,7 +461,7 @@ public class KimiChatService implements ChatService {
             chatMessage.setContent(content);
             chatMessage.setCreateTime(LocalDateTime.now());
             chatMessage.setIsDelete(false);
-            chatMessageRepository.save(chatMessage);
+            chatMessagePersister.save(chatMessage);
             log.info("保存AI回复成功: sessionId={}, messageId={}, userId={}", 
                     sessionId, chatMessage.getId(), userId);
         } catch (Exception e) {
@@ -391,13 +470,9 @@ public class KimiChatService implements ChatService {
         }
     }
 
-    private void updateSessionTime(String sessionId) {
+    private void updateSessionTime(String sessionId, Long userId) {
         try {
-            ChatSession session = chatSessionRepository.findById(sessionId).orElse(null);
-            if (session != null) {
-                session.setUpdateTime(LocalDateTime.now());
-                chatSessionRepository.save(session);
-            }
+            sessionToucher.touch(sessionId, userId);
         } catch (Exception e) {
             log.error("更新会话时间失败: sessionId={}, error={}", sessionId, e.getMessage(), e);
         }
@@ -438,6 +513,7 @@ public class KimiChatService implements ChatService {
         session.setUpdateTime(LocalDateTime.now());
         session.setIsDelete(false);
         chatSessionRepository.save(session);
+        chatSessionIndex.touch(session.getUserId(), session.getId());
         ChatSessionVO vo = new ChatSessionVO();
         BeanUtils.copyProperties(session, vo);
         return vo;
@@ -446,13 +522,23 @@ public class KimiChatService implements ChatService {
     @Override
     public List<ChatSessionVO> getSessions(Long userId) {
         ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
-        List<ChatSession> sessions = chatSessionRepository
-                .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-        return sessions.stream().map(session -> {
-            ChatSessionVO vo = new ChatSessionVO();
-            BeanUtils.copyProperties(session, vo);
-            return vo;
-        }).collect(Collectors.toList());
+        return chatSessionIndex.list(userId);
+    }
+
+    @Override
+    public ChatSessionPageVO getSessionPage(Long userId, String cursor, Integer pageSize) {
+        ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
+        return chatSessionIndex.page(userId, cursor, pageSize);
+    }
+
+    @Override
+    public StreamingResponseBody getMessagePage(String sessionId, Long userId, ChatMessagePageRequest pageRequest) {
+        ThrowUtils.throwIf(StringUtils.isBlank(sessionId), ErrorCode.PARAMS_ERROR, "会话ID不能为空");
+        ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
+        ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
+        ThrowUtils.throwIf(session == null || session.getIsDelete(), ErrorCode.NOT_FOUND_ERROR, "会话不存在");
+        ChatMessageHistory.Page page = chatMessageHistory.open(sessionId, userId, pageRequest);
+        return page::writeTo;
     }
 
     @Override
@@ -462,8 +548,9 @@ public class KimiChatService implements ChatService {
         ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
         ThrowUtils.throwIf(session == null || session.getIsDelete(), 
                 ErrorCode.NOT_FOUND_ERROR, "会话不存在");
-        List<ChatMessage> messages = chatMessageRepository
-                .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false);
+        // 合并本节点尚未落库的消息
+        List<ChatMessage> messages = chatMessagePersister.withPending(sessionId, userId, null, chatMessageRepository
+                .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false));
         return messages.stream().map(msg -> {
             ChatMessageVO vo = new ChatMessageVO();
             BeanUtils.copyProperties(msg, vo);
@@ -475,18 +562,12 @@ public class KimiChatService implements ChatService {
     public void deleteSession(String sessionId, Long userId) {
         ThrowUtils.throwIf(StringUtils.isBlank(sessionId), ErrorCode.PARAMS_ERROR, "会话ID不能为空");
         ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
-        ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
-        ThrowUtils.throwIf(session == null || session.getIsDelete(), 
+        ThrowUtils.throwIf(!chatSessionLifecycle.softDeleteSession(sessionId, userId),
                 ErrorCode.NOT_FOUND_ERROR, "会话不存在");
-        session.setIsDelete(true);
-        session.setUpdateTime(LocalDateTime.now());
-        chatSessionRepository.save(session);
-        List<ChatMessage> messages = chatMessageRepository
-                .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false);
-        for (ChatMessage msg : messages) {
-            msg.setIsDelete(true);
-            chatMessageRepository.save(msg);
-        }
+        chatSessionIndex.evict(userId, sessionId);
+        sessionHistoryCache.invalidate(sessionId);
+        // 批量软删除，包括本节点尚未落库的消息
+        chatSessionLifecycle.softDeleteMessages(sessionId, userId);
     }
 }
 
@@ -0,0 +1,481 @@
+package com.shaneShark.service.impl;
+
+import com.baomidou.mybatisplus.core.toolkit.IdWorker;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.shaneShark.common.ErrorCode;
+import com.shaneShark.config.BatchJobConfig;
+import com.shaneShark.exception.BusinessException;
+import com.shaneShark.exception.ThrowUtils;
+import com.shaneShark.manager.LlmChatManager;
+import com.shaneShark.manager.llm.LlmRouter;
+import com.shaneShark.model.dto.batch.BatchJobCreateRequest;
+import com.shaneShark.model.dto.batch.BatchJobLine;
+import com.shaneShark.model.dto.chat.ChatRequest;
+import com.shaneShark.model.dto.chat.ChatResponse;
+import com.shaneShark.model.dto.chat.Message;
+import com.shaneShark.model.entity.BatchJob;
+import com.shaneShark.model.entity.BatchJobItem;
+import com.shaneShark.model.entity.QaInfo;
+import com.shaneShark.model.enums.BatchItemStatusEnum;
+import com.shaneShark.model.enums.BatchJobStatusEnum;
+import com.shaneShark.model.enums.LlmProviderEnum;
+import com.shaneShark.model.vo.BatchJobResultVO;
+import com.shaneShark.repository.BatchJobItemRepository;
+import com.shaneShark.repository.BatchJobRepository;
+import com.shaneShark.service.BatchJobService;
+import com.shaneShark.service.QaInfoService;
+import jakarta.annotation.Resource;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * 离线批量补全任务服务实现
+ * 待处理条目按速率限制依次发出，最多 parallelism 个请求同时进行，失败时指数退避重试；
+ * 每条结果（及 qa_info 写回）完成后立即落库，重启后只重新处理仍为 pending 的条目。
+ *
+ * @author Shane
+ */
+@Service
+@Slf4j
+public class BatchJobServiceImpl implements BatchJobService, CommandLineRunner {
+
+    @Resource
+    private BatchJobConfig batchJobConfig;
+
+    @Resource
+    private BatchJobRepository batchJobRepository;
+
+    @Resource
+    private BatchJobItemRepository batchJobItemRepository;
+
+    @Resource
+    private MongoTemplate mongoTemplate;
+
+    @Resource
+    private List<LlmChatManager> llmChatManagers;
+
+    @Resource
+    private LlmRouter llmRouter;
+
+    @Resource
+    private QaInfoService qaInfoService;
+
+    @Resource
+    private ObjectMapper objectMapper;
+
+    /**
+     * 本实例上正在执行的任务
+     */
+    private final ConcurrentHashMap<String, Disposable> runningJobs = new ConcurrentHashMap<>();
+
+    /**
+     * SQLite 只允许单个写入者，qa_info 写回串行执行
+     */
+    private final Object qaWriteLock = new Object();
+
+    @Override
+    public void run(String... args) {
+        if (!batchJobConfig.isEnabled() || !batchJobConfig.isResumeOnStartup()) {
+            return;
+        }
+        try {
+            List<BatchJob> unfinished = batchJobRepository.findByStatus(BatchJobStatusEnum.RUNNING.getValue());
+            for (BatchJob job : unfinished) {
+                log.info("恢复未完成的批量任务: jobId={}, name={}", job.getId(), job.getName());
+                start(job);
+            }
+        } catch (Exception e) {
+            log.error("恢复批量任务失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public BatchJob createJob(BatchJobCreateRequest createRequest, MultipartFile file) {
+        ThrowUtils.throwIf(!batchJobConfig.isEnabled(), ErrorCode.OPERATION_ERROR, "批量任务未启用");
+        ThrowUtils.throwIf(createRequest == null, ErrorCode.PARAMS_ERROR);
+        ThrowUtils.throwIf(file == null || file.isEmpty(), ErrorCode.PARAMS_ERROR, "请上传 JSONL 文件");
+
+        String providerValue = StringUtils.defaultIfBlank(createRequest.getProvider(), LlmProviderEnum.DOUBAO.getValue());
+        LlmProviderEnum provider = LlmProviderEnum.getEnumByValue(providerValue);
+        ThrowUtils.throwIf(provider == null, ErrorCode.PARAMS_ERROR, "不支持的服务提供方: " + providerValue);
+
+        BatchJob job = new BatchJob();
+        job.setName(StringUtils.defaultIfBlank(createRequest.getName(), file.getOriginalFilename()));
+        job.setProvider(provider.getValue());
+        job.setModel(StringUtils.trimToNull(createRequest.getModel()));
+        job.setSystemPrompt(StringUtils.trimToNull(createRequest.getSystemPrompt()));
+        job.setTemperature(createRequest.getTemperature());
+        job.setMaxTokens(createRequest.getMaxTokens());
+        int parallelism = createRequest.getParallelism() != null
+                ? createRequest.getParallelism() : batchJobConfig.getDefaultParallelism();
+        job.setParallelism(Math.max(1, Math.min(parallelism, batchJobConfig.getMaxParallelism())));
+        double requestsPerSecond = createRequest.getRequestsPerSecond() != null
+                ? createRequest.getRequestsPerSecond() : batchJobConfig.getDefaultRequestsPerSecond();
+        ThrowUtils.throwIf(requestsPerSecond <= 0, ErrorCode.PARAMS_ERROR, "每秒请求数必须大于0");
+        job.setRequestsPerSecond(requestsPerSecond);
+        int maxRetries = createRequest.getMaxRetries() != null
+                ? createRequest.getMaxRetries() : batchJobConfig.getDefaultMaxRetries();
+        job.setMaxRetries(Math.max(0, maxRetries));
+        job.setWriteToQa(Boolean.TRUE.equals(createRequest.getWriteToQa()));
+
+        List<BatchJobItem> items = parseItems(file, job.getWriteToQa());
+        ThrowUtils.throwIf(items.isEmpty(), ErrorCode.PARAMS_ERROR, "文件中没有提示词");
+
+        LocalDateTime now = LocalDateTime.now();
+        job.setStatus(BatchJobStatusEnum.RUNNING.getValue());
+        job.setTotal(items.size());
+        job.setSucceeded(0);
+        job.setFailed(0);
+        job.setCreateTime(now);
+        job.setUpdateTime(now);
+        job = batchJobRepository.save(job);
+
+        int batchSize = Math.max(1, batchJobConfig.getInsertBatchSize());
+        for (int from = 0; from < items.size(); from += batchSize) {
+            List<BatchJobItem> batch = items.subList(from, Math.min(from + batchSize, items.size()));
+            for (BatchJobItem item : batch) {
+                item.setJobId(job.getId());
+                item.setUpdateTime(now);
+            }
+            mongoTemplate.insert(batch, BatchJobItem.class);
+        }
+        log.info("创建批量任务: jobId={}, name={}, provider={}, model={}, 条数={}, 并发度={}, 每秒请求数={}",
+                job.getId(), job.getName(), job.getProvider(), job.getModel(), items.size(),
+                job.getParallelism(), job.getRequestsPerSecond());
+        start(job);
+        return job;
+    }
+
+    @Override
+    public BatchJob getJob(String jobId) {
+        ThrowUtils.throwIf(StringUtils.isBlank(jobId), ErrorCode.PARAMS_ERROR);
+        BatchJob job = batchJobRepository.findById(jobId).orElse(null);
+        ThrowUtils.throwIf(job == null, ErrorCode.NOT_FOUND_ERROR, "任务不存在");
+        return job;
+    }
+
+    @Override
+    public List<BatchJob> listJobs() {
+        return batchJobRepository.findAllByOrderByCreateTimeDesc();
+    }
+
+    @Override
+    public BatchJob cancelJob(String jobId) {
+        BatchJob job = getJob(jobId);
+        ThrowUtils.throwIf(!BatchJobStatusEnum.RUNNING.getValue().equals(job.getStatus()),
+                ErrorCode.OPERATION_ERROR, "任务未在运行");
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(jobId).and("status").is(BatchJobStatusEnum.RUNNING.getValue())),
+                new Update().set("status", BatchJobStatusEnum.CANCELLED.getValue()).set("updateTime", LocalDateTime.now()),
+                BatchJob.class);
+        Disposable disposable = runningJobs.remove(jobId);
+        if (disposable != null) {
+            disposable.dispose();
+        }
+        log.info("取消批量任务: jobId={}", jobId);
+        return getJob(jobId);
+    }
+
+    @Override
+    public BatchJob resumeJob(String jobId, boolean retryFailed) {
+        BatchJob job = getJob(jobId);
+        ThrowUtils.throwIf(runningJobs.containsKey(jobId), ErrorCode.OPERATION_ERROR, "任务正在运行");
+        if (retryFailed) {
+            long reset = mongoTemplate.updateMulti(
+                    Query.query(Criteria.where("jobId").is(jobId).and("status").is(BatchItemStatusEnum.FAILED.getValue())),
+                    new Update().set("status", BatchItemStatusEnum.PENDING.getValue()).unset("error"),
+                    BatchJobItem.class).getModifiedCount();
+            if (reset > 0) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(jobId)),
+                        new Update().inc("failed", -reset), BatchJob.class);
+            }
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(jobId)),
+                new Update().set("status", BatchJobStatusEnum.RUNNING.getValue())
+                        .set("updateTime", LocalDateTime.now())
+                        .unset("finishTime"),
+                BatchJob.class);
+        job = getJob(jobId);
+        log.info("恢复批量任务: jobId={}, retryFailed={}", jobId, retryFailed);
+        start(job);
+        return job;
+    }
+
+    @Override
+    public void writeResults(String jobId, OutputStream outputStream) throws IOException {
+        Query query = Query.query(Criteria.where("jobId").is(jobId).and("status")
+                        .in(BatchItemStatusEnum.SUCCEEDED.getValue(), BatchItemStatusEnum.FAILED.getValue()))
+                .with(Sort.by(Sort.Direction.ASC, "lineNo"));
+        int written = 0;
+        try (Stream<BatchJobItem> items = mongoTemplate.stream(query, BatchJobItem.class)) {
+            for (BatchJobItem item : (Iterable<BatchJobItem>) items::iterator) {
+                BatchJobResultVO result = new BatchJobResultVO();
+                result.setLine(item.getLineNo());
+                result.setId(item.getCustomId());
+                result.setStatus(item.getStatus());
+                result.setContent(item.getContent());
+                result.setError(item.getError());
+                result.setQaId(item.getQaId());
+                result.setAttempts(item.getAttempts());
+                result.setPromptTokens(item.getPromptTokens());
+                result.setCompletionTokens(item.getCompletionTokens());
+                outputStream.write(objectMapper.writeValueAsBytes(result));
+                outputStream.write('\n');
+                if (++written % 100 == 0) {
+                    outputStream.flush();
+                }
+            }
+        }
+        outputStream.flush();
+    }
+
+    /**
+     * 逐行解析上传的 JSONL 文件，任一行不合法时整个文件拒绝
+     */
+    private List<BatchJobItem> parseItems(MultipartFile file, boolean writeToQa) {
+        List<BatchJobItem> items = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(file.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (StringUtils.isBlank(line)) {
+                    continue;
+                }
+                ThrowUtils.throwIf(items.size() >= batchJobConfig.getMaxLines(), ErrorCode.PARAMS_ERROR,
+                        "提示词不能超过 " + batchJobConfig.getMaxLines() + " 条");
+                BatchJobLine jobLine;
+                try {
+                    jobLine = objectMapper.readValue(line, BatchJobLine.class);
+                } catch (JsonProcessingException e) {
+                    throw new BusinessException(ErrorCode.PARAMS_ERROR, "第 " + lineNo + " 行不是合法的 JSON");
+                }
+                ThrowUtils.throwIf(StringUtils.isBlank(jobLine.getPrompt()), ErrorCode.PARAMS_ERROR,
+                        "第 " + lineNo + " 行缺少 prompt");
+                ThrowUtils.throwIf(jobLine.getPrompt().length() > batchJobConfig.getMaxPromptChars(),
+                        ErrorCode.PARAMS_ERROR, "第 " + lineNo + " 行 prompt 过长");
+
+                BatchJobItem item = new BatchJobItem();
+                item.setLineNo(lineNo);
+                item.setCustomId(jobLine.getId());
+                item.setPrompt(jobLine.getPrompt());
+                item.setSystemPrompt(StringUtils.trimToNull(jobLine.getSystem()));
+                item.setStatus(BatchItemStatusEnum.PENDING.getValue());
+                item.setAttempts(0);
+                if (writeToQa) {
+                    if (jobLine.getQaId() != null) {
+                        item.setQaId(jobLine.getQaId());
+                    } else {
+                        ThrowUtils.throwIf(StringUtils.isAnyBlank(jobLine.getQuestion(), jobLine.getTag()),
+                                ErrorCode.PARAMS_ERROR, "第 " + lineNo + " 行需要 qaId，或 question 和 tag");
+                        // 预先分配ID，重试和恢复时按该ID更新而不是重复插入
+                        item.setQaId(IdWorker.getId());
+                        item.setQuestion(jobLine.getQuestion());
+                        item.setTag(jobLine.getTag());
+                    }
+                }
+                items.add(item);
+            }
+        } catch (IOException e) {
+            throw new BusinessException(ErrorCode.SYSTEM_ERROR, "读取上传文件失败");
+        }
+        return items;
+    }
+
+    /**
+     * 开始执行任务中仍为 pending 的条目
+     */
+    private void start(BatchJob job) {
+        List<BatchJobItem> pending = batchJobItemRepository
+                .findByJobIdAndStatusOrderByLineNoAsc(job.getId(), BatchItemStatusEnum.PENDING.getValue());
+        if (pending.isEmpty()) {
+            finish(job.getId());
+            return;
+        }
+        Disposable.Swap swap = Disposables.swap();
+        if (runningJobs.putIfAbsent(job.getId(), swap) != null) {
+            return;
+        }
+        long intervalNanos = (long) (1_000_000_000L / job.getRequestsPerSecond());
+        swap.update(Flux.fromIterable(pending)
+                .delayElements(Duration.ofNanos(intervalNanos))
+                .flatMap(item -> process(job, item), job.getParallelism())
+                .doFinally(signal -> {
+                    runningJobs.remove(job.getId(), swap);
+                    if (signal == SignalType.ON_COMPLETE) {
+                        finish(job.getId());
+                    }
+                })
+                .subscribe(item -> { }, e -> log.error("批量任务异常终止: jobId={}, error={}", job.getId(), e.getMessage(), e)));
+    }
+
+    /**
+     * 处理单个条目：调用模型（带重试），成功时写回 qa_info，最后保存条目状态
+     */
+    private Mono<BatchJobItem> process(BatchJob job, BatchJobItem item) {
+        AtomicInteger attempts = new AtomicInteger(item.getAttempts() != null ? item.getAttempts() : 0);
+        return Mono.defer(() -> {
+                    attempts.incrementAndGet();
+                    return call(job, item);
+                })
+                .retryWhen(Retry.backoff(job.getMaxRetries(), Duration.ofMillis(batchJobConfig.getRetryBackoffMillis()))
+                        .doBeforeRetry(signal -> log.warn("批量任务条目重试: jobId={}, line={}, 第{}次, error={}",
+                                job.getId(), item.getLineNo(), signal.totalRetries() + 1, signal.failure().getMessage()))
+                        .onRetryExhaustedThrow((spec, signal) -> signal.failure()))
+                .publishOn(Schedulers.boundedElastic())
+                .map(response -> {
+                    onSuccess(job, item, response, attempts.get());
+                    return item;
+                })
+                .onErrorResume(e -> Mono.fromCallable(() -> {
+                    onFailure(job, item, e, attempts.get());
+                    return item;
+                }).subscribeOn(Schedulers.boundedElastic()));
+    }
+
+    private Mono<ChatResponse> call(BatchJob job, BatchJobItem item) {
+        List<Message> messages = new ArrayList<>(2);
+        String systemPrompt = StringUtils.defaultIfBlank(item.getSystemPrompt(), job.getSystemPrompt());
+        if (StringUtils.isNotBlank(systemPrompt)) {
+            messages.add(new Message("system", systemPrompt));
+        }
+        messages.add(new Message("user", item.getPrompt()));
+        ChatRequest chatRequest = new ChatRequest();
+        chatRequest.setMessages(messages);
+        chatRequest.setModel(job.getModel());
+        chatRequest.setTemperature(job.getTemperature());
+        chatRequest.setMaxTokens(job.getMaxTokens());
+        chatRequest.setStream(false);
+
+        Mono<ChatResponse> response;
+        if (llmRouter.isAuto(chatRequest)) {
+            response = Mono.fromCallable(() -> llmRouter.chat(chatRequest)).subscribeOn(Schedulers.boundedElastic());
+        } else {
+            response = manager(job.getProvider()).chatMono(chatRequest);
+        }
+        return response.filter(chatResponse -> StringUtils.isNotBlank(chatResponse.getContent()))
+                .switchIfEmpty(Mono.error(new BusinessException(ErrorCode.SYSTEM_ERROR, "模型返回内容为空")));
+    }
+
+    private LlmChatManager manager(String provider) {
+        return llmChatManagers.stream()
+                .filter(candidate -> candidate.getProvider().getValue().equals(provider))
+                .findFirst()
+                .orElseThrow(() -> new BusinessException(ErrorCode.SYSTEM_ERROR, "服务提供方不可用: " + provider));
+    }
+
+    private void onSuccess(BatchJob job, BatchJobItem item, ChatResponse response, int attempts) {
+        String content = response.getContent().trim();
+        if (Boolean.TRUE.equals(job.getWriteToQa()) && item.getQaId() != null) {
+            writeQa(item, content);
+        }
+        Update update = new Update()
+                .set("status", BatchItemStatusEnum.SUCCEEDED.getValue())
+                .set("content", content)
+                .set("attempts", attempts)
+                .set("updateTime", LocalDateTime.now())
+                .unset("error");
+        if (response.getUsage() != null) {
+            update.set("promptTokens", response.getUsage().getPromptTokens())
+                    .set("completionTokens", response.getUsage().getCompletionTokens());
+        }
+        checkpoint(job, item, update, "succeeded");
+    }
+
+    private void onFailure(BatchJob job, BatchJobItem item, Throwable e, int attempts) {
+        log.warn("批量任务条目失败: jobId={}, line={}, attempts={}, error={}",
+                job.getId(), item.getLineNo(), attempts, e.getMessage());
+        Update update = new Update()
+                .set("status", BatchItemStatusEnum.FAILED.getValue())
+                .set("error", StringUtils.defaultIfBlank(e.getMessage(), e.getClass().getSimpleName()))
+                .set("attempts", attempts)
+                .set("updateTime", LocalDateTime.now());
+        checkpoint(job, item, update, "failed");
+    }
+
+    /**
+     * 保存条目结果并累加任务进度；条目只从 pending 转换一次，进度不会重复计数
+     */
+    private void checkpoint(BatchJob job, BatchJobItem item, Update update, String counter) {
+        Query query = Query.query(Criteria.where("_id").is(item.getId())
+                .and("status").is(BatchItemStatusEnum.PENDING.getValue()));
+        if (mongoTemplate.updateFirst(query, update, BatchJobItem.class).getModifiedCount() > 0) {
+            mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(job.getId())),
+                    new Update().inc(counter, 1).set("updateTime", LocalDateTime.now()), BatchJob.class);
+        }
+    }
+
+    /**
+     * 写回 qa_info：已存在时更新答案，否则按预分配的ID新增
+     */
+    private void writeQa(BatchJobItem item, String answer) {
+        synchronized (qaWriteLock) {
+            QaInfo qaInfo = qaInfoService.getById(item.getQaId());
+            Date now = new Date();
+            if (qaInfo != null) {
+                qaInfo.setAnswer(answer);
+                qaInfo.setUpdateTime(now);
+                ThrowUtils.throwIf(!qaInfoService.updateById(qaInfo), ErrorCode.OPERATION_ERROR, "更新 qa_info 失败");
+                return;
+            }
+            ThrowUtils.throwIf(StringUtils.isBlank(item.getQuestion()), ErrorCode.NOT_FOUND_ERROR,
+                    "qa_info 不存在: " + item.getQaId());
+            qaInfo = new QaInfo();
+            qaInfo.setId(item.getQaId());
+            qaInfo.setQuestion(item.getQuestion());
+            qaInfo.setAnswer(answer);
+            qaInfo.setTag(item.getTag());
+            qaInfoService.validQaInfo(qaInfo, true);
+            qaInfo.setIsHot(0);
+            qaInfo.setViewCount(0);
+            qaInfo.setCreateTime(now);
+            qaInfo.setUpdateTime(now);
+            ThrowUtils.throwIf(!qaInfoService.save(qaInfo), ErrorCode.OPERATION_ERROR, "新增 qa_info 失败");
+        }
+    }
+
+    /**
+     * 所有条目处理完后把任务标记为完成（已取消的任务保持取消状态）
+     */
+    private void finish(String jobId) {
+        LocalDateTime now = LocalDateTime.now();
+        mongoTemplate.updateFirst(
+                Query.query(Criteria.where("_id").is(jobId).and("status").is(BatchJobStatusEnum.RUNNING.getValue())),
+                new Update().set("status", BatchJobStatusEnum.COMPLETED.getValue())
+                        .set("finishTime", now)
+                        .set("updateTime", now),
+                BatchJob.class);
+        log.info("批量任务完成: jobId={}", jobId);
+    }
+}
@@ -3,7 +3,19 @@ package com.shaneShark.service.impl;
 import com.shaneShark.common.ErrorCode;
 import com.shaneShark.exception.BusinessException;
 import com.shaneShark.exception.ThrowUtils;
+import com.shaneShark.manager.ChatMessageHistory;
+import com.shaneShark.manager.ChatMessagePersister;
+import com.shaneShark.manager.ChatSessionIndex;
+import com.shaneShark.manager.ChatSessionLifecycle;
+import com.shaneShark.manager.SessionToucher;
 import com.shaneShark.manager.DoubaoManager;
+import com.shaneShark.manager.llm.LlmRouter;
+import com.shaneShark.manager.llm.ChatCompletionPipeline;
+import com.shaneShark.manager.llm.ContextWindowBuilder;
+import com.shaneShark.manager.llm.LlmMetrics;
+import com.shaneShark.manager.llm.SessionHistoryCache;
+import com.shaneShark.manager.llm.SessionSummarizer;
+import com.shaneShark.model.dto.chat.ChatMessagePageRequest;
 import com.shaneShark.model.dto.chat.ChatRequest;
 import com.shaneShark.model.dto.chat.ChatResponse;
 import com.shaneShark.model.dto.chat.ChatSessionRequest;
@@ -11,7 +23,9 @@ import com.shaneShark.model.dto.chat.Message;
 import com.shaneShark.model.dto.chat.StreamChatResponse;
 import com.shaneShark.model.entity.ChatMessage;
 import com.shaneShark.model.entity.ChatSession;
+import com.shaneShark.model.enums.LlmProviderEnum;
 import com.shaneShark.model.vo.ChatMessageVO;
+import com.shaneShark.model.vo.ChatSessionPageVO;
 import com.shaneShark.model.vo.ChatSessionVO;
 import com.shaneShark.repository.ChatMessageRepository;
 import com.shaneShark.repository.ChatSessionRepository;
@@ -20,6 +34,11 @@ import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.util.function.Tuples;
 
 import jakarta.annotation.Resource;
 import java.time.LocalDateTime;
@@ -42,22 +61,58 @@ public class ChatServiceImpl implements ChatService {
     @Resource
     private DoubaoManager doubaoManager;
 
+    @Resource
+    private ChatCompletionPipeline chatCompletionPipeline;
+
+    @Resource
+    private LlmMetrics llmMetrics;
+
+    @Resource
+    private ContextWindowBuilder contextWindowBuilder;
+
+    @Resource
+    private SessionSummarizer sessionSummarizer;
+
+    @Resource
+    private LlmRouter llmRouter;
+
     @Resource
     private ChatSessionRepository chatSessionRepository;
 
     @Resource
     private ChatMessageRepository chatMessageRepository;
 
+    @Resource
+    private ChatMessagePersister chatMessagePersister;
+
+    @Resource
+    private ChatSessionIndex chatSessionIndex;
+
+    @Resource
+    private ChatMessageHistory chatMessageHistory;
+
+    @Resource
+    private SessionToucher sessionToucher;
+
+    @Resource
+    private SessionHistoryCache sessionHistoryCache;
+
+    @Resource
+    private ChatSessionLifecycle chatSessionLifecycle;
+
     @Override
     public ChatResponse chat(ChatRequest chatRequest) {
         // 参数校验
         validateChatRequest(chatRequest);
+        // model 为 auto 时先选定服务提供方，缓存、额度和指标都归属于它
+        LlmProviderEnum provider = resolveProvider(chatRequest, false);
 
         // 获取或创建会话
         String sessionId = getOrCreateSession(chatRequest);
 
         // 构建完整的消息列表（包含历史记录）
-        List<Message> fullMessages = buildMessageList(chatRequest, sessionId);
+        List<Message> fullMessages = llmMetrics.recordHistoryLoad(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT,
+                () -> buildMessageList(chatRequest, sessionId, provider));
 
         // 打印完整的消息列表用于调试
         log.info("准备发送给AI的消息列表: sessionId={}, userId={}, 总消息数={}", 
@@ -82,19 +137,24 @@ public class ChatServiceImpl implements ChatService {
         fullRequest.setSessionId(sessionId);
 
         // 保存用户消息
-        saveUserMessage(chatRequest, sessionId);
+        llmMetrics.recordPersistence(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT, "user",
+                () -> saveUserMessage(chatRequest, sessionId));
 
-        // 调用Manager层执行聊天请求
-        ChatResponse response = doubaoManager.chat(fullRequest);
+        // 缓存、额度预扣、合并在途请求和用量对账
+        ChatResponse response = chatCompletionPipeline.chat(provider, fullRequest, () -> upstreamChat(fullRequest, provider));
 
         // 设置sessionId到响应中，方便客户端后续使用
         response.setSessionId(sessionId);
 
-        // 保存AI回复
-        saveAssistantMessage(response, sessionId, chatRequest.getUserId());
+        // 保存AI回复并更新会话时间
+        ChatResponse assistantResponse = response;
+        llmMetrics.recordPersistence(provider, chatRequest.getModel(), LlmMetrics.ENDPOINT_CHAT, "assistant", () -> {
+            saveAssistantMessage(assistantResponse, sessionId, chatRequest.getUserId());
+            updateSessionTime(sessionId, chatRequest.getUserId());
+        });
 
-        // 更新会话时间
-        updateSessionTime(sessionId);
+        // 历史过长时在后台压缩为滚动摘要
+        sessionSummarizer.submit(provider, sessionId, chatRequest.getUserId());
 
         log.info("聊天完成: sessionId={}, userId={}, 历史消息数={}, 当前消息数={}", 
                 sessionId, chatRequest.getUserId(), 
@@ -106,6 +166,54 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     public void streamChat(ChatRequest chatRequest, Consumer<StreamChatResponse> onChunk) {
+        // 参数校验、获取会话、构建历史消息并保存用户消息
+        LlmProviderEnum provider = resolveProvider(chatRequest, true);
+        ChatRequest fullRequest = prepareStreamRequest(chatRequest, provider, LlmMetrics.ENDPOINT_STREAM);
+        String sessionId = fullRequest.getSessionId();
+
+        // 语义缓存命中时模拟流式回放，否则调用Manager层执行流式聊天请求，流结束后保存AI回复
+        chatCompletionPipeline.stream(provider, fullRequest, () -> upstreamStream(fullRequest, provider), onChunk,
+                content -> saveStreamAnswer(chatRequest, sessionId, provider, LlmMetrics.ENDPOINT_STREAM, content));
+    }
+
+    @Override
+    public Flux<StreamChatResponse> streamChatFlux(ChatRequest chatRequest) {
+        // 会话查询、历史加载、用户消息保存和缓存向量化都是阻塞操作，只在弹性线程池上执行一次，
+        // 之后的上游流式读取完全异步
+        return Mono.fromCallable(() -> {
+                    LlmProviderEnum provider = resolveProvider(chatRequest, true);
+                    return Tuples.of(provider, prepareStreamRequest(chatRequest, provider, LlmMetrics.ENDPOINT_FLUX));
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMapMany(prepared -> {
+                    LlmProviderEnum provider = prepared.getT1();
+                    ChatRequest fullRequest = prepared.getT2();
+                    String sessionId = fullRequest.getSessionId();
+                    return chatCompletionPipeline.streamFlux(provider, fullRequest, () -> upstreamStream(fullRequest, provider),
+                            content -> saveStreamAnswer(chatRequest, sessionId, provider, LlmMetrics.ENDPOINT_FLUX, content));
+                });
+    }
+
+    /**
+     * 流式回答结束后保存AI回复、更新会话时间，并在历史过长时提交摘要
+     */
+    private void saveStreamAnswer(ChatRequest chatRequest, String sessionId, LlmProviderEnum provider,
+                                  String endpoint, String content) {
+        llmMetrics.recordPersistence(provider, chatRequest.getModel(), endpoint, "assistant", () -> {
+            saveAssistantMessage(content, sessionId, chatRequest.getUserId());
+            updateSessionTime(sessionId, chatRequest.getUserId());
+        });
+        sessionSummarizer.submit(provider, sessionId, chatRequest.getUserId());
+    }
+
+    /**
+     * 流式请求的前置处理：参数校验、获取会话、构建历史消息并保存用户消息
+     *
+     * @param provider 本次请求的服务提供方
+     * @param endpoint 调用方式，用于指标标签
+     * @return 包含历史消息和 sessionId 的完整请求
+     */
+    private ChatRequest prepareStreamRequest(ChatRequest chatRequest, LlmProviderEnum provider, String endpoint) {
         // 参数校验
         validateChatRequest(chatRequest);
 
@@ -113,7 +221,8 @@ public class ChatServiceImpl implements ChatService {
         String sessionId = getOrCreateSession(chatRequest);
 
         // 构建完整的消息列表（包含历史记录）
-        List<Message> fullMessages = buildMessageList(chatRequest, sessionId);
+        List<Message> fullMessages = llmMetrics.recordHistoryLoad(provider, chatRequest.getModel(), endpoint,
+                () -> buildMessageList(chatRequest, sessionId, provider));
 
         // 处理多模态消息
         List<Message> processedMessages = processMultimodalMessages(fullMessages);
@@ -125,28 +234,10 @@ public class ChatServiceImpl implements ChatService {
         fullRequest.setSessionId(sessionId);
 
         // 保存用户消息
-        saveUserMessage(chatRequest, sessionId);
-
-        // 用于收集流式响应内容
-        StringBuilder responseContent = new StringBuilder();
-
-        // 调用Manager层执行流式聊天请求
-        doubaoManager.streamChat(fullRequest, streamResponse -> {
-            // 收集内容
-            String deltaContent = streamResponse.getDeltaContent();
-            if (deltaContent != null) {
-                responseContent.append(deltaContent);
-            }
+        llmMetrics.recordPersistence(provider, chatRequest.getModel(), endpoint, "user",
+                () -> saveUserMessage(chatRequest, sessionId));
 
-            // 调用回调
-            onChunk.accept(streamResponse);
-
-            // 如果流结束，保存AI回复
-            if (streamResponse.isFinished()) {
-                saveAssistantMessage(responseContent.toString(), sessionId, chatRequest.getUserId());
-                updateSessionTime(sessionId);
-            }
-        });
+        return fullRequest;
     }
 
     /**
@@ -164,10 +255,8 @@ public class ChatServiceImpl implements ChatService {
             if (session == null) {
                 log.warn("会话不存在: sessionId={}, userId={}", sessionId, userId);
                 // 尝试查找该用户最近的一个未删除会话
-                List<ChatSession> recentSessions = chatSessionRepository
-                        .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-                if (!recentSessions.isEmpty()) {
-                    String recentSessionId = recentSessions.get(0).getId();
+                String recentSessionId = chatSessionIndex.latestSessionId(userId);
+                if (recentSessionId != null) {
                     log.info("未找到指定会话，使用最近会话: sessionId={}, userId={}", recentSessionId, userId);
                     return recentSessionId;
                 }
@@ -177,10 +266,8 @@ public class ChatServiceImpl implements ChatService {
             if (session.getIsDelete()) {
                 log.warn("会话已删除: sessionId={}, userId={}", sessionId, userId);
                 // 尝试查找该用户最近的一个未删除会话
-                List<ChatSession> recentSessions = chatSessionRepository
-                        .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-                if (!recentSessions.isEmpty()) {
-                    String recentSessionId = recentSessions.get(0).getId();
+                String recentSessionId = chatSessionIndex.latestSessionId(userId);
+                if (recentSessionId != null) {
                     log.info("指定会话已删除，使用最近会话: sessionId={}, userId={}", recentSessionId, userId);
                     return recentSessionId;
                 }
@@ -191,12 +278,9 @@ public class ChatServiceImpl implements ChatService {
         }
         
         // 如果没有提供sessionId，尝试使用该用户最近的一个未删除会话
-        List<ChatSession> recentSessions = chatSessionRepository
-                .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
-        if (!recentSessions.isEmpty()) {
-            String recentSessionId = recentSessions.get(0).getId();
-            log.info("未提供sessionId，使用最近会话: sessionId={}, userId={}, title={}", 
-                    recentSessionId, userId, recentSessions.get(0).getTitle());
+        String recentSessionId = chatSessionIndex.latestSessionId(userId);
+        if (recentSessionId != null) {
+            log.info("未提供sessionId，使用最近会话: sessionId={}, userId={}", recentSessionId, userId);
             return recentSessionId;
         }
 
@@ -216,6 +300,7 @@ public class ChatServiceImpl implements ChatService {
         
         try {
             ChatSession saved = chatSessionRepository.save(session);
+            chatSessionIndex.touch(userId, saved.getId());
             log.info("创建新会话成功: sessionId={}, userId={}, title={}", saved.getId(), userId, title);
             return saved.getId();
         } catch (Exception e) {
@@ -252,7 +337,7 @@ public class ChatServiceImpl implements ChatService {
     /**
      * 构建完整的消息列表（包含历史记录）
      */
-    private List<Message> buildMessageList(ChatRequest chatRequest, String sessionId) {
+    private List<Message> buildMessageList(ChatRequest chatRequest, String sessionId, LlmProviderEnum provider) {
         List<Message> messages = new ArrayList<>();
         Long userId = chatRequest.getUserId();
 
@@ -269,9 +354,12 @@ public class ChatServiceImpl implements ChatService {
         try {
             log.info("开始加载历史消息: sessionId={}, userId={}", sessionId, userId);
             
-            List<ChatMessage> historyMessages = chatMessageRepository
-                    .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(
-                            sessionId, userId, false);
+            // 有滚动摘要时只加载摘要之后的消息，摘要作为系统消息放在最前面
+            SessionSummarizer.History history = sessionSummarizer.loadHistory(sessionId, userId);
+            if (history.getSummary() != null) {
+                messages.add(history.getSummary());
+            }
+            List<ChatMessage> historyMessages = history.getMessages();
 
             log.info("MongoDB查询结果: sessionId={}, userId={}, 历史消息数={}", 
                     sessionId, userId, historyMessages.size());
@@ -294,8 +382,8 @@ public class ChatServiceImpl implements ChatService {
                 }
             }
 
-            // 转换历史消息为Message对象
-            for (ChatMessage historyMsg : historyMessages) {
+            // 按模型上下文长度裁剪历史消息，只保留令牌预算内最近的若干轮，再转换为Message对象
+            for (ChatMessage historyMsg : contextWindowBuilder.select(provider, chatRequest, history.getSummary(), historyMessages)) {
                 // 双重验证：确保消息属于该用户和会话
                 if (!userId.equals(historyMsg.getUserId()) || !sessionId.equals(historyMsg.getSessionId())) {
                     log.warn("消息归属验证失败，跳过: messageId={}, expectedUserId={}, actualUserId={}, expectedSessionId={}, actualSessionId={}",
@@ -306,6 +394,8 @@ public class ChatServiceImpl implements ChatService {
                 Message msg = new Message();
                 msg.setRole(historyMsg.getRole());
                 msg.setContent(historyMsg.getContent());
+                // 已持久化消息的序列化结果按消息ID缓存
+                msg.setFragmentKey(historyMsg.getId());
                 
                 // 处理多模态内容
                 if (historyMsg.getImageUrls() != null && !historyMsg.getImageUrls().isEmpty()) {
@@ -349,6 +439,7 @@ public class ChatServiceImpl implements ChatService {
             if (msg.hasMultimodalContent()) {
                 Message processedMsg = new Message();
                 processedMsg.setRole(msg.getRole());
+                processedMsg.setFragmentKey(msg.getFragmentKey());
                 
                 List<Message.ContentItem> contentList = new ArrayList<>();
                 
@@ -424,9 +515,9 @@ public class ChatServiceImpl implements ChatService {
                     chatMessage.setCreateTime(LocalDateTime.now());
                     chatMessage.setIsDelete(false);
                     
-                    ChatMessage saved = chatMessageRepository.save(chatMessage);
+                    chatMessagePersister.save(chatMessage);
                     log.info("保存用户消息成功: sessionId={}, messageId={}, userId={}, contentLength={}", 
-                            sessionId, saved.getId(), userId,
+                            sessionId, chatMessage.getId(), userId,
                             msg.getContent() != null ? msg.getContent().length() : 0);
                 } catch (Exception e) {
                     log.error("保存用户消息失败: sessionId={}, userId={}, content={}, error={}", 
@@ -464,9 +555,9 @@ public class ChatServiceImpl implements ChatService {
             chatMessage.setCreateTime(LocalDateTime.now());
             chatMessage.setIsDelete(false);
             
-            ChatMessage saved = chatMessageRepository.save(chatMessage);
+            chatMessagePersister.save(chatMessage);
             log.info("保存AI回复成功: sessionId={}, messageId={}, userId={}, contentLength={}", 
-                    sessionId, saved.getId(), userId, content.length());
+                    sessionId, chatMessage.getId(), userId, content.length());
         } catch (Exception e) {
             log.error("保存AI回复失败: sessionId={}, userId={}, contentLength={}, error={}", 
                     sessionId, userId, content.length(), e.getMessage(), e);
@@ -498,9 +589,9 @@ public class ChatServiceImpl implements ChatService {
             chatMessage.setCreateTime(LocalDateTime.now());
             chatMessage.setIsDelete(false);
             
-            ChatMessage saved = chatMessageRepository.save(chatMessage);
+            chatMessagePersister.save(chatMessage);
             log.info("保存AI回复成功: sessionId={}, messageId={}, userId={}, contentLength={}", 
-                    sessionId, saved.getId(), userId, content.length());
+                    sessionId, chatMessage.getId(), userId, content.length());
         } catch (Exception e) {
             log.error("保存AI回复失败: sessionId={}, userId={}, contentLength={}, error={}", 
                     sessionId, userId, content.length(), e.getMessage(), e);
@@ -510,23 +601,38 @@ public class ChatServiceImpl implements ChatService {
 
     /**
      * 更新会话时间
+     * 只原子更新 updateTime，短时间内的多次更新合并为一次批量写入
      */
-    private void updateSessionTime(String sessionId) {
+    private void updateSessionTime(String sessionId, Long userId) {
         try {
-            ChatSession session = chatSessionRepository.findById(sessionId).orElse(null);
-            if (session != null) {
-                session.setUpdateTime(LocalDateTime.now());
-                chatSessionRepository.save(session);
-                log.debug("更新会话时间成功: sessionId={}", sessionId);
-            } else {
-                log.warn("会话不存在，无法更新时间: sessionId={}", sessionId);
-            }
+            sessionToucher.touch(sessionId, userId);
         } catch (Exception e) {
             log.error("更新会话时间失败: sessionId={}, error={}", sessionId, e.getMessage(), e);
             // 不抛出异常，避免影响主流程
         }
     }
 
+    /**
+     * 确定本次请求的服务提供方，model 为 auto 时由路由层按延迟和健康状态选择，否则固定使用豆包
+     */
+    private LlmProviderEnum resolveProvider(ChatRequest chatRequest, boolean streaming) {
+        return llmRouter.isAuto(chatRequest) ? llmRouter.select(streaming) : LlmProviderEnum.DOUBAO;
+    }
+
+    /**
+     * 调用上游执行非流式请求，model 为 auto 时以选定的提供方为首选交给路由层（可能对冲），否则固定使用豆包
+     */
+    private ChatResponse upstreamChat(ChatRequest fullRequest, LlmProviderEnum provider) {
+        return llmRouter.isAuto(fullRequest) ? llmRouter.chat(fullRequest, provider) : doubaoManager.chat(fullRequest);
+    }
+
+    /**
+     * 调用上游执行流式请求，model 为 auto 时使用选定的提供方，否则固定使用豆包
+     */
+    private Flux<StreamChatResponse> upstreamStream(ChatRequest fullRequest, LlmProviderEnum provider) {
+        return llmRouter.isAuto(fullRequest) ? llmRouter.streamChatFlux(fullRequest, provider) : doubaoManager.streamChatFlux(fullRequest);
+    }
+
     /**
      * 验证聊天请求参数
      */
@@ -593,6 +699,7 @@ public class ChatServiceImpl implements ChatService {
         session.setIsDelete(false);
 
         chatSessionRepository.save(session);
+        chatSessionIndex.touch(session.getUserId(), session.getId());
 
         ChatSessionVO vo = new ChatSessionVO();
         BeanUtils.copyProperties(session, vo);
@@ -605,14 +712,31 @@ public class ChatServiceImpl implements ChatService {
     public List<ChatSessionVO> getSessions(Long userId) {
         ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
 
-        List<ChatSession> sessions = chatSessionRepository
-                .findByUserIdAndIsDeleteOrderByUpdateTimeDesc(userId, false);
+        // 只返回列表字段，不加载摘要等大字段
+        return chatSessionIndex.list(userId);
+    }
 
-        return sessions.stream().map(session -> {
-            ChatSessionVO vo = new ChatSessionVO();
-            BeanUtils.copyProperties(session, vo);
-            return vo;
-        }).collect(Collectors.toList());
+    /**
+     * 按游标分页获取用户的会话列表
+     */
+    public ChatSessionPageVO getSessionPage(Long userId, String cursor, Integer pageSize) {
+        ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
+        return chatSessionIndex.page(userId, cursor, pageSize);
+    }
+
+    /**
+     * 按键集分页获取会话消息，以 JSON 数组流式写出
+     */
+    public StreamingResponseBody getMessagePage(String sessionId, Long userId, ChatMessagePageRequest pageRequest) {
+        ThrowUtils.throwIf(StringUtils.isBlank(sessionId), ErrorCode.PARAMS_ERROR, "会话ID不能为空");
+        ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
+
+        // 验证会话是否属于该用户，校验失败时直接返回错误响应而不是写了一半的数组
+        ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
+        ThrowUtils.throwIf(session == null || session.getIsDelete(), ErrorCode.NOT_FOUND_ERROR, "会话不存在");
+
+        ChatMessageHistory.Page page = chatMessageHistory.open(sessionId, userId, pageRequest);
+        return page::writeTo;
     }
 
     /**
@@ -627,8 +751,9 @@ public class ChatServiceImpl implements ChatService {
         ThrowUtils.throwIf(session == null || session.getIsDelete(), 
                 ErrorCode.NOT_FOUND_ERROR, "会话不存在");
 
-        List<ChatMessage> messages = chatMessageRepository
-                .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false);
+        // 合并本节点尚未落库的消息
+        List<ChatMessage> messages = chatMessagePersister.withPending(sessionId, userId, null, chatMessageRepository
+                .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false));
 
         return messages.stream().map(msg -> {
             ChatMessageVO vo = new ChatMessageVO();
@@ -644,21 +769,13 @@ public class ChatServiceImpl implements ChatService {
         ThrowUtils.throwIf(StringUtils.isBlank(sessionId), ErrorCode.PARAMS_ERROR, "会话ID不能为空");
         ThrowUtils.throwIf(userId == null, ErrorCode.PARAMS_ERROR, "用户ID不能为空");
 
-        ChatSession session = chatSessionRepository.findByIdAndUserId(sessionId, userId);
-        ThrowUtils.throwIf(session == null || session.getIsDelete(), 
+        ThrowUtils.throwIf(!chatSessionLifecycle.softDeleteSession(sessionId, userId),
                 ErrorCode.NOT_FOUND_ERROR, "会话不存在");
+        chatSessionIndex.evict(userId, sessionId);
+        sessionHistoryCache.invalidate(sessionId);
 
-        session.setIsDelete(true);
-        session.setUpdateTime(LocalDateTime.now());
-        chatSessionRepository.save(session);
-
-        // 软删除该会话的所有消息
-        List<ChatMessage> messages = chatMessageRepository
-                .findBySessionIdAndUserIdAndIsDeleteOrderByCreateTimeAsc(sessionId, userId, false);
-        for (ChatMessage msg : messages) {
-            msg.setIsDelete(true);
-            chatMessageRepository.save(msg);
-        }
+        // 一次批量软删除该会话的所有消息，包括本节点尚未落库的消息
+        chatSessionLifecycle.softDeleteMessages(sessionId, userId);
     }
 }
 
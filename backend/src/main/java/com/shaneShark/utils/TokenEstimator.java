@@ -0,0 +1,100 @@
+package com.shaneShark.utils;
+
+import com.shaneShark.model.dto.chat.Message;
+
+import java.util.List;
+
+/**
+ * 令牌数估算工具
+ * 不依赖具体模型的分词器：中日韩字符按 1 个令牌计，其他字符按 4 个字符 1 个令牌计，
+ * 每条消息额外计入角色等格式开销，图片/视频按固定令牌数计。用于限流预扣和上下文裁剪，不追求精确。
+ *
+ * @author Shane
+ */
+public class TokenEstimator {
+
+    /**
+     * 每条消息的格式开销（角色、分隔符等）
+     */
+    private static final int MESSAGE_OVERHEAD_TOKENS = 4;
+
+    /**
+     * 单个图片/视频的估算令牌数
+     */
+    private static final int MEDIA_TOKENS = 1000;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算文本的令牌数
+     *
+     * @param text 文本
+     * @return 估算令牌数
+     */
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            if (isCjk(codePoint)) {
+                cjk++;
+            } else {
+                other++;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 估算单条消息的令牌数（含多模态内容）
+     *
+     * @param message 消息
+     * @return 估算令牌数
+     */
+    public static int estimate(Message message) {
+        int tokens = MESSAGE_OVERHEAD_TOKENS + estimate(message.getContent());
+        List<Message.ContentItem> contentList = message.retrieveContentList();
+        if (contentList != null) {
+            for (Message.ContentItem item : contentList) {
+                tokens += "text".equals(item.getType()) ? estimate(item.getText()) : MEDIA_TOKENS;
+            }
+        }
+        if (message.getImageUrls() != null) {
+            tokens += message.getImageUrls().size() * MEDIA_TOKENS;
+        }
+        if (message.getVideoUrls() != null) {
+            tokens += message.getVideoUrls().size() * MEDIA_TOKENS;
+        }
+        return tokens;
+    }
+
+    /**
+     * 估算消息列表的令牌数
+     *
+     * @param messages 消息列表
+     * @return 估算令牌数
+     */
+    public static int estimate(List<Message> messages) {
+        if (messages == null) {
+            return 0;
+        }
+        int tokens = 0;
+        for (Message message : messages) {
+            tokens += estimate(message);
+        }
+        return tokens;
+    }
+
+    private static boolean isCjk(int codePoint) {
+        Character.UnicodeScript script = Character.UnicodeScript.of(codePoint);
+        return script == Character.UnicodeScript.HAN
+                || script == Character.UnicodeScript.HIRAGANA
+                || script == Character.UnicodeScript.KATAKANA
+                || script == Character.UnicodeScript.HANGUL;
+    }
+}
@@ -0,0 +1,274 @@
+package com.shaneShark.manager;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.shaneShark.config.MessageWriteBehindConfig;
+import com.shaneShark.manager.llm.SessionHistoryCache;
+import com.shaneShark.model.entity.ChatMessage;
+import com.shaneShark.repository.ChatMessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 聊天消息异步批量写入测试：日志回放、确认与压缩、队列写满时的同步写入
+ *
+ * @author Shane
+ */
+class ChatMessagePersisterTest {
+
+    private static final Long USER_ID = 1L;
+
+    @TempDir
+    Path tempDir;
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules()
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private MessageWriteBehindConfig config;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * 每次批量写入尝试的消息ID
+     */
+    private final List<List<String>> insertAttempts = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * 包含该ID的批量写入一律失败，模拟 MongoDB 写入故障
+     */
+    private volatile String failingId;
+
+    private ChatMessagePersister persister;
+
+    private Path journal;
+
+    @BeforeEach
+    void setUp() {
+        journal = tempDir.resolve("journal.log");
+        config = new MessageWriteBehindConfig();
+        config.setJournalPath(journal.toString());
+        config.setFlushIntervalMillis(1);
+        config.setRetryBackoffMillis(20);
+        config.setShutdownTimeoutMillis(2000);
+        meterRegistry = new SimpleMeterRegistry();
+        mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.bulkOps(eq(BulkOperations.BulkMode.UNORDERED), eq(ChatMessage.class)))
+                .thenAnswer(invocation -> bulkOperations());
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (persister != null) {
+            persister.shutdown();
+        }
+    }
+
+    @Test
+    void recoverReturnsUnconfirmedMessagesInWriteOrder() throws IOException {
+        Files.write(journal, List.of(
+                append(message("m1", "s1")),
+                append(message("m2", "s1")),
+                append(message("m3", "s2")),
+                "C\tm1\tm3",
+                append(message("m4", "s2"))), StandardCharsets.UTF_8);
+
+        List<ChatMessage> recovered = newPersister().recover(journal);
+
+        assertEquals(List.of("m2", "m4"), ids(recovered));
+        assertEquals("s2", recovered.get(1).getSessionId());
+    }
+
+    @Test
+    void recoverSkipsTruncatedLastLine() throws IOException {
+        String truncated = append(message("m2", "s1"));
+        Files.writeString(journal, append(message("m1", "s1")) + "\n"
+                + truncated.substring(0, truncated.length() / 2), StandardCharsets.UTF_8);
+
+        assertEquals(List.of("m1"), ids(newPersister().recover(journal)));
+    }
+
+    @Test
+    void recoverReturnsEmptyWithoutJournal() throws IOException {
+        assertTrue(newPersister().recover(journal).isEmpty());
+    }
+
+    @Test
+    void initReplaysUnconfirmedMessagesAndTruncatesJournal() throws IOException {
+        Files.write(journal, List.of(
+                append(message("m1", "s1")),
+                append(message("m2", "s1")),
+                "C\tm1"), StandardCharsets.UTF_8);
+
+        persister = newPersister();
+        persister.init();
+
+        await(() -> insertAttempts.contains(List.of("m2")));
+        await(() -> size(journal) == 0);
+        assertTrue(persister.pendingMessages("s1", USER_ID).isEmpty());
+    }
+
+    @Test
+    void confirmCompactsJournalToUnconfirmedMessages() throws IOException {
+        config.setJournalCompactBytes(1);
+        failingId = "b1";
+        persister = newPersister();
+        persister.init();
+
+        // 后台线程卡在 b1 的重试上，a1 只能由 flushSession 写入并确认
+        persister.save(message("b1", "B"));
+        await(() -> attempted("b1"));
+        persister.save(message("a1", "A"));
+        persister.flushSession("A", USER_ID);
+
+        List<String> lines = Files.readAllLines(journal, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        assertTrue(lines.get(0).startsWith("A\t"));
+        assertEquals(List.of("b1"), ids(persister.recover(journal)));
+        assertEquals(List.of("b1"), ids(persister.pendingMessages("B", USER_ID)));
+        assertTrue(persister.pendingMessages("A", USER_ID).isEmpty());
+    }
+
+    @Test
+    void saveFallsBackToSyncInsertWhenQueueIsFull() throws IOException {
+        config.setQueueCapacity(1);
+        config.setOfferTimeoutMillis(10);
+        failingId = "b1";
+        persister = newPersister();
+        persister.init();
+
+        persister.save(message("b1", "B"));
+        await(() -> attempted("b1") && queueSize() == 0);
+        // 队列容量为 1：b2 入队等待，b3 等待超时后同步写入
+        persister.save(message("b2", "B"));
+        persister.save(message("b3", "B"));
+
+        assertTrue(insertAttempts.contains(List.of("b3")));
+        assertEquals(1.0, meterRegistry.counter("chat.message.write_behind.sync_fallback").count());
+        assertEquals(List.of("b1", "b2"),
+                ids(persister.pendingMessages("B", USER_ID)).stream().sorted().collect(Collectors.toList()));
+    }
+
+    @Test
+    void flushSessionPersistsMessagesMarkedDeleted() throws IOException {
+        failingId = "b1";
+        persister = newPersister();
+        persister.init();
+
+        persister.save(message("b1", "B"));
+        await(() -> attempted("b1"));
+        persister.save(message("a1", "A"));
+        persister.markDeleted("A", USER_ID);
+        persister.flushSession("A", USER_ID);
+
+        assertTrue(insertAttempts.contains(List.of("a1")));
+        assertTrue(persister.pendingMessages("A", null).isEmpty());
+    }
+
+    private ChatMessagePersister newPersister() {
+        ChatMessagePersister chatMessagePersister = new ChatMessagePersister();
+        ReflectionTestUtils.setField(chatMessagePersister, "messageWriteBehindConfig", config);
+        ReflectionTestUtils.setField(chatMessagePersister, "chatMessageRepository", mock(ChatMessageRepository.class));
+        ReflectionTestUtils.setField(chatMessagePersister, "mongoTemplate", mongoTemplate);
+        ReflectionTestUtils.setField(chatMessagePersister, "sessionHistoryCache", mock(SessionHistoryCache.class));
+        ReflectionTestUtils.setField(chatMessagePersister, "meterRegistry", meterRegistry);
+        return chatMessagePersister;
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkOperations bulkOperations() {
+        BulkOperations bulk = mock(BulkOperations.class);
+        List<String> batch = new ArrayList<>();
+        when(bulk.insert(anyList())).thenAnswer(invocation -> {
+            batch.addAll(ids((List<ChatMessage>) invocation.getArgument(0)));
+            return bulk;
+        });
+        when(bulk.execute()).thenAnswer(invocation -> {
+            insertAttempts.add(List.copyOf(batch));
+            if (failingId != null && batch.contains(failingId)) {
+                throw new IllegalStateException("模拟写入失败");
+            }
+            return null;
+        });
+        return bulk;
+    }
+
+    private boolean attempted(String id) {
+        synchronized (insertAttempts) {
+            return insertAttempts.stream().anyMatch(batch -> batch.contains(id));
+        }
+    }
+
+    private int queueSize() {
+        Queue<?> queue = (Queue<?>) ReflectionTestUtils.getField(persister, "queue");
+        return queue == null ? 0 : queue.size();
+    }
+
+    private ChatMessage message(String id, String sessionId) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setSessionId(sessionId);
+        message.setUserId(USER_ID);
+        message.setRole("user");
+        message.setContent("消息" + id);
+        message.setCreateTime(LocalDateTime.of(2024, 1, 1, 12, 0));
+        return message;
+    }
+
+    private String append(ChatMessage message) throws IOException {
+        return "A\t" + objectMapper.writeValueAsString(message);
+    }
+
+    private static List<String> ids(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getId).collect(Collectors.toList());
+    }
+
+    private static long size(Path path) {
+        try {
+            return Files.size(path);
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("等待条件超时");
+            }
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError("等待被中断");
+            }
+        }
+    }
+}
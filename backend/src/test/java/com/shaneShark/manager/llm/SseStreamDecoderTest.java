@@ -0,0 +1,212 @@
+package com.shaneShark.manager.llm;
+
+import com.shaneShark.model.dto.chat.StreamChatResponse;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * SSE 流式响应解码器测试
+ *
+ * @author Shane
+ */
+class SseStreamDecoderTest {
+
+    private static final String FRAME_HELLO = "{\"id\":\"c1\",\"model\":\"m\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"你好\"}}]}";
+
+    private static final String FRAME_WORLD = "{\"id\":\"c1\",\"model\":\"m\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"世界\"}}]}";
+
+    @Test
+    void decodesLineFeedTerminatedEvents() throws IOException {
+        List<StreamChatResponse> frames = decodeAll(source(
+                "data: " + FRAME_HELLO + "\n\ndata: " + FRAME_WORLD + "\n\ndata: [DONE]\n\n"));
+
+        assertEquals(List.of("你好", "世界"), contents(frames));
+        assertEquals("c1", frames.get(0).getId());
+        assertEquals("m", frames.get(1).getModel());
+    }
+
+    @Test
+    void decodesCarriageReturnLineFeedTerminatedEvents() throws IOException {
+        List<StreamChatResponse> frames = decodeAll(source(
+                "data: " + FRAME_HELLO + "\r\n\r\ndata: " + FRAME_WORLD + "\r\n\r\ndata: [DONE]\r\n\r\n"));
+
+        assertEquals(List.of("你好", "世界"), contents(frames));
+    }
+
+    @Test
+    void decodesCarriageReturnTerminatedEvents() throws IOException {
+        List<StreamChatResponse> frames = decodeAll(source(
+                "data: " + FRAME_HELLO + "\r\rdata: " + FRAME_WORLD + "\r\rdata: [DONE]\r\r"));
+
+        assertEquals(List.of("你好", "世界"), contents(frames));
+    }
+
+    @Test
+    void decodesEventsSplitAcrossReads() throws IOException {
+        String stream = "data: " + FRAME_HELLO + "\r\n\r\ndata: " + FRAME_WORLD + "\r\n\r\ndata: [DONE]\r\n\r\n";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        // 每次只返回 3 个字节：data: 前缀、JSON 和 \r\n 都会被切开
+        List<byte[]> chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += 3) {
+            chunks.add(Arrays.copyOfRange(bytes, i, Math.min(bytes.length, i + 3)));
+        }
+
+        List<StreamChatResponse> frames = decodeAll(chunked(chunks));
+
+        assertEquals(List.of("你好", "世界"), contents(frames));
+    }
+
+    @Test
+    void decodesMultiByteCharacterSplitAtReadBoundary() throws IOException {
+        byte[] prefix = ("data: {\"choices\":[{\"delta\":{\"content\":\"").getBytes(StandardCharsets.UTF_8);
+        byte[] character = "好".getBytes(StandardCharsets.UTF_8);
+        byte[] suffix = "\"}}]}\n\n".getBytes(StandardCharsets.UTF_8);
+        assertEquals(3, character.length);
+
+        BufferedSource source = chunked(List.of(
+                concat(prefix, Arrays.copyOfRange(character, 0, 1)),
+                Arrays.copyOfRange(character, 1, 3),
+                suffix));
+        List<StreamChatResponse> frames = decodeAll(source);
+
+        assertEquals(List.of("好"), contents(frames));
+    }
+
+    @Test
+    void stopsAtDoneMarker() throws IOException {
+        SseStreamDecoder decoder = new SseStreamDecoder(source(
+                "data: " + FRAME_HELLO + "\n\ndata: [DONE]\n\ndata: " + FRAME_WORLD + "\n\n"));
+
+        assertEquals("你好", decoder.next().getDeltaContent());
+        assertNull(decoder.next());
+    }
+
+    @Test
+    void returnsNullAtEndOfStreamWithoutDoneMarker() throws IOException {
+        SseStreamDecoder decoder = new SseStreamDecoder(source("data: " + FRAME_HELLO));
+
+        assertEquals("你好", decoder.next().getDeltaContent());
+        assertNull(decoder.next());
+    }
+
+    @Test
+    void ignoresCommentsEventFieldsAndMalformedData() throws IOException {
+        List<StreamChatResponse> frames = decodeAll(source(
+                ": keep-alive\n\nevent: message\ndata:\ndata: {not json\n\ndata:" + FRAME_HELLO + "\n\n"));
+
+        assertEquals(List.of("你好"), contents(frames));
+    }
+
+    @Test
+    void decodesChoiceWithoutDeltaAndUsageOnlyFrame() throws IOException {
+        List<StreamChatResponse> frames = decodeAll(source(
+                "data: {\"choices\":[{\"index\":0,\"finish_reason\":\"stop\"}]}\n\n"
+                        + "data: {\"choices\":[],\"usage\":{\"prompt_tokens\":3,\"completion_tokens\":5,\"total_tokens\":8}}\n\n"
+                        + "data: [DONE]\n\n"));
+
+        assertEquals(2, frames.size());
+        StreamChatResponse finish = frames.get(0);
+        assertTrue(finish.isFinished());
+        assertNull(finish.getChoices()[0].getDelta());
+        assertEquals("", finish.getDeltaContent());
+        assertNull(finish.getUsage());
+
+        StreamChatResponse usage = frames.get(1);
+        assertArrayEquals(new StreamChatResponse.StreamChoice[0], usage.getChoices());
+        assertEquals(3, usage.getUsage().getPromptTokens());
+        assertEquals(5, usage.getUsage().getCompletionTokens());
+        assertEquals(8, usage.getUsage().getTotalTokens());
+    }
+
+    @Test
+    void decodesReasoningContentAndKeepsOnlyFirstChoice() throws IOException {
+        List<StreamChatResponse> frames = decodeAll(source(
+                "data: {\"choices\":[{\"delta\":{\"reasoning_content\":\"想\",\"content\":null,\"extra\":{\"a\":[1]}}},"
+                        + "{\"delta\":{\"content\":\"第二个\"}}]}\n\n"));
+
+        assertEquals(1, frames.get(0).getChoices().length);
+        assertEquals("想", frames.get(0).getDeltaReasoningContent());
+        assertNull(frames.get(0).getDeltaContent());
+    }
+
+    @Test
+    void decodeDataTreatsDoneAsEndOfStream() throws IOException {
+        SseStreamDecoder decoder = new SseStreamDecoder();
+
+        assertNull(decoder.decodeData("[DONE]"));
+        assertNull(decoder.decodeData(""));
+        assertEquals("你好", decoder.decodeData(FRAME_HELLO).getDeltaContent());
+    }
+
+    private static List<StreamChatResponse> decodeAll(BufferedSource source) throws IOException {
+        SseStreamDecoder decoder = new SseStreamDecoder(source);
+        List<StreamChatResponse> frames = new ArrayList<>();
+        StreamChatResponse frame;
+        while ((frame = decoder.next()) != null) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    private static List<String> contents(List<StreamChatResponse> frames) {
+        List<String> contents = new ArrayList<>();
+        for (StreamChatResponse frame : frames) {
+            contents.add(frame.getDeltaContent());
+        }
+        return contents;
+    }
+
+    private static BufferedSource source(String text) {
+        return new Buffer().writeUtf8(text);
+    }
+
+    /**
+     * 每次 read 只返回一个分片，模拟按网络包到达的响应体
+     */
+    private static BufferedSource chunked(List<byte[]> chunks) {
+        Deque<byte[]> remaining = new ArrayDeque<>(chunks);
+        return Okio.buffer(new Source() {
+            @Override
+            public long read(Buffer sink, long byteCount) {
+                byte[] chunk = remaining.poll();
+                if (chunk == null) {
+                    return -1;
+                }
+                sink.write(chunk);
+                return chunk.length;
+            }
+
+            @Override
+            public Timeout timeout() {
+                return Timeout.NONE;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+    }
+
+    private static byte[] concat(byte[] first, byte[] second) {
+        byte[] bytes = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, bytes, first.length, second.length);
+        return bytes;
+    }
+}